@@ -0,0 +1,688 @@
+package com.example;
+
+import com.example.mlbackend.util.AsciiDoubleParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * ColumnarCsvLoader - Shared CSV loader for the trainers.
+ *
+ * load() memory-maps the CSV, splits it into line-aligned chunks and parses the chunks in
+ * parallel straight from the mapped bytes into primitive columns (no String per field).
+ * The result is written to a binary columnar cache beside the CSV
+ * (e.g. data/part_risk_data.csv.1a2b3c4d.colcache), which later runs map back in one go
+ * as long as the CSV size and modification time are unchanged.
+ *
+ * stream() walks the file in mapped windows and hands out fixed-size blocks instead, so
+ * files larger than the heap can be processed in bounded memory.
+ *
+ * Fields may be quoted, but quoted fields must not contain line breaks. Rows that are too
+ * short get NaN for missing numeric fields and code -1 for missing categorical fields.
+ */
+public class ColumnarCsvLoader {
+
+    private static final int CACHE_MAGIC = 0x31434343; // "CCC1" read as little endian
+    private static final int CACHE_VERSION = 1;
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    private static final long MAX_CHUNK_BYTES = 256L << 20;
+    private static final long STREAM_WINDOW_BYTES = 256L << 20;
+
+    private ColumnarCsvLoader() {
+    }
+
+    /**
+     * Read the column names from the first line of a CSV file
+     */
+    public static String[] readHeader(Path csv) throws IOException {
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            return parseHeader(channel).names;
+        }
+    }
+
+    /**
+     * Load the requested columns, from the binary cache when it is up to date
+     * @param csv CSV file with a header line
+     * @param numericColumns columns parsed as doubles (true/false become 1/0)
+     * @param categoricalColumns columns dictionary encoded as int codes
+     */
+    public static ColumnarTable load(Path csv, String[] numericColumns, String[] categoricalColumns) throws IOException {
+        Path cache = cachePath(csv, numericColumns, categoricalColumns);
+        long start = System.nanoTime();
+
+        ColumnarTable table = readCache(cache, csv, numericColumns, categoricalColumns);
+        if (table != null) {
+            System.out.printf("Loaded %d rows from cache %s in %d ms%n",
+                    table.rowCount(), cache.getFileName(), (System.nanoTime() - start) / 1_000_000);
+            return table;
+        }
+
+        table = parse(csv, numericColumns, categoricalColumns);
+        System.out.printf("Parsed %d rows from %s in %d ms%n",
+                table.rowCount(), csv.getFileName(), (System.nanoTime() - start) / 1_000_000);
+        try {
+            writeCache(cache, csv, table);
+        } catch (IOException e) {
+            System.out.println("Warning: Could not write column cache " + cache + ": " + e.getMessage());
+        }
+        return table;
+    }
+
+    /**
+     * Stream the requested columns in blocks of at most blockRows rows.
+     * Only one window of the file and one block are held at a time. Dictionary codes are
+     * stable across blocks; each block carries the dictionary as known at that point.
+     */
+    public static void stream(Path csv, String[] numericColumns, String[] categoricalColumns,
+                              int blockRows, Consumer<ColumnarTable> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            Header header = parseHeader(channel);
+            ChunkParser parser = new ChunkParser(header.names, numericColumns, categoricalColumns);
+            ByteDictionary[] dictionaries = parser.newDictionaries();
+            Block[] block = {new Block(numericColumns.length, categoricalColumns.length, blockRows)};
+            BlockSink sink = full -> {
+                consumer.accept(full.toTable(numericColumns, categoricalColumns, dictionaries));
+                return new Block(numericColumns.length, categoricalColumns.length, blockRows);
+            };
+
+            long size = channel.size();
+            long position = header.dataStart;
+            while (position < size) {
+                long windowEnd = Math.min(size, position + STREAM_WINDOW_BYTES);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowEnd - position);
+                int limit = window.limit();
+                if (windowEnd < size) {
+                    // Only parse up to the last complete line; the rest starts the next window
+                    while (limit > 0 && window.get(limit - 1) != '\n') {
+                        limit--;
+                    }
+                    if (limit == 0) {
+                        throw new IOException("Line longer than " + STREAM_WINDOW_BYTES + " bytes at offset " + position);
+                    }
+                }
+                block[0] = parser.parseLines(window, 0, limit, block[0], dictionaries, sink);
+                position += limit;
+            }
+            if (block[0].rows > 0) {
+                consumer.accept(block[0].toTable(numericColumns, categoricalColumns, dictionaries));
+            }
+        }
+    }
+
+    private static ColumnarTable parse(Path csv, String[] numericColumns, String[] categoricalColumns) throws IOException {
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            Header header = parseHeader(channel);
+            ChunkParser parser = new ChunkParser(header.names, numericColumns, categoricalColumns);
+            long[] bounds = chunkBounds(channel, header.dataStart);
+
+            int threads = Math.min(Runtime.getRuntime().availableProcessors(), bounds.length - 1);
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+            try {
+                List<Future<ChunkResult>> futures = new ArrayList<>();
+                for (int c = 0; c + 1 < bounds.length; c++) {
+                    long from = bounds[c];
+                    long to = bounds[c + 1];
+                    Callable<ChunkResult> task = () -> {
+                        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                        ByteDictionary[] dictionaries = parser.newDictionaries();
+                        Block block = new Block(numericColumns.length, categoricalColumns.length, countLines(buf));
+                        block = parser.parseLines(buf, 0, buf.limit(), block, dictionaries, null);
+                        return new ChunkResult(block, dictionaries);
+                    };
+                    futures.add(executor.submit(task));
+                }
+
+                List<ChunkResult> chunks = new ArrayList<>();
+                for (Future<ChunkResult> future : futures) {
+                    chunks.add(future.get());
+                }
+                return merge(chunks, numericColumns, categoricalColumns);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while parsing " + csv, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Error parsing " + csv + ": " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Concatenate the chunk columns in file order and remap chunk-local dictionary codes
+     * to one global dictionary (values numbered in order of first appearance)
+     */
+    private static ColumnarTable merge(List<ChunkResult> chunks, String[] numericColumns, String[] categoricalColumns) {
+        int rows = 0;
+        for (ChunkResult chunk : chunks) {
+            rows += chunk.block.rows;
+        }
+
+        double[][] numeric = new double[numericColumns.length][rows];
+        int[][] codes = new int[categoricalColumns.length][rows];
+        List<Map<String, Integer>> globalCodes = new ArrayList<>();
+        List<List<String>> globalValues = new ArrayList<>();
+        for (int k = 0; k < categoricalColumns.length; k++) {
+            globalCodes.add(new HashMap<>());
+            globalValues.add(new ArrayList<>());
+        }
+
+        int offset = 0;
+        for (ChunkResult chunk : chunks) {
+            Block block = chunk.block;
+            for (int k = 0; k < numericColumns.length; k++) {
+                System.arraycopy(block.numeric[k], 0, numeric[k], offset, block.rows);
+            }
+            for (int k = 0; k < categoricalColumns.length; k++) {
+                String[] local = chunk.dictionaries[k].values();
+                int[] remap = new int[local.length];
+                for (int code = 0; code < local.length; code++) {
+                    Map<String, Integer> codesByValue = globalCodes.get(k);
+                    List<String> values = globalValues.get(k);
+                    Integer global = codesByValue.get(local[code]);
+                    if (global == null) {
+                        global = values.size();
+                        codesByValue.put(local[code], global);
+                        values.add(local[code]);
+                    }
+                    remap[code] = global;
+                }
+                for (int r = 0; r < block.rows; r++) {
+                    int code = block.codes[k][r];
+                    codes[k][offset + r] = code < 0 ? -1 : remap[code];
+                }
+            }
+            offset += block.rows;
+        }
+
+        String[][] dictionaries = new String[categoricalColumns.length][];
+        for (int k = 0; k < categoricalColumns.length; k++) {
+            dictionaries[k] = globalValues.get(k).toArray(new String[0]);
+        }
+        return new ColumnarTable(rows, numericColumns.clone(), numeric, categoricalColumns.clone(), codes, dictionaries);
+    }
+
+    /**
+     * Split the data section into roughly equal chunks that start right after a newline
+     */
+    private static long[] chunkBounds(FileChannel channel, long dataStart) throws IOException {
+        long size = channel.size();
+        long dataBytes = size - dataStart;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long chunkBytes = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, dataBytes / (threads * 4L) + 1));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(dataStart);
+        long position = dataStart + chunkBytes;
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        while (position < size) {
+            long newline = -1;
+            long scan = position;
+            while (newline < 0 && scan < size) {
+                probe.clear();
+                int read = channel.read(probe, scan);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = scan + i;
+                        break;
+                    }
+                }
+                scan += read;
+            }
+            if (newline < 0 || newline + 1 >= size) {
+                break;
+            }
+            long boundary = newline + 1;
+            if (boundary - bounds.get(bounds.size() - 1) > MAX_CHUNK_BYTES) {
+                throw new IOException("Line longer than " + MAX_CHUNK_BYTES + " bytes near offset " + position);
+            }
+            bounds.add(boundary);
+            position = boundary + chunkBytes;
+        }
+        if (size - bounds.get(bounds.size() - 1) > MAX_CHUNK_BYTES) {
+            throw new IOException("Line longer than " + MAX_CHUNK_BYTES + " bytes near end of file");
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static int countLines(ByteBuffer buf) {
+        int lines = 0;
+        int limit = buf.limit();
+        for (int i = 0; i < limit; i++) {
+            if (buf.get(i) == '\n') {
+                lines++;
+            }
+        }
+        if (limit > 0 && buf.get(limit - 1) != '\n') {
+            lines++;
+        }
+        return lines;
+    }
+
+    private static Header parseHeader(FileChannel channel) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(channel.size(), 1 << 20));
+        channel.read(buf, 0);
+        int end = 0;
+        while (end < buf.position() && buf.get(end) != '\n') {
+            end++;
+        }
+        if (end == buf.position() && end < channel.size()) {
+            throw new IOException("CSV header line is longer than 1 MB");
+        }
+        String line = new String(buf.array(), 0, end, StandardCharsets.UTF_8);
+        if (line.startsWith("\uFEFF")) {
+            line = line.substring(1);
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : line.split(",", -1)) {
+            names.add(name.replace("\"", "").trim());
+        }
+        return new Header(names.toArray(new String[0]), Math.min(end + 1, channel.size()));
+    }
+
+    private static Path cachePath(Path csv, String[] numericColumns, String[] categoricalColumns) {
+        int spec = 31 * Arrays.hashCode(numericColumns) + Arrays.hashCode(categoricalColumns);
+        return csv.resolveSibling(csv.getFileName() + "." + Integer.toHexString(spec) + ".colcache");
+    }
+
+    private static void writeCache(Path cache, Path csv, ColumnarTable table) throws IOException {
+        String[] numericNames = table.numericNames();
+        String[] categoricalNames = table.categoricalNames();
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(headerBytes)) {
+            out.writeLong(Files.size(csv));
+            out.writeLong(Files.getLastModifiedTime(csv).toMillis());
+            out.writeInt(table.rowCount());
+            out.writeInt(numericNames.length);
+            out.writeInt(categoricalNames.length);
+            for (String name : numericNames) {
+                out.writeUTF(name);
+            }
+            for (String name : categoricalNames) {
+                out.writeUTF(name);
+                String[] dictionary = table.dictionary(name);
+                out.writeInt(dictionary.length);
+                for (String value : dictionary) {
+                    out.writeUTF(value);
+                }
+            }
+        }
+        byte[] meta = headerBytes.toByteArray();
+
+        Path tmp = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long dataStart = align8(12L + meta.length);
+            ByteBuffer prefix = ByteBuffer.allocate((int) dataStart).order(ByteOrder.LITTLE_ENDIAN);
+            prefix.putInt(CACHE_MAGIC).putInt(CACHE_VERSION).putInt(meta.length).put(meta);
+            prefix.position(0);
+            writeFully(channel, prefix);
+
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (double[] column : table.numericColumns()) {
+                for (int from = 0; from < column.length; ) {
+                    int count = Math.min(column.length - from, out.capacity() / Double.BYTES);
+                    out.clear();
+                    out.asDoubleBuffer().put(column, from, count);
+                    out.limit(count * Double.BYTES);
+                    writeFully(channel, out);
+                    from += count;
+                }
+            }
+            for (String name : categoricalNames) {
+                int[] column = table.codes(name);
+                for (int from = 0; from < column.length; ) {
+                    int count = Math.min(column.length - from, out.capacity() / Integer.BYTES);
+                    out.clear();
+                    out.asIntBuffer().put(column, from, count);
+                    out.limit(count * Integer.BYTES);
+                    writeFully(channel, out);
+                    from += count;
+                }
+            }
+        }
+        Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ColumnarTable readCache(Path cache, Path csv, String[] numericColumns,
+                                           String[] categoricalColumns) throws IOException {
+        if (!Files.exists(cache) || Files.size(cache) > Integer.MAX_VALUE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != CACHE_MAGIC || mapped.getInt(4) != CACHE_VERSION) {
+                return null;
+            }
+            int metaLength = mapped.getInt(8);
+            ByteBuffer meta = mapped.slice(12, metaLength).order(ByteOrder.BIG_ENDIAN);
+            if (meta.getLong() != Files.size(csv) || meta.getLong() != Files.getLastModifiedTime(csv).toMillis()) {
+                return null;
+            }
+            int rows = meta.getInt();
+            if (meta.getInt() != numericColumns.length || meta.getInt() != categoricalColumns.length) {
+                return null;
+            }
+            for (String name : numericColumns) {
+                if (!name.equals(readUtf(meta))) {
+                    return null;
+                }
+            }
+            String[][] dictionaries = new String[categoricalColumns.length][];
+            for (int k = 0; k < categoricalColumns.length; k++) {
+                if (!categoricalColumns[k].equals(readUtf(meta))) {
+                    return null;
+                }
+                dictionaries[k] = new String[meta.getInt()];
+                for (int i = 0; i < dictionaries[k].length; i++) {
+                    dictionaries[k][i] = readUtf(meta);
+                }
+            }
+
+            int position = (int) align8(12L + metaLength);
+            double[][] numeric = new double[numericColumns.length][rows];
+            for (double[] column : numeric) {
+                mapped.slice(position, rows * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(column);
+                position += rows * Double.BYTES;
+            }
+            int[][] codes = new int[categoricalColumns.length][rows];
+            for (int[] column : codes) {
+                mapped.slice(position, rows * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(column);
+                position += rows * Integer.BYTES;
+            }
+            return new ColumnarTable(rows, numericColumns.clone(), numeric, categoricalColumns.clone(), codes, dictionaries);
+        } catch (RuntimeException e) {
+            System.out.println("Warning: Ignoring unreadable column cache " + cache + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read a string written by DataOutputStream.writeUTF (plain ASCII/UTF-8 names and labels)
+     */
+    private static String readUtf(ByteBuffer buf) {
+        int length = buf.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private static long align8(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static final class Header {
+        final String[] names;
+        final long dataStart;
+
+        Header(String[] names, long dataStart) {
+            this.names = names;
+            this.dataStart = dataStart;
+        }
+    }
+
+    private static final class ChunkResult {
+        final Block block;
+        final ByteDictionary[] dictionaries;
+
+        ChunkResult(Block block, ByteDictionary[] dictionaries) {
+            this.block = block;
+            this.dictionaries = dictionaries;
+        }
+    }
+
+    private interface BlockSink {
+        Block full(Block block);
+    }
+
+    /**
+     * A run of parsed rows with fixed capacity
+     */
+    private static final class Block {
+        final double[][] numeric;
+        final int[][] codes;
+        final int capacity;
+        int rows;
+
+        Block(int numericCount, int categoricalCount, int capacity) {
+            this.numeric = new double[numericCount][capacity];
+            this.codes = new int[categoricalCount][capacity];
+            this.capacity = capacity;
+        }
+
+        ColumnarTable toTable(String[] numericColumns, String[] categoricalColumns, ByteDictionary[] dictionaries) {
+            double[][] numericCopy = new double[numeric.length][];
+            for (int k = 0; k < numeric.length; k++) {
+                numericCopy[k] = rows == capacity ? numeric[k] : Arrays.copyOf(numeric[k], rows);
+            }
+            int[][] codesCopy = new int[codes.length][];
+            String[][] values = new String[codes.length][];
+            for (int k = 0; k < codes.length; k++) {
+                codesCopy[k] = rows == capacity ? codes[k] : Arrays.copyOf(codes[k], rows);
+                values[k] = dictionaries[k].values();
+            }
+            return new ColumnarTable(rows, numericColumns.clone(), numericCopy, categoricalColumns.clone(), codesCopy, values);
+        }
+    }
+
+    /**
+     * Parses lines of mapped bytes into a Block, writing each wanted field straight into its column
+     */
+    private static final class ChunkParser {
+        private final int[] numericSlot;     // per CSV field: numeric column index or -1
+        private final int[] categoricalSlot; // per CSV field: categorical column index or -1
+        private final int categoricalCount;
+
+        ChunkParser(String[] header, String[] numericColumns, String[] categoricalColumns) throws IOException {
+            numericSlot = new int[header.length];
+            categoricalSlot = new int[header.length];
+            Arrays.fill(numericSlot, -1);
+            Arrays.fill(categoricalSlot, -1);
+            assignSlots(header, numericColumns, numericSlot);
+            assignSlots(header, categoricalColumns, categoricalSlot);
+            categoricalCount = categoricalColumns.length;
+        }
+
+        private static void assignSlots(String[] header, String[] columns, int[] slots) throws IOException {
+            for (int k = 0; k < columns.length; k++) {
+                int field = Arrays.asList(header).indexOf(columns[k]);
+                if (field < 0) {
+                    throw new IOException("Column '" + columns[k] + "' not found in CSV header " + Arrays.toString(header));
+                }
+                slots[field] = k;
+            }
+        }
+
+        ByteDictionary[] newDictionaries() {
+            ByteDictionary[] dictionaries = new ByteDictionary[categoricalCount];
+            for (int k = 0; k < categoricalCount; k++) {
+                dictionaries[k] = new ByteDictionary();
+            }
+            return dictionaries;
+        }
+
+        Block parseLines(ByteBuffer buf, int from, int to, Block block, ByteDictionary[] dictionaries, BlockSink sink) {
+            int pos = from;
+            while (pos < to) {
+                int lineEnd = pos;
+                while (lineEnd < to && buf.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int contentEnd = lineEnd;
+                if (contentEnd > pos && buf.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+                if (contentEnd > pos) {
+                    if (block.rows == block.capacity) {
+                        block = sink.full(block);
+                    }
+                    parseRow(buf, pos, contentEnd, block, dictionaries);
+                }
+                pos = lineEnd + 1;
+            }
+            return block;
+        }
+
+        private void parseRow(ByteBuffer buf, int start, int end, Block block, ByteDictionary[] dictionaries) {
+            int row = block.rows++;
+            for (double[] column : block.numeric) {
+                column[row] = Double.NaN;
+            }
+            for (int[] column : block.codes) {
+                column[row] = -1;
+            }
+
+            int field = 0;
+            int fieldStart = start;
+            while (fieldStart <= end && field < numericSlot.length) {
+                int fieldEnd = fieldStart;
+                if (fieldEnd < end && buf.get(fieldEnd) == '"') {
+                    fieldEnd++;
+                    while (fieldEnd < end && buf.get(fieldEnd) != '"') {
+                        fieldEnd++;
+                    }
+                }
+                while (fieldEnd < end && buf.get(fieldEnd) != ',') {
+                    fieldEnd++;
+                }
+
+                if (numericSlot[field] >= 0) {
+                    block.numeric[numericSlot[field]][row] = AsciiDoubleParser.parse(buf, fieldStart, fieldEnd);
+                } else if (categoricalSlot[field] >= 0) {
+                    int k = categoricalSlot[field];
+                    block.codes[k][row] = dictionaries[k].code(buf, fieldStart, fieldEnd);
+                }
+                field++;
+                fieldStart = fieldEnd + 1;
+            }
+        }
+    }
+
+    /**
+     * Open-addressing dictionary from byte ranges to codes; a value's bytes are only copied
+     * the first time it is seen
+     */
+    private static final class ByteDictionary {
+        private final List<byte[]> values = new ArrayList<>();
+        private int[] table = new int[64];
+        private int[] hashes = new int[64];
+
+        ByteDictionary() {
+            Arrays.fill(table, -1);
+        }
+
+        int code(ByteBuffer buf, int start, int end) {
+            while (start < end && isPadding(buf.get(start))) {
+                start++;
+            }
+            while (end > start && isPadding(buf.get(end - 1))) {
+                end--;
+            }
+            int hash = 0x811C9DC5;
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ buf.get(i)) * 0x01000193;
+            }
+
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while (table[slot] >= 0) {
+                if (hashes[slot] == hash && matches(values.get(table[slot]), buf, start, end)) {
+                    return table[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            byte[] value = new byte[end - start];
+            buf.get(start, value);
+            int code = values.size();
+            values.add(value);
+            table[slot] = code;
+            hashes[slot] = hash;
+            if (values.size() * 2 > table.length) {
+                grow();
+            }
+            return code;
+        }
+
+        String[] values() {
+            String[] result = new String[values.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = new String(values.get(i), StandardCharsets.UTF_8);
+            }
+            return result;
+        }
+
+        private void grow() {
+            int[] oldTable = table;
+            int[] oldHashes = hashes;
+            table = new int[oldTable.length * 2];
+            hashes = new int[oldTable.length * 2];
+            Arrays.fill(table, -1);
+            int mask = table.length - 1;
+            for (int i = 0; i < oldTable.length; i++) {
+                if (oldTable[i] >= 0) {
+                    int slot = oldHashes[i] & mask;
+                    while (table[slot] >= 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = oldTable[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+
+        private static boolean matches(byte[] value, ByteBuffer buf, int start, int end) {
+            if (value.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < value.length; i++) {
+                if (value[i] != buf.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isPadding(byte c) {
+            return c == ' ' || c == '\t' || c == '"';
+        }
+    }
+}
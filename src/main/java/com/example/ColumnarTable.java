@@ -0,0 +1,100 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * ColumnarTable - Training data held as primitive columns.
+ *
+ * Numeric columns are double[] (unparsable or empty fields are NaN). Categorical
+ * columns are dictionary encoded: an int[] of codes per row (-1 if the field is missing)
+ * plus the distinct values in order of first appearance.
+ */
+public class ColumnarTable {
+
+    private final int rowCount;
+    private final String[] numericNames;
+    private final double[][] numeric;
+    private final String[] categoricalNames;
+    private final int[][] codes;
+    private final String[][] dictionaries;
+
+    public ColumnarTable(int rowCount, String[] numericNames, double[][] numeric,
+                         String[] categoricalNames, int[][] codes, String[][] dictionaries) {
+        this.rowCount = rowCount;
+        this.numericNames = numericNames;
+        this.numeric = numeric;
+        this.categoricalNames = categoricalNames;
+        this.codes = codes;
+        this.dictionaries = dictionaries;
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public String[] numericNames() {
+        return numericNames.clone();
+    }
+
+    public String[] categoricalNames() {
+        return categoricalNames.clone();
+    }
+
+    /**
+     * @return the values of a numeric column (not a copy)
+     */
+    public double[] numeric(String name) {
+        return numeric[indexOf(numericNames, name)];
+    }
+
+    /**
+     * @return all numeric columns in the order they were requested (not copies)
+     */
+    public double[][] numericColumns() {
+        return numeric;
+    }
+
+    /**
+     * @return the dictionary codes of a categorical column (not a copy)
+     */
+    public int[] codes(String name) {
+        return codes[indexOf(categoricalNames, name)];
+    }
+
+    /**
+     * @return the distinct values of a categorical column, indexed by code
+     */
+    public String[] dictionary(String name) {
+        return dictionaries[indexOf(categoricalNames, name)];
+    }
+
+    /**
+     * Row indices where none of the numeric columns is NaN, i.e. rows that parsed cleanly
+     */
+    public int[] completeRows() {
+        int[] rows = new int[rowCount];
+        int count = 0;
+        for (int r = 0; r < rowCount; r++) {
+            boolean complete = true;
+            for (double[] column : numeric) {
+                if (Double.isNaN(column[r])) {
+                    complete = false;
+                    break;
+                }
+            }
+            if (complete) {
+                rows[count++] = r;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column: " + name);
+    }
+}
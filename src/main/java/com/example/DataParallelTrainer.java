@@ -0,0 +1,79 @@
+package com.example;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.ParallelWrapper;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+/**
+ * DataParallelTrainer - Runs training epochs either on the model directly (1 worker)
+ * or through a DL4J ParallelWrapper with N replicas on the local CPU cores.
+ *
+ * Modes (selected with --parallel-mode):
+ * - averaging: each replica fits its own batches and parameters are averaged
+ *              every --averaging-frequency iterations
+ * - shared:    replicas exchange encoded gradient updates after every iteration
+ *
+ * The wrapper keeps its replicas between epochs, so create one trainer per model
+ * and close it when training is done.
+ */
+public class DataParallelTrainer implements AutoCloseable {
+
+    private final MultiLayerNetwork model;
+    private final int workers;
+    private final ParallelWrapper wrapper;
+
+    public DataParallelTrainer(MultiLayerNetwork model, int workers, String mode, int averagingFrequency) {
+        this.model = model;
+        this.workers = Math.max(1, workers);
+        if (this.workers == 1) {
+            this.wrapper = null;
+            return;
+        }
+
+        ParallelWrapper.TrainingMode trainingMode = "shared".equalsIgnoreCase(mode)
+                ? ParallelWrapper.TrainingMode.SHARED_GRADIENTS
+                : ParallelWrapper.TrainingMode.AVERAGING;
+        this.wrapper = new ParallelWrapper.Builder<>(model)
+                .workers(this.workers)
+                .prefetchBuffer(this.workers * 2)
+                .averagingFrequency(averagingFrequency)
+                .reportScoreAfterAveraging(true)
+                .trainingMode(trainingMode)
+                .build();
+        System.out.println("Data-parallel training with " + this.workers + " workers (" + trainingMode + ")");
+    }
+
+    /**
+     * Build a trainer from the --workers, --parallel-mode and --averaging-frequency flags
+     */
+    public static DataParallelTrainer fromArgs(MultiLayerNetwork model, TrainerArgs args) {
+        return new DataParallelTrainer(model, args.getWorkers(),
+                args.getString("parallel-mode", "averaging"),
+                args.getInt("averaging-frequency", 3));
+    }
+
+    /**
+     * Fit one full pass over the iterator
+     */
+    public void fitEpoch(DataSetIterator iterator) {
+        if (wrapper == null) {
+            model.fit(iterator);
+        } else {
+            if (!iterator.hasNext() && iterator.resetSupported()) {
+                iterator.reset();
+            }
+            wrapper.fit(iterator);
+        }
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    @Override
+    public void close() {
+        if (wrapper != null) {
+            wrapper.shutdown();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example;
+
+import com.example.mlbackend.util.AdaptiveThreshold;
+
+import java.util.Random;
+
+/**
+ * DeviceThresholdCheck - Replays synthetic reconstruction errors through AdaptiveThreshold,
+ * the way DeviceThresholdService.isAnomaly does, and checks that per-device thresholds adapt.
+ *
+ * Three devices are simulated against one global threshold (the p99 of a quiet fleet):
+ *
+ *   quiet   errors at the fleet's level; flags about 1% of readings
+ *   noisy   normal errors several times the global threshold; must end with a higher
+ *           threshold than the global one and flag about 1% of readings, not all of them
+ *   faulty  starts like quiet, then fails with errors 20x higher; must keep alerting
+ *
+ * Errors are log-normal, as reconstruction MSE roughly is. The exit code is 1 if a check fails.
+ *
+ *   java com.example.DeviceThresholdCheck [--samples=20000] [--warmup-samples=500]
+ *        [--percentile=99] [--outlier-factor=3] [--sketch-k=64] [--seed=42]
+ */
+public class DeviceThresholdCheck {
+
+    private static final double QUIET_MEDIAN = 0.01;
+    private static final double NOISY_MEDIAN = 0.08;
+    private static final double SIGMA = 0.4;
+    private static final double FAULT_FACTOR = 20.0;
+
+    public static void main(String[] args) {
+        TrainerArgs options = TrainerArgs.parse(args);
+        int samples = options.getInt("samples", 20_000);
+        long warmup = options.getInt("warmup-samples", 500);
+        double percentile = options.getDouble("percentile", 99.0);
+        double outlierFactor = options.getDouble("outlier-factor", 3.0);
+        int k = options.getInt("sketch-k", 64);
+        Random random = new Random(options.getInt("seed", 42));
+
+        // Global threshold: p99 of the quiet fleet's log-normal errors
+        double globalThreshold = QUIET_MEDIAN * Math.exp(2.326 * SIGMA);
+        System.out.printf("Global threshold %.5f, %d samples per device, warm-up %d%n",
+                globalThreshold, samples, warmup);
+
+        boolean passed = true;
+
+        AdaptiveThreshold quiet = new AdaptiveThreshold(k, percentile, warmup, outlierFactor);
+        double quietRate = flaggedRate(quiet, globalThreshold, samples, warmup, random, QUIET_MEDIAN, -1);
+        passed &= report("quiet", quiet.threshold(globalThreshold), quietRate, quietRate < 0.03);
+
+        AdaptiveThreshold noisy = new AdaptiveThreshold(k, percentile, warmup, outlierFactor);
+        double noisyRate = flaggedRate(noisy, globalThreshold, samples, warmup, random, NOISY_MEDIAN, -1);
+        double noisyThreshold = noisy.threshold(globalThreshold);
+        passed &= report("noisy", noisyThreshold, noisyRate, noisyThreshold > globalThreshold && noisyRate < 0.03);
+
+        AdaptiveThreshold faulty = new AdaptiveThreshold(k, percentile, warmup, outlierFactor);
+        double faultRate = flaggedRate(faulty, globalThreshold, samples, warmup, random, QUIET_MEDIAN, samples / 2);
+        passed &= report("faulty", faulty.threshold(globalThreshold), faultRate, faultRate > 0.95);
+
+        System.out.println(passed ? "PASS" : "FAIL");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Judge and learn samples errors; returns the share flagged after warm-up, or after faultAt
+     * if that is not negative (errors from then on are FAULT_FACTOR times higher)
+     */
+    private static double flaggedRate(AdaptiveThreshold threshold, double globalThreshold, int samples,
+                                      long warmup, Random random, double median, int faultAt) {
+        int from = faultAt >= 0 ? faultAt : (int) warmup;
+        int flagged = 0;
+        for (int i = 0; i < samples; i++) {
+            double error = median * Math.exp(SIGMA * random.nextGaussian());
+            if (faultAt >= 0 && i >= faultAt) {
+                error *= FAULT_FACTOR;
+            }
+            double current = threshold.threshold(globalThreshold);
+            if (error > current && i >= from) {
+                flagged++;
+            }
+            threshold.observe(error, current);
+        }
+        return (double) flagged / (samples - from);
+    }
+
+    private static boolean report(String device, double threshold, double flaggedRate, boolean ok) {
+        System.out.printf("%-7s threshold %.5f, flagged %.2f%% -> %s%n",
+                device, threshold, flaggedRate * 100, ok ? "ok" : "FAILED");
+        return ok;
+    }
+}
@@ -0,0 +1,322 @@
+package com.example;
+
+import org.deeplearning4j.datasets.iterator.AsyncDataSetIterator;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * EarlyStoppingRunner - Epoch loop with validation-based early stopping and checkpoint/resume,
+ * shared by the DL4J trainers.
+ *
+ * The validation loss is evaluated every --eval-every iterations (default once per epoch).
+ * Training stops once --patience evaluations in a row did not improve the best loss by more
+ * than --min-delta, or after --max-epochs. The best parameters are put back into the model
+ * at the end, so the trainer saves the best network rather than the last one.
+ *
+ * At the end of every epoch the model (with updater state) and the run state are checkpointed
+ * to --checkpoint-dir/<name>/ (default checkpoints/). If the process dies, the next run of the
+ * same trainer with the same network configuration and data continues from the last completed
+ * epoch; --fresh ignores the checkpoint. The checkpoint is deleted once the run completes.
+ *
+ * With more than one data-parallel worker the wrapper consumes whole epochs, so validation
+ * then happens once per epoch regardless of --eval-every.
+ */
+public class EarlyStoppingRunner {
+
+    /**
+     * Validation loss of the current model; lower is better
+     */
+    public interface Scorer {
+        double score(MultiLayerNetwork model);
+    }
+
+    /**
+     * Summary of a finished run
+     */
+    public static class Result {
+        private final double bestScore;
+        private final int bestEpoch;
+        private final int epochsRun;
+        private final boolean stoppedEarly;
+
+        Result(double bestScore, int bestEpoch, int epochsRun, boolean stoppedEarly) {
+            this.bestScore = bestScore;
+            this.bestEpoch = bestEpoch;
+            this.epochsRun = epochsRun;
+            this.stoppedEarly = stoppedEarly;
+        }
+
+        public double getBestScore() {
+            return bestScore;
+        }
+
+        public int getBestEpoch() {
+            return bestEpoch;
+        }
+
+        public int getEpochsRun() {
+            return epochsRun;
+        }
+
+        public boolean isStoppedEarly() {
+            return stoppedEarly;
+        }
+    }
+
+    private final String name;
+    private final MultiLayerNetwork model;
+    private final DataParallelTrainer trainer;
+    private final Scorer validation;
+    private final int maxEpochs;
+    private final int patience;
+    private final double minDelta;
+    private final int evalEvery;
+    private final Path checkpointDir;
+    private final boolean fresh;
+
+    // Run state, persisted in the checkpoint
+    private int epoch;
+    private long iteration;
+    private double bestScore = Double.POSITIVE_INFINITY;
+    private int bestEpoch = -1;
+    private int evalsWithoutImprovement;
+    private INDArray bestParams;
+
+    public EarlyStoppingRunner(String name, MultiLayerNetwork model, DataParallelTrainer trainer, Scorer validation,
+                               int maxEpochs, int patience, double minDelta, int evalEvery,
+                               Path checkpointDir, boolean fresh) {
+        this.name = name;
+        this.model = model;
+        this.trainer = trainer;
+        this.validation = validation;
+        this.maxEpochs = maxEpochs;
+        this.patience = Math.max(1, patience);
+        this.minDelta = minDelta;
+        this.evalEvery = evalEvery;
+        this.checkpointDir = checkpointDir.resolve(name);
+        this.fresh = fresh;
+    }
+
+    /**
+     * Build a runner from the --max-epochs, --patience, --min-delta, --eval-every,
+     * --checkpoint-dir and --fresh flags
+     * @param defaultMaxEpochs epoch cap used when --max-epochs is not given
+     */
+    public static EarlyStoppingRunner fromArgs(String name, MultiLayerNetwork model, DataParallelTrainer trainer,
+                                               Scorer validation, int defaultMaxEpochs, TrainerArgs args) {
+        return new EarlyStoppingRunner(name, model, trainer, validation,
+                args.getInt("max-epochs", defaultMaxEpochs),
+                args.getInt("patience", 5),
+                args.getDouble("min-delta", 1e-4),
+                args.getInt("eval-every", 0),
+                Paths.get(args.getString("checkpoint-dir", "checkpoints")),
+                args.getBoolean("fresh", false));
+    }
+
+    /**
+     * Validation loss on a fixed held-out DataSet
+     */
+    public static Scorer lossOn(DataSet validationData) {
+        return model -> model.score(validationData);
+    }
+
+    /**
+     * Validation loss averaged over all examples of a held-out iterator (e.g. RNN windows)
+     */
+    public static Scorer averageLossOn(DataSetIterator validationData) {
+        return model -> {
+            validationData.reset();
+            double total = 0.0;
+            long examples = 0;
+            while (validationData.hasNext()) {
+                DataSet batch = validationData.next();
+                total += model.score(batch) * batch.numExamples();
+                examples += batch.numExamples();
+            }
+            return examples > 0 ? total / examples : Double.NaN;
+        };
+    }
+
+    /**
+     * Train until early stopping or the epoch cap, then load the best parameters into the model
+     */
+    public Result fit(TensorDataSetIterator iterator) throws IOException {
+        String fingerprint = fingerprint(iterator);
+        if (!fresh) {
+            resume(fingerprint);
+        }
+
+        boolean parallel = trainer.getWorkers() > 1;
+        if (parallel && evalEvery > 0) {
+            System.out.println("Note: --eval-every is ignored with data-parallel workers, validating once per epoch");
+        }
+        long iterationsPerEpoch = (iterator.numSamples() + iterator.batch() - 1) / iterator.batch();
+
+        boolean stop = false;
+        while (epoch < maxEpochs && !stop) {
+            if (parallel) {
+                trainer.fitEpoch(iterator);
+                iteration += iterationsPerEpoch;
+            } else {
+                iterator.reset();
+                // Prefetch the next batches on a background thread, as model.fit(iterator) would
+                DataSetIterator batches = iterator.asyncSupported()
+                        ? new AsyncDataSetIterator(iterator, 2, true) : iterator;
+                try {
+                    while (batches.hasNext()) {
+                        model.fit(batches.next());
+                        iteration++;
+                        if (evalEvery > 0 && iteration % evalEvery == 0 && evaluate(epoch + 1)) {
+                            stop = true;
+                            break;
+                        }
+                    }
+                } finally {
+                    if (batches instanceof AsyncDataSetIterator async) {
+                        async.shutdown();
+                    }
+                }
+                model.incrementEpochCount();
+            }
+            epoch++;
+            System.out.printf("[%s] Epoch %d/%d complete (%.0f samples/sec)%n",
+                    name, epoch, maxEpochs, iterator.samplesPerSecond());
+
+            if (!stop && (parallel || evalEvery <= 0)) {
+                stop = evaluate(epoch);
+            }
+            saveCheckpoint(fingerprint);
+        }
+
+        if (bestParams != null) {
+            model.setParams(bestParams);
+        }
+        System.out.printf("[%s] %s after %d epochs, best validation loss %.6f at epoch %d%n",
+                name, stop ? "Stopped early" : "Finished", epoch, bestScore, bestEpoch);
+        deleteCheckpoint();
+        return new Result(bestScore, bestEpoch, epoch, stop);
+    }
+
+    /**
+     * Score the model on the validation data and track the best parameters
+     * @param currentEpoch 1-based epoch the evaluation happens in
+     * @return true if training should stop
+     */
+    private boolean evaluate(int currentEpoch) throws IOException {
+        double score = validation.score(model);
+        if (score < bestScore - minDelta) {
+            bestScore = score;
+            bestEpoch = currentEpoch;
+            bestParams = model.params().dup();
+            evalsWithoutImprovement = 0;
+            writeModel(checkpointDir.resolve("best.zip"));
+            System.out.printf("[%s] Iteration %d: validation loss %.6f (new best)%n", name, iteration, score);
+        } else {
+            evalsWithoutImprovement++;
+            System.out.printf("[%s] Iteration %d: validation loss %.6f (no improvement %d/%d)%n",
+                    name, iteration, score, evalsWithoutImprovement, patience);
+        }
+        return evalsWithoutImprovement >= patience;
+    }
+
+    private void saveCheckpoint(String fingerprint) throws IOException {
+        writeModel(checkpointDir.resolve("last.zip"));
+
+        Properties state = new Properties();
+        state.setProperty("fingerprint", fingerprint);
+        state.setProperty("epoch", String.valueOf(epoch));
+        state.setProperty("iteration", String.valueOf(iteration));
+        state.setProperty("bestScore", String.valueOf(bestScore));
+        state.setProperty("bestEpoch", String.valueOf(bestEpoch));
+        state.setProperty("evalsWithoutImprovement", String.valueOf(evalsWithoutImprovement));
+        Path tmp = checkpointDir.resolve("state.properties.tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            state.store(out, "Training checkpoint for " + name);
+        }
+        Files.move(tmp, checkpointDir.resolve("state.properties"),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Continue from the last checkpoint if it belongs to the same network and data
+     */
+    private void resume(String fingerprint) throws IOException {
+        Path stateFile = checkpointDir.resolve("state.properties");
+        Path lastFile = checkpointDir.resolve("last.zip");
+        if (!Files.exists(stateFile) || !Files.exists(lastFile)) {
+            return;
+        }
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile)) {
+            state.load(in);
+        }
+        if (!fingerprint.equals(state.getProperty("fingerprint"))) {
+            System.out.println("[" + name + "] Ignoring checkpoint in " + checkpointDir
+                    + " (network configuration or data changed)");
+            return;
+        }
+
+        MultiLayerNetwork last = ModelSerializer.restoreMultiLayerNetwork(lastFile.toFile(), true);
+        model.setParams(last.params());
+        INDArray updaterState = last.getUpdater().getStateViewArray();
+        if (updaterState != null) {
+            model.getUpdater().getStateViewArray().assign(updaterState);
+        }
+        model.getLayerWiseConfigurations().setIterationCount(last.getLayerWiseConfigurations().getIterationCount());
+        model.getLayerWiseConfigurations().setEpochCount(last.getLayerWiseConfigurations().getEpochCount());
+
+        epoch = Integer.parseInt(state.getProperty("epoch"));
+        iteration = Long.parseLong(state.getProperty("iteration"));
+        bestScore = Double.parseDouble(state.getProperty("bestScore"));
+        bestEpoch = Integer.parseInt(state.getProperty("bestEpoch"));
+        evalsWithoutImprovement = Integer.parseInt(state.getProperty("evalsWithoutImprovement"));
+        Path bestFile = checkpointDir.resolve("best.zip");
+        if (Files.exists(bestFile)) {
+            bestParams = ModelSerializer.restoreMultiLayerNetwork(bestFile.toFile(), false).params();
+        }
+        System.out.printf("[%s] Resuming from checkpoint after epoch %d (best validation loss %.6f)%n",
+                name, epoch, bestScore);
+    }
+
+    private void writeModel(Path target) throws IOException {
+        Files.createDirectories(checkpointDir);
+        File tmp = target.resolveSibling(target.getFileName() + ".tmp").toFile();
+        ModelSerializer.writeModel(model, tmp, true);
+        Files.move(tmp.toPath(), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteCheckpoint() throws IOException {
+        if (!Files.exists(checkpointDir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(checkpointDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Identifies a run: the untrained network configuration, the data size and the stopping settings
+     */
+    private String fingerprint(TensorDataSetIterator iterator) {
+        String config = model.getLayerWiseConfigurations().toJson();
+        return Integer.toHexString(config.hashCode()) + "-" + iterator.numSamples() + "-" + iterator.batch()
+                + "-" + maxEpochs + "-" + evalEvery;
+    }
+}
@@ -14,48 +14,54 @@ public class FailurePredictionTrainer {
     public static void main(String[] args) {
         try {
             System.out.println("Starting FailurePredictionTrainer...");
+            TrainerArgs options = TrainerArgs.parse(args);
 
             // Load failure_prediction_data.csv
-            System.out.println("Loading failure_prediction_data.csv...");
-            CSVLoader loader = new CSVLoader();
-            loader.setSource(new File("data/failure_prediction_data.csv"));
-            Instances data = loader.getDataSet();
-            System.out.println("Loaded " + data.numInstances() + " instances.");
-
-            // Set class attribute (failure)
-            System.out.println("Setting class attribute...");
-            data.setClassIndex(data.numAttributes() - 1); // Last column: failure
-
-            // Train Random Forest
-            System.out.println("Training Random Forest...");
-            RandomForest rf = new RandomForest();
-            rf.setNumIterations(100); // Number of trees
-            try {
-                rf.buildClassifier(data);
-                System.out.println("Random Forest training complete.");
-            } catch (Exception e) {
-                System.err.println("Error during Random Forest training: " + e.getMessage());
-                e.printStackTrace();
-                return;
-            }
-
-            // Save model
-            System.out.println("Saving model...");
-            Path modelDir = Paths.get("model");
-            if (!Files.exists(modelDir)) {
-                Files.createDirectories(modelDir);
-                System.out.println("Created model directory.");
-            }
-            try {
-                SerializationHelper.write("model/rf_failure.model", rf);
-                System.out.println("Saved rf_failure.model to the 'model' folder");
-            } catch (Exception e) {
-                System.err.println("Error saving model: " + e.getMessage());
-                e.printStackTrace();
-            }
+            Instances data = loadData("data/failure_prediction_data.csv");
+            train(data, options);
         } catch (Exception e) {
             System.err.println("Error in FailurePredictionTrainer: " + e.getMessage());
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Load the failure prediction CSV with the class attribute (failure) set
+     */
+    public static Instances loadData(String dataFilePath) throws Exception {
+        System.out.println("Loading " + dataFilePath + "...");
+        CSVLoader loader = new CSVLoader();
+        loader.setSource(new File(dataFilePath));
+        Instances data = loader.getDataSet();
+        System.out.println("Loaded " + data.numInstances() + " instances.");
+
+        // Set class attribute (failure)
+        System.out.println("Setting class attribute...");
+        data.setClassIndex(data.numAttributes() - 1); // Last column: failure
+        return data;
+    }
+
+    /**
+     * Train the Random Forest and save rf_failure.model to --model-dir (default model/).
+     * Trees are built in parallel on --execution-slots threads (default all cores).
+     */
+    public static void train(Instances data, TrainerArgs options) throws Exception {
+        // Train Random Forest
+        System.out.println("Training Random Forest...");
+        RandomForest rf = new RandomForest();
+        rf.setNumIterations(100); // Number of trees
+        rf.setNumExecutionSlots(options.getExecutionSlots());
+        rf.buildClassifier(data);
+        System.out.println("Random Forest training complete.");
+
+        // Save model
+        System.out.println("Saving model...");
+        Path modelDir = Paths.get(options.getModelDir());
+        if (!Files.exists(modelDir)) {
+            Files.createDirectories(modelDir);
+            System.out.println("Created model directory.");
+        }
+        SerializationHelper.write(modelDir.resolve("rf_failure.model").toString(), rf);
+        System.out.println("Saved rf_failure.model to " + modelDir);
+    }
+}
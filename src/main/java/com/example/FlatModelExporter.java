@@ -0,0 +1,76 @@
+package com.example;
+
+import com.example.mlbackend.util.FlatModelArtifact;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.FileInputStream;
+
+/**
+ * FlatModelExporter - Converts trained DL4J models into the flat, memory-mappable
+ * artifact format read by ModelLoader. Called at the end of the DL4J trainers,
+ * or run on its own to convert existing models:
+ *
+ *   java com.example.FlatModelExporter                      (all DL4J models in model/)
+ *   java com.example.FlatModelExporter model/rul.model ...  (specific files)
+ */
+public class FlatModelExporter {
+
+    private static final String[] DEFAULT_MODELS = {
+            "model/autoencoder.model",
+            "model/rul.model",
+            "model/part_risk.model"
+    };
+
+    public static void main(String[] args) {
+        String[] paths = args.length > 0 ? args : DEFAULT_MODELS;
+        int exported = 0;
+
+        for (String path : paths) {
+            File modelFile = new File(path);
+            if (!modelFile.exists()) {
+                System.out.println("Skipping " + path + " (not found)");
+                continue;
+            }
+            try {
+                MultiLayerNetwork model = restore(modelFile);
+                File flatFile = export(model, modelFile);
+                System.out.println("Exported " + path + " -> " + flatFile.getPath()
+                        + " (" + model.numParams() + " params)");
+                exported++;
+            } catch (Exception e) {
+                System.err.println("Error exporting " + path + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        System.out.println("Exported " + exported + " of " + paths.length + " models");
+    }
+
+    /**
+     * Write the flat artifact next to the given zip model file
+     * @return the flat artifact that was written
+     */
+    public static File export(MultiLayerNetwork model, File modelFile) throws IOException {
+        File flatFile = FlatModelArtifact.siblingOf(modelFile);
+        FlatModelArtifact.write(model, flatFile);
+        return flatFile;
+    }
+
+    /**
+     * Restore a model written either by ModelSerializer or, as RulTrainer does,
+     * by plain Java serialization
+     */
+    private static MultiLayerNetwork restore(File modelFile) throws Exception {
+        try {
+            return ModelSerializer.restoreMultiLayerNetwork(modelFile);
+        } catch (Exception e) {
+            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(modelFile))) {
+                return (MultiLayerNetwork) ois.readObject();
+            }
+        }
+    }
+}
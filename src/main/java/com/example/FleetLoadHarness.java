@@ -0,0 +1,140 @@
+package com.example;
+
+import com.example.mlbackend.MlBackendApplication;
+import com.example.mlbackend.service.DataFetcherService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * FleetLoadHarness - End-to-end load test of the backend against PostgrestStub.
+ *
+ * Starts the stub with --devices synthetic devices, boots the backend in this JVM with
+ * supabase.url pointing at the stub, and runs --warmup-ticks + --ticks pipeline ticks through
+ * DataFetcherService.runPipeline. The scheduler and the listener are switched off, so the
+ * harness drives every tick. Ticks start at least one reading interval apart, so every device
+ * has a new reading and no window is skipped as already scored.
+ *
+ * For each measured tick it prints the tick latency, predictions stored and stub requests.
+ * Then it reports end-to-end devices/sec (predictions stored / time spent in ticks) and p50/p99
+ * tick latency. From --fault-from-tick on, the stub adds --fault-latency-ms to every request
+ * and fails --fault-error-rate of them, to show how a slow or flaky Supabase affects a tick.
+ *
+ * Needs the model files the backend loads at startup (see RUNNING.md).
+ *
+ *   java com.example.FleetLoadHarness [--devices=1000] [--pipeline=staged|virtual|single]
+ *        [--transport=json|csv] [--ticks=30] [--warmup-ticks=3] [--reading-ms=2000]
+ *        [--latency-ms=0] [--jitter-ms=0] [--error-rate=0]
+ *        [--fault-from-tick=-1] [--fault-latency-ms=200] [--fault-error-rate=0.05]
+ *        [--data=data/part_risk_data.csv]
+ */
+public class FleetLoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        TrainerArgs options = TrainerArgs.parse(args);
+        int devices = options.getInt("devices", 1000);
+        String pipeline = options.getString("pipeline", "staged");
+        int ticks = Math.max(1, options.getInt("ticks", 30));
+        int warmupTicks = options.getInt("warmup-ticks", 3);
+        // The stub's readings are whole seconds apart
+        int readingMs = Math.max(1000, options.getInt("reading-ms", 2000) / 1000 * 1000);
+        int faultFromTick = options.getInt("fault-from-tick", -1);
+
+        try (PostgrestStub stub = new PostgrestStub(devices, readingMs, 100, Math.max(10000, devices * 2),
+                Paths.get(options.getString("data", "data/part_risk_data.csv")))) {
+            stub.setLatency(options.getInt("latency-ms", 0), options.getInt("jitter-ms", 0));
+            stub.setErrorRate(options.getDouble("error-rate", 0));
+            String url = stub.start(0);
+
+            String transport = options.getString("transport", "json");
+            try (ConfigurableApplicationContext context = startBackend(stub, pipeline, transport)) {
+                DataFetcherService dataFetcherService = context.getBean(DataFetcherService.class);
+                System.out.printf("%d devices, pipeline=%s, transport=%s, stub at %s%n", devices, pipeline,
+                        transport, url);
+                System.out.printf("%-6s %10s %10s %8s %8s %8s%n", "tick", "ms", "stored", "reads", "writes", "errors");
+
+                long[] tickNanos = new long[ticks];
+                long stored = 0;
+                for (int tick = -warmupTicks; tick < ticks; tick++) {
+                    if (tick == faultFromTick) {
+                        stub.setLatency(options.getInt("fault-latency-ms", 200), options.getInt("jitter-ms", 0));
+                        stub.setErrorRate(options.getDouble("fault-error-rate", 0.05));
+                        System.out.println("-- faults on from here --");
+                    }
+                    long predictions = stub.predictionsStored();
+                    long reads = stub.readRequests();
+                    long writes = stub.writeRequests();
+                    long errors = stub.injectedErrors();
+                    long start = System.nanoTime();
+                    dataFetcherService.runPipeline();
+                    long nanos = System.nanoTime() - start;
+
+                    long tickStored = stub.predictionsStored() - predictions;
+                    if (tick >= 0) {
+                        tickNanos[tick] = nanos;
+                        stored += tickStored;
+                    }
+                    System.out.printf("%-6s %10.1f %10d %8d %8d %8d%n", tick < 0 ? "w" + (tick + warmupTicks) : tick,
+                            nanos / 1e6, tickStored, stub.readRequests() - reads, stub.writeRequests() - writes,
+                            stub.injectedErrors() - errors);
+
+                    // Wait for the next reading so the following tick has new data for every device
+                    long remainingMs = readingMs - nanos / 1_000_000;
+                    if (remainingMs > 0 && tick < ticks - 1) {
+                        Thread.sleep(remainingMs);
+                    }
+                }
+
+                long total = Arrays.stream(tickNanos).sum();
+                long[] sorted = tickNanos.clone();
+                Arrays.sort(sorted);
+                System.out.printf("%nmeasured ticks: %d, predictions stored: %d%n", ticks, stored);
+                System.out.printf("end-to-end: %.0f devices/sec%n", stored / (total / 1e9));
+                System.out.printf("tick latency: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                        percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Boot the backend in this JVM against the stub, without web server, scheduler or listener,
+     * scoring the stub's devices with the given pipeline (staged, virtual or single)
+     */
+    static ConfigurableApplicationContext startBackend(PostgrestStub stub, String pipeline, String transport) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("supabase.url", stub.url());
+        properties.put("supabase.key", "stub");
+        properties.put("supabase.transport.format", transport);
+        // Neither SchedulerService nor SensorDataListener: the caller runs the ticks
+        properties.put("pipeline.ingestion.mode", "harness");
+        properties.put("pipeline.staged.enabled", "staged".equals(pipeline));
+        properties.put("pipeline.virtual-threads.enabled", "virtual".equals(pipeline));
+        properties.put("pipeline.fleet.device-ids", String.join(",", stub.deviceIds()));
+        properties.put("storage.copy.enabled", false);
+        properties.put("cluster.enabled", false);
+        properties.put("database.pool.minimum-idle", 0);
+        // Per-prediction INFO logging would dominate the measurement
+        properties.put("logging.level.com.example.mlbackend", "WARN");
+
+        // As command line arguments, so they take precedence over application.properties
+        String[] backendArgs = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(MlBackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(backendArgs);
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values
+     */
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,94 @@
+package com.example;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.SplitTestAndTrain;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ParallelScalingBenchmark - Trains the part risk network on data/part_risk_data.csv with
+ * 1, 2, 4, ... up to all cores as data-parallel workers, and reports wall time, throughput
+ * and test accuracy for each worker count.
+ *
+ * A run fails the convergence check if its accuracy falls more than --tolerance below the
+ * single-worker accuracy; the process then exits with status 1.
+ *
+ *   java com.example.ParallelScalingBenchmark [--epochs=10] [--batch-size=32]
+ *        [--parallel-mode=averaging|shared] [--averaging-frequency=3] [--tolerance=0.02]
+ */
+public class ParallelScalingBenchmark {
+
+    private static final int RANDOM_SEED = 123;
+    private static final double TRAIN_RATIO = 0.8;
+
+    public static void main(String[] args) throws Exception {
+        TrainerArgs options = TrainerArgs.parse(args);
+        String dataFilePath = options.getString("data", "data/part_risk_data.csv");
+        int epochs = options.getInt("epochs", PartRiskTrainer.NUM_EPOCHS);
+        int batchSize = options.getInt("batch-size", PartRiskTrainer.BATCH_SIZE);
+        String mode = options.getString("parallel-mode", "averaging");
+        int averagingFrequency = options.getInt("averaging-frequency", 3);
+        double tolerance = options.getDouble("tolerance", 0.02);
+
+        DataSet allData = PartRiskTrainer.loadData(dataFilePath);
+        allData.shuffle(RANDOM_SEED);
+        NormalizerMinMaxScaler normalizer = new NormalizerMinMaxScaler();
+        normalizer.fit(allData);
+        normalizer.transform(allData);
+        SplitTestAndTrain split = allData.splitTestAndTrain(TRAIN_RATIO);
+        DataSet trainingData = split.getTrain();
+        DataSet testData = split.getTest();
+
+        List<Integer> workerCounts = new ArrayList<>();
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int workers = 1; workers < cores; workers *= 2) {
+            workerCounts.add(workers);
+        }
+        workerCounts.add(cores);
+
+        System.out.printf("%-8s %10s %14s %10s %8s%n", "workers", "seconds", "samples/sec", "accuracy", "status");
+        double baselineSeconds = 0;
+        double baselineAccuracy = 0;
+        boolean allConverged = true;
+
+        for (int workers : workerCounts) {
+            MultiLayerNetwork model = PartRiskTrainer.buildModel(
+                    PartRiskTrainer.LEARNING_RATE, PartRiskTrainer.HIDDEN_LAYER_SIZE);
+            TensorDataSetIterator iterator = TensorDataSetIterator.rows(
+                    trainingData.getFeatures(), trainingData.getLabels(), batchSize, true, RANDOM_SEED);
+
+            long start = System.nanoTime();
+            try (DataParallelTrainer trainer = new DataParallelTrainer(model, workers, mode, averagingFrequency)) {
+                for (int epoch = 0; epoch < epochs; epoch++) {
+                    trainer.fitEpoch(iterator);
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Evaluation eval = new Evaluation();
+            eval.eval(testData.getLabels(), model.output(testData.getFeatures()));
+            double accuracy = eval.accuracy();
+
+            if (workers == 1) {
+                baselineSeconds = seconds;
+                baselineAccuracy = accuracy;
+            }
+            boolean converged = accuracy >= baselineAccuracy - tolerance;
+            allConverged &= converged;
+
+            double samplesPerSecond = (double) iterator.numSamples() * epochs / seconds;
+            System.out.printf("%-8d %10.2f %14.0f %10.4f %8s  (speedup %.2fx)%n",
+                    workers, seconds, samplesPerSecond, accuracy,
+                    converged ? "ok" : "DIVERGED", baselineSeconds / seconds);
+        }
+
+        if (!allConverged) {
+            System.err.println("Accuracy dropped more than " + tolerance + " below the single-worker baseline");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.example;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.SplitTestAndTrain;
+import org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PartRiskHyperparameterSearch - Searches learning rate, hidden layer size and batch size of the
+ * part risk network and reports the accuracy/latency Pareto front.
+ *
+ * Candidates are sampled at random. With --strategy=halving (default) they go through successive
+ * halving: every rung trains the survivors for more epochs and keeps the best 1/--eta of them,
+ * ranked by Pareto front (accuracy vs. latency) and then accuracy. With --strategy=random every
+ * candidate gets the full --max-epochs.
+ *
+ * Up to --parallel candidates train at the same time; ND4J's thread pool is limited so that
+ * each one gets an equal share of the cores. Inference latency is measured per candidate up front,
+ * one at a time, as the median time of a single-row output() call, which is how the serving
+ * side calls the model.
+ *
+ *   java com.example.PartRiskHyperparameterSearch [--candidates=27] [--strategy=halving|random]
+ *        [--parallel=N] [--eta=3] [--min-epochs=2] [--max-epochs=18] [--seed=42]
+ *        [--target-accuracy=0.9] [--output=part_risk_search.csv] [--derived-features=engine|csv]
+ */
+public class PartRiskHyperparameterSearch {
+
+    private static final int[] HIDDEN_LAYER_SIZES = {4, 8, 16, 32, 64, 128};
+    private static final int[] BATCH_SIZES = {16, 32, 64, 128};
+    private static final double MIN_LEARNING_RATE = 1e-4;
+    private static final double MAX_LEARNING_RATE = 1e-2;
+    private static final int LATENCY_WARMUP_CALLS = 200;
+    private static final int LATENCY_TIMED_CALLS = 2000;
+
+    /**
+     * One sampled configuration and its training progress
+     */
+    private static class Candidate {
+        final int id;
+        final double learningRate;
+        final int hiddenLayerSize;
+        final int batchSize;
+        final MultiLayerNetwork model;
+        int epochsTrained;
+        double accuracy = Double.NaN;
+        double latencyMicros;
+        int rung;
+
+        Candidate(int id, double learningRate, int hiddenLayerSize, int batchSize) {
+            this.id = id;
+            this.learningRate = learningRate;
+            this.hiddenLayerSize = hiddenLayerSize;
+            this.batchSize = batchSize;
+            this.model = PartRiskTrainer.buildModel(learningRate, hiddenLayerSize);
+        }
+
+        long numParams() {
+            return model.numParams();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("#%-3d lr=%.5f hidden=%-3d batch=%-3d params=%-5d epochs=%-3d accuracy=%.4f latency=%.1fus",
+                    id, learningRate, hiddenLayerSize, batchSize, numParams(), epochsTrained, accuracy, latencyMicros);
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.out.println("Starting PartRiskHyperparameterSearch...");
+            TrainerArgs options = TrainerArgs.parse(args);
+            int numCandidates = options.getInt("candidates", 27);
+            String strategy = options.getString("strategy", "halving");
+            int cores = Runtime.getRuntime().availableProcessors();
+            int parallel = Math.max(1, Math.min(options.getInt("parallel", Math.max(1, cores / 2)), numCandidates));
+            int eta = Math.max(2, options.getInt("eta", 3));
+            int minEpochs = Math.max(1, options.getInt("min-epochs", 2));
+            int maxEpochs = Math.max(minEpochs, options.getInt("max-epochs", 18));
+            long seed = options.getInt("seed", 42);
+
+            // Same preprocessing and split as PartRiskTrainer; the test split is only used for the final report
+            DataSet allData = PartRiskTrainer.loadData(options.getString("data", "data/part_risk_data.csv"),
+                    PartRiskTrainer.engineFeatures(options));
+            allData.shuffle(123);
+            NormalizerMinMaxScaler normalizer = new NormalizerMinMaxScaler();
+            normalizer.fit(allData);
+            normalizer.transform(allData);
+            SplitTestAndTrain testAndTrain = allData.splitTestAndTrain(0.8);
+            DataSet testData = testAndTrain.getTest();
+            SplitTestAndTrain fitAndValidation = testAndTrain.getTrain().splitTestAndTrain(0.9);
+            DataSet fitData = fitAndValidation.getTrain();
+            DataSet validationData = fitAndValidation.getTest();
+            System.out.println("Fit/validation/test sizes: " + fitData.numExamples() + "/"
+                    + validationData.numExamples() + "/" + testData.numExamples());
+
+            // Each concurrently training candidate gets an equal share of the cores
+            int threadsPerCandidate = Math.max(1, cores / parallel);
+            Nd4j.getEnvironment().setMaxThreads(threadsPerCandidate);
+            System.out.println("Training " + parallel + " candidates at a time with " + threadsPerCandidate + " threads each");
+
+            List<Candidate> candidates = sample(numCandidates, new Random(seed));
+            INDArray singleRow = validationData.getFeatures().getRow(0, true);
+            for (Candidate candidate : candidates) {
+                candidate.latencyMicros = measureLatencyMicros(candidate.model, singleRow);
+            }
+
+            long start = System.nanoTime();
+            List<Candidate> finalists;
+            ExecutorService pool = Executors.newFixedThreadPool(parallel);
+            try {
+                if ("random".equalsIgnoreCase(strategy)) {
+                    train(pool, candidates, maxEpochs, fitData, validationData);
+                    finalists = candidates;
+                } else {
+                    finalists = successiveHalving(pool, candidates, eta, minEpochs, maxEpochs, fitData, validationData);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            System.out.printf("Search finished in %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+            System.out.println("All candidates (by accuracy):");
+            candidates.stream()
+                    .sorted(Comparator.comparingInt((Candidate c) -> -c.rung).thenComparingDouble(c -> -c.accuracy))
+                    .forEach(c -> System.out.println("  " + c));
+
+            List<Candidate> front = paretoFront(finalists);
+            front.sort(Comparator.comparingDouble(c -> c.latencyMicros));
+            System.out.println("Pareto front (accuracy vs. latency), with test accuracy:");
+            for (Candidate candidate : front) {
+                System.out.printf("  %s test_accuracy=%.4f%n", candidate, accuracy(candidate.model, testData));
+            }
+
+            if (options.has("target-accuracy")) {
+                double target = options.getDouble("target-accuracy", 0.0);
+                front.stream()
+                        .filter(c -> c.accuracy >= target)
+                        .min(Comparator.comparingLong(Candidate::numParams))
+                        .ifPresentOrElse(
+                                c -> System.out.println("Smallest network with accuracy >= " + target + ": " + c),
+                                () -> System.out.println("No candidate reached accuracy " + target));
+            }
+
+            if (options.has("output")) {
+                writeCsv(Paths.get(options.getString("output", "part_risk_search.csv")), candidates, front);
+            }
+        } catch (Exception e) {
+            System.err.println("Error in PartRiskHyperparameterSearch: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static List<Candidate> sample(int count, Random random) {
+        List<Candidate> candidates = new ArrayList<>();
+        double logMin = Math.log(MIN_LEARNING_RATE);
+        double logMax = Math.log(MAX_LEARNING_RATE);
+        for (int i = 0; i < count; i++) {
+            double learningRate = Math.exp(logMin + random.nextDouble() * (logMax - logMin));
+            int hidden = HIDDEN_LAYER_SIZES[random.nextInt(HIDDEN_LAYER_SIZES.length)];
+            int batch = BATCH_SIZES[random.nextInt(BATCH_SIZES.length)];
+            candidates.add(new Candidate(i, learningRate, hidden, batch));
+        }
+        return candidates;
+    }
+
+    /**
+     * Train the candidates in rungs of increasing epochs, keeping the best 1/eta after each rung
+     * @return the candidates that completed the last rung
+     */
+    private static List<Candidate> successiveHalving(ExecutorService pool, List<Candidate> candidates, int eta,
+                                                     int minEpochs, int maxEpochs,
+                                                     DataSet fitData, DataSet validationData) throws Exception {
+        List<Candidate> survivors = new ArrayList<>(candidates);
+        int epochs = minEpochs;
+        int rung = 0;
+        while (true) {
+            System.out.println("Rung " + rung + ": training " + survivors.size() + " candidates to " + epochs + " epochs");
+            train(pool, survivors, epochs, fitData, validationData);
+            for (Candidate candidate : survivors) {
+                candidate.rung = rung;
+            }
+            if (epochs >= maxEpochs || survivors.size() <= 1) {
+                return survivors;
+            }
+            int keep = Math.max(1, survivors.size() / eta);
+            survivors = rank(survivors).subList(0, keep);
+            epochs = Math.min(maxEpochs, epochs * eta);
+            rung++;
+        }
+    }
+
+    /**
+     * Train every candidate up to the given total number of epochs on the worker pool
+     */
+    private static void train(ExecutorService pool, List<Candidate> candidates, int epochs,
+                              DataSet fitData, DataSet validationData) throws InterruptedException, ExecutionException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            futures.add(pool.submit(() -> {
+                TensorDataSetIterator iterator = TensorDataSetIterator.rows(fitData.getFeatures(), fitData.getLabels(),
+                        candidate.batchSize, true, 123 + candidate.id);
+                while (candidate.epochsTrained < epochs) {
+                    candidate.model.fit(iterator);
+                    candidate.epochsTrained++;
+                }
+                candidate.accuracy = accuracy(candidate.model, validationData);
+                System.out.println("  " + candidate);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Order by Pareto front (non-dominated candidates first, then the front that remains once
+     * those are removed, ...) and by accuracy within a front
+     */
+    private static List<Candidate> rank(List<Candidate> candidates) {
+        List<Candidate> remaining = new ArrayList<>(candidates);
+        List<Candidate> ranked = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            List<Candidate> front = paretoFront(remaining);
+            front.sort(Comparator.comparingDouble((Candidate c) -> -c.accuracy));
+            ranked.addAll(front);
+            remaining.removeAll(front);
+        }
+        return ranked;
+    }
+
+    /**
+     * Candidates that no other candidate beats on both accuracy and latency
+     */
+    private static List<Candidate> paretoFront(List<Candidate> candidates) {
+        List<Candidate> front = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            boolean dominated = false;
+            for (Candidate other : candidates) {
+                if (other != candidate
+                        && other.accuracy >= candidate.accuracy && other.latencyMicros <= candidate.latencyMicros
+                        && (other.accuracy > candidate.accuracy || other.latencyMicros < candidate.latencyMicros)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                front.add(candidate);
+            }
+        }
+        return front;
+    }
+
+    private static double accuracy(MultiLayerNetwork model, DataSet data) {
+        Evaluation eval = new Evaluation((int) data.getLabels().size(1));
+        eval.eval(data.getLabels(), model.output(data.getFeatures()));
+        return eval.accuracy();
+    }
+
+    /**
+     * Median wall time of a single-row forward pass
+     */
+    private static double measureLatencyMicros(MultiLayerNetwork model, INDArray row) {
+        for (int i = 0; i < LATENCY_WARMUP_CALLS; i++) {
+            model.output(row);
+        }
+        long[] nanos = new long[LATENCY_TIMED_CALLS];
+        for (int i = 0; i < nanos.length; i++) {
+            long start = System.nanoTime();
+            model.output(row);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[nanos.length / 2] / 1000.0;
+    }
+
+    private static void writeCsv(Path output, List<Candidate> candidates, List<Candidate> front) throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output))) {
+            writer.println("id,learning_rate,hidden_layer_size,batch_size,params,epochs,accuracy,latency_us,pareto");
+            for (Candidate c : candidates) {
+                writer.printf("%d,%.6f,%d,%d,%d,%d,%.4f,%.1f,%b%n", c.id, c.learningRate, c.hiddenLayerSize,
+                        c.batchSize, c.numParams(), c.epochsTrained, c.accuracy, c.latencyMicros, front.contains(c));
+            }
+        }
+        System.out.println("Wrote search results to " + output.toAbsolutePath());
+    }
+}
@@ -1,5 +1,7 @@
 package com.example;
 
+import com.example.mlbackend.util.PartRiskFeatures;
+import com.example.mlbackend.util.RollingFeatures;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.DenseLayer;
@@ -19,19 +21,18 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Properties;
 
 /**
  * PartRiskTrainer - Trains a lightweight DL4J model to predict which refrigerator part is at risk
@@ -42,31 +43,22 @@ public class PartRiskTrainer {
     // Constants
     private static final int NUM_FEATURES = 12;
     private static final int NUM_CLASSES = 6;
-    private static final int BATCH_SIZE = 32;
-    private static final int NUM_EPOCHS = 10;
-    private static final double LEARNING_RATE = 0.001;
-    private static final int HIDDEN_LAYER_SIZE = 32;
+    public static final int BATCH_SIZE = 32;
+    public static final int NUM_EPOCHS = 10;
+    public static final double LEARNING_RATE = 0.001;
+    public static final int HIDDEN_LAYER_SIZE = 32;
     private static final int RANDOM_SEED = 123;
     private static final double TRAIN_RATIO = 0.8; // 80% for training, 20% for testing
+    private static final double VALIDATION_SPLIT_RATIO = 0.9; // 10% of the training data for early stopping
     
-    // Feature indices in the CSV file (skipping timestamp at index 0)
-    private static final int[] FEATURE_INDICES = {
-            1,  // temperature_evaporator
-            2,  // temperature_internal
-            3,  // ambient_temperature
-            4,  // humidity_internal
-            5,  // pressure_refrigerant
-            6,  // current_compressor
-            7,  // vibration_level
-            8,  // gas_leak_level
-            10, // compressor_cycle_time
-            11, // energy_consumption
-            12, // temperature_gradient
-            13  // pressure_trend
-    };
+    // Feature columns in the CSV file, in model input order (shared with serving)
+    private static final String[] FEATURE_COLUMNS = PartRiskFeatures.COLUMNS;
     
-    // Label index in the CSV file
-    private static final int LABEL_INDEX = 14; // part_at_risk
+    // Label column in the CSV file
+    private static final String LABEL_COLUMN = "part_at_risk";
+    
+    // Raw column the derived features are ordered by
+    private static final String TIMESTAMP_COLUMN = "timestamp";
     
     // Class labels for the parts at risk
     private static final List<String> CLASS_LABELS = Arrays.asList(
@@ -85,142 +77,7 @@ public class PartRiskTrainer {
     public static void main(String[] args) {
         try {
             System.out.println("Starting PartRiskTrainer...");
-            
-            // Create model directory if it doesn't exist
-            Path modelDir = Paths.get("model");
-            if (!Files.exists(modelDir)) {
-                Files.createDirectories(modelDir);
-            }
-
-            // Load data from CSV file manually
-            String dataFilePath = "data/part_risk_data.csv";
-            System.out.println("Loading data from " + dataFilePath);
-            
-            List<double[]> features = new ArrayList<>();
-            List<Integer> labels = new ArrayList<>();
-            
-            try (BufferedReader br = new BufferedReader(new FileReader(dataFilePath))) {
-                // Skip header line
-                br.readLine();
-                
-                String line;
-                int lineCount = 0;
-                
-                // Process each line
-                while ((line = br.readLine()) != null) {
-                    lineCount++;
-                    try {
-                        // Split by comma but handle quoted values
-                        String[] values = splitCSVLine(line);
-                        
-                        // Extract features (12 numeric values)
-                        double[] featureArray = new double[NUM_FEATURES];
-                        for (int i = 0; i < NUM_FEATURES; i++) {
-                            featureArray[i] = Double.parseDouble(values[FEATURE_INDICES[i]]);
-                        }
-                        features.add(featureArray);
-                        
-                        // Extract label (part_at_risk)
-                        String partAtRisk = values[LABEL_INDEX];
-                        if (!LABEL_TO_INDEX.containsKey(partAtRisk)) {
-                            System.out.println("Warning: Unknown label '" + partAtRisk + "' at line " + lineCount);
-                            continue;
-                        }
-                        labels.add(LABEL_TO_INDEX.get(partAtRisk));
-                    } catch (Exception e) {
-                        System.out.println("Warning: Error processing line " + lineCount + ": " + e.getMessage());
-                    }
-                }
-            }
-            
-            System.out.println("Loaded " + features.size() + " data points");
-            
-            // Convert to INDArrays
-            int numSamples = features.size();
-            INDArray featuresArray = Nd4j.create(numSamples, NUM_FEATURES);
-            INDArray labelsArray = Nd4j.create(numSamples, NUM_CLASSES);
-            
-            for (int i = 0; i < numSamples; i++) {
-                // Set features
-                for (int j = 0; j < NUM_FEATURES; j++) {
-                    featuresArray.putScalar(new int[]{i, j}, features.get(i)[j]);
-                }
-                
-                // Set one-hot encoded label
-                labelsArray.putScalar(new int[]{i, labels.get(i)}, 1.0);
-            }
-            
-            // Create DataSet
-            DataSet allData = new DataSet(featuresArray, labelsArray);
-            
-            // Shuffle the data (important for training)
-            allData.shuffle(RANDOM_SEED);
-            
-            // Normalize features using min-max scaling
-            NormalizerMinMaxScaler normalizer = new NormalizerMinMaxScaler();
-            normalizer.fit(allData);
-            normalizer.transform(allData);
-            
-            // Split data into training and test sets
-            SplitTestAndTrain testAndTrain = allData.splitTestAndTrain(TRAIN_RATIO);
-            DataSet trainingData = testAndTrain.getTrain();
-            DataSet testData = testAndTrain.getTest();
-            
-            System.out.println("Training data size: " + trainingData.numExamples());
-            System.out.println("Test data size: " + testData.numExamples());
-            
-            // Configure neural network
-            MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
-                    .seed(RANDOM_SEED)
-                    .weightInit(WeightInit.XAVIER)
-                    .updater(new Adam(LEARNING_RATE))
-                    .l2(1e-4)
-                    .list()
-                    .layer(0, new DenseLayer.Builder()
-                            .nIn(NUM_FEATURES)
-                            .nOut(HIDDEN_LAYER_SIZE)
-                            .activation(Activation.RELU)
-                            .build())
-                    .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
-                            .nIn(HIDDEN_LAYER_SIZE)
-                            .nOut(NUM_CLASSES)
-                            .activation(Activation.SOFTMAX)
-                            .build())
-                    .build();
-            
-            // Initialize model
-            MultiLayerNetwork model = new MultiLayerNetwork(config);
-            model.init();
-            model.setListeners(new ScoreIterationListener(100));
-            
-            // Train model
-            System.out.println("Training model...");
-            for (int i = 0; i < NUM_EPOCHS; i++) {
-                model.fit(trainingData);
-                System.out.println("Completed epoch " + (i+1) + "/" + NUM_EPOCHS);
-            }
-            
-            // Evaluate model
-            System.out.println("Evaluating model...");
-            Evaluation eval = new Evaluation(NUM_CLASSES);
-            INDArray output = model.output(testData.getFeatures());
-            eval.eval(testData.getLabels(), output);
-            
-            System.out.println("Training complete");
-            System.out.println(eval.stats());
-            System.out.println("Accuracy: " + eval.accuracy());
-            
-            // Save model and normalizer
-            File modelFile = new File("model/part_risk.model");
-            ModelSerializer.writeModel(model, modelFile, true);
-            
-            // Save normalizer
-            File normalizerFile = new File("model/part_risk_normalizer.bin");
-            NormalizerSerializer.getDefault().write(normalizer, normalizerFile);
-            
-            System.out.println("Saved part_risk.model to " + modelFile.getAbsolutePath());
-            System.out.println("Saved part_risk_normalizer.bin to " + normalizerFile.getAbsolutePath());
-            
+            train(TrainerArgs.parse(args));
         } catch (Exception e) {
             System.err.println("Error training model: " + e.getMessage());
             e.printStackTrace();
@@ -228,36 +85,254 @@ public class PartRiskTrainer {
     }
     
     /**
-     * Split a CSV line handling quoted values
-     * @param line The CSV line to split
-     * @return Array of values from the CSV line
+     * Train the part risk model and save part_risk.model, part_risk.flat and
+     * part_risk_normalizer.bin to --model-dir (default model/)
+     */
+    public static void train(TrainerArgs options) throws IOException {
+        boolean engineFeatures = engineFeatures(options);
+        train(loadData("data/part_risk_data.csv", engineFeatures), engineFeatures, options);
+    }
+    
+    /**
+     * Train on data already loaded with loadData (TrainingOrchestrator loads it in its own job)
+     * @param allData Raw features and labels; shuffled and normalized in place
+     * @param engineFeatures Whether allData was loaded with the engine's derived features
+     */
+    public static void train(DataSet allData, boolean engineFeatures, TrainerArgs options) throws IOException {
+        // Create model directory if it doesn't exist
+        Path modelDir = Paths.get(options.getModelDir());
+        if (!Files.exists(modelDir)) {
+            Files.createDirectories(modelDir);
+        }
+        
+        // Shuffle the data (important for training)
+        allData.shuffle(RANDOM_SEED);
+        
+        // Normalize features using min-max scaling
+        NormalizerMinMaxScaler normalizer = new NormalizerMinMaxScaler();
+        normalizer.fit(allData);
+        normalizer.transform(allData);
+        
+        // Split data into training and test sets
+        SplitTestAndTrain testAndTrain = allData.splitTestAndTrain(TRAIN_RATIO);
+        DataSet trainingData = testAndTrain.getTrain();
+        DataSet testData = testAndTrain.getTest();
+        
+        System.out.println("Training data size: " + trainingData.numExamples());
+        System.out.println("Test data size: " + testData.numExamples());
+        
+        // Hold out part of the training data to decide when to stop training
+        SplitTestAndTrain fitAndValidation = trainingData.splitTestAndTrain(VALIDATION_SPLIT_RATIO);
+        DataSet fitData = fitAndValidation.getTrain();
+        DataSet validationData = fitAndValidation.getTest();
+        
+        // Initialize model
+        MultiLayerNetwork model = buildModel(LEARNING_RATE, HIDDEN_LAYER_SIZE);
+        model.setListeners(new ScoreIterationListener(100));
+        
+        // Train model
+        System.out.println("Training model...");
+        TensorDataSetIterator trainIterator = TensorDataSetIterator.rows(
+                fitData.getFeatures(), fitData.getLabels(), BATCH_SIZE, true, RANDOM_SEED);
+        try (DataParallelTrainer trainer = DataParallelTrainer.fromArgs(model, options)) {
+            EarlyStoppingRunner.fromArgs("part_risk", model, trainer,
+                    EarlyStoppingRunner.lossOn(validationData), NUM_EPOCHS, options)
+                    .fit(trainIterator);
+        }
+        
+        // Evaluate model
+        System.out.println("Evaluating model...");
+        Evaluation eval = new Evaluation(NUM_CLASSES);
+        INDArray output = model.output(testData.getFeatures());
+        eval.eval(testData.getLabels(), output);
+        
+        System.out.println("Training complete");
+        System.out.println(eval.stats());
+        System.out.println("Accuracy: " + eval.accuracy());
+        
+        // Save model and normalizer
+        File modelFile = modelDir.resolve("part_risk.model").toFile();
+        ModelSerializer.writeModel(model, modelFile, true);
+        File flatFile = FlatModelExporter.export(model, modelFile);
+        
+        // Save normalizer
+        File normalizerFile = modelDir.resolve("part_risk_normalizer.bin").toFile();
+        NormalizerSerializer.getDefault().write(normalizer, normalizerFile);
+        File layoutFile = writeFeatureLayout(modelDir, engineFeatures);
+        
+        System.out.println("Saved part_risk.model to " + modelFile.getAbsolutePath());
+        System.out.println("Saved part_risk_normalizer.bin to " + normalizerFile.getAbsolutePath());
+        System.out.println("Saved part_risk.flat to " + flatFile.getAbsolutePath());
+        System.out.println("Saved " + PartRiskFeatures.LAYOUT_FILE + " to " + layoutFile.getAbsolutePath());
+    }
+    
+    /**
+     * Record the input layout next to the model, so ModelLoader feeds it PartRiskFeatures.COLUMNS
+     * instead of the legacy input
+     */
+    public static File writeFeatureLayout(Path modelDir, boolean engineFeatures) throws IOException {
+        Properties layout = new Properties();
+        layout.setProperty("columns", String.join(",", FEATURE_COLUMNS));
+        layout.setProperty("derived-features", engineFeatures ? "engine" : "csv");
+        File layoutFile = modelDir.resolve(PartRiskFeatures.LAYOUT_FILE).toFile();
+        try (OutputStream out = Files.newOutputStream(layoutFile.toPath())) {
+            layout.store(out, "Part risk model input layout written by PartRiskTrainer");
+        }
+        return layoutFile;
+    }
+    
+    /**
+     * Load the part risk CSV with the derived features computed as serving computes them
+     * @param dataFilePath Path to part_risk_data.csv
+     * @return DataSet with features [N, 12] and labels [N, 6]
+     */
+    public static DataSet loadData(String dataFilePath) throws IOException {
+        return loadData(dataFilePath, true);
+    }
+    
+    /**
+     * Whether to compute the derived features with RollingFeatures (--derived-features=engine, the
+     * default) or read the CSV's precomputed columns (--derived-features=csv, legacy: these are
+     * defined differently from what serving feeds the model)
+     */
+    public static boolean engineFeatures(TrainerArgs options) {
+        if ("csv".equals(options.getString("derived-features", "engine"))) {
+            System.out.println("Warning: using the CSV's derived feature columns, which serving does not compute");
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Load the part risk CSV into a DataSet of raw (unnormalized) features and one-hot labels
+     * @param dataFilePath Path to part_risk_data.csv
+     * @param engineFeatures true to compute temperature_gradient, pressure_trend and compressor_cycle_time
+     *                       with RollingFeatures as serving does (engine, the default), false to use
+     *                       the CSV's columns (csv, legacy)
+     * @return DataSet with features [N, 12] and labels [N, 6]
      */
-    private static String[] splitCSVLine(String line) {
-        List<String> result = new ArrayList<>();
-        StringBuilder currentValue = new StringBuilder();
-        boolean inQuotes = false;
+    public static DataSet loadData(String dataFilePath, boolean engineFeatures) throws IOException {
+        System.out.println("Loading data from " + dataFilePath);
+        ColumnarTable table = ColumnarCsvLoader.load(Paths.get(dataFilePath), FEATURE_COLUMNS,
+                new String[] {LABEL_COLUMN, TIMESTAMP_COLUMN});
+        double[][] columns = table.numericColumns().clone();
+        if (engineFeatures) {
+            deriveFeatures(table, columns);
+        }
+        
+        // Map label dictionary codes to class indices (-1 for labels we don't know)
+        String[] labelValues = table.dictionary(LABEL_COLUMN);
+        int[] classOfCode = new int[labelValues.length];
+        for (int code = 0; code < labelValues.length; code++) {
+            classOfCode[code] = LABEL_TO_INDEX.getOrDefault(labelValues[code], -1);
+            if (classOfCode[code] < 0) {
+                System.out.println("Warning: Unknown label '" + labelValues[code] + "'");
+            }
+        }
         
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
-            if (c == '"') {
-                // Toggle the inQuotes flag
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                // End of value
-                result.add(currentValue.toString().trim());
-                currentValue = new StringBuilder();
-            } else {
-                // Add character to current value
-                currentValue.append(c);
+        // Keep rows that parsed cleanly and have a known label
+        int[] codes = table.codes(LABEL_COLUMN);
+        int[] candidates = table.completeRows();
+        int[] rows = new int[candidates.length];
+        int numSamples = 0;
+        for (int row : candidates) {
+            if (codes[row] >= 0 && classOfCode[codes[row]] >= 0 && !Double.isNaN(columns[PartRiskFeatures.TEMPERATURE_GRADIENT][row])) {
+                rows[numSamples++] = row;
             }
         }
+        rows = Arrays.copyOf(rows, numSamples);
+        if (numSamples < table.rowCount()) {
+            System.out.println("Warning: Skipped " + (table.rowCount() - numSamples) + " rows with invalid values or labels");
+        }
+        System.out.println("Loaded " + numSamples + " data points");
+        
+        // Convert to INDArrays
+        INDArray featuresArray = TensorDataSetIterator.matrix(columns, rows);
+        INDArray labelsArray = Nd4j.create(numSamples, NUM_CLASSES);
+        
+        for (int i = 0; i < numSamples; i++) {
+            // Set one-hot encoded label
+            labelsArray.putScalar(new int[]{i, classOfCode[codes[rows[i]]]}, 1.0);
+        }
         
-        // Add the last value
-        result.add(currentValue.toString().trim());
+        return new DataSet(featuresArray, labelsArray);
+    }
+    
+    /**
+     * Replace temperature_gradient, pressure_trend and compressor_cycle_time in columns with the
+     * values RollingFeatures computes from the raw columns, with the PartRiskFeatures layout and
+     * window that DerivedFeatureService uses at serving time. The rows are one device's readings
+     * in time order. Rows with a missing value or timestamp get NaN and are dropped.
+     */
+    private static void deriveFeatures(ColumnarTable table, double[][] columns) {
+        double[][] numeric = table.numericColumns();
+        int[] timestampCodes = table.codes(TIMESTAMP_COLUMN);
+        String[] timestamps = table.dictionary(TIMESTAMP_COLUMN);
+        long[] millisOfCode = new long[timestamps.length];
+        for (int code = 0; code < timestamps.length; code++) {
+            try {
+                millisOfCode[code] = OffsetDateTime.parse(timestamps[code].replace(' ', 'T')).toInstant().toEpochMilli();
+            } catch (RuntimeException e) {
+                millisOfCode[code] = Long.MIN_VALUE;
+            }
+        }
         
-        return result.toArray(new String[0]);
+        int rowCount = table.rowCount();
+        double[] cycleTime = new double[rowCount];
+        double[] gradient = new double[rowCount];
+        double[] trend = new double[rowCount];
+        RollingFeatures features = new RollingFeatures(PartRiskFeatures.LAYOUT, PartRiskFeatures.WINDOW);
+        double[] reading = new double[numeric.length];
+        double[] derived = new double[RollingFeatures.NAMES.length];
+        for (int row = 0; row < rowCount; row++) {
+            boolean complete = timestampCodes[row] >= 0 && millisOfCode[timestampCodes[row]] != Long.MIN_VALUE;
+            for (int c = 0; c < numeric.length && complete; c++) {
+                reading[c] = numeric[c][row];
+                complete = !Double.isNaN(reading[c]);
+            }
+            if (!complete || !features.update(millisOfCode[timestampCodes[row]], reading)) {
+                cycleTime[row] = gradient[row] = trend[row] = Double.NaN;
+                continue;
+            }
+            PartRiskFeatures.withDerived(reading, features.derived(derived));
+            cycleTime[row] = reading[PartRiskFeatures.COMPRESSOR_CYCLE_TIME];
+            gradient[row] = reading[PartRiskFeatures.TEMPERATURE_GRADIENT];
+            trend[row] = reading[PartRiskFeatures.PRESSURE_TREND];
+        }
+        columns[PartRiskFeatures.COMPRESSOR_CYCLE_TIME] = cycleTime;
+        columns[PartRiskFeatures.TEMPERATURE_GRADIENT] = gradient;
+        columns[PartRiskFeatures.PRESSURE_TREND] = trend;
+        System.out.println("Derived compressor_cycle_time, temperature_gradient and pressure_trend over a "
+                + PartRiskFeatures.WINDOW + "-reading window");
     }
     
-
+    /**
+     * Build and initialize the part risk network
+     * @param learningRate Adam learning rate
+     * @param hiddenLayerSize Width of the hidden dense layer
+     * @return Initialized network
+     */
+    public static MultiLayerNetwork buildModel(double learningRate, int hiddenLayerSize) {
+        MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
+                .seed(RANDOM_SEED)
+                .weightInit(WeightInit.XAVIER)
+                .updater(new Adam(learningRate))
+                .l2(1e-4)
+                .list()
+                .layer(0, new DenseLayer.Builder()
+                        .nIn(NUM_FEATURES)
+                        .nOut(hiddenLayerSize)
+                        .activation(Activation.RELU)
+                        .build())
+                .layer(1, new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                        .nIn(hiddenLayerSize)
+                        .nOut(NUM_CLASSES)
+                        .activation(Activation.SOFTMAX)
+                        .build())
+                .build();
+        
+        MultiLayerNetwork model = new MultiLayerNetwork(config);
+        model.init();
+        return model;
+    }
 }
@@ -19,18 +19,14 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 /**
  * PartRiskTrainerSimple - A simplified version of PartRiskTrainer that uses a direct approach
@@ -65,6 +61,7 @@ public class PartRiskTrainerSimple {
     public static void main(String[] args) {
         try {
             System.out.println("Starting PartRiskTrainerSimple...");
+            TrainerArgs options = TrainerArgs.parse(args);
             
             // Create model directory if it doesn't exist
             Path modelDir = Paths.get("model");
@@ -72,81 +69,10 @@ public class PartRiskTrainerSimple {
                 Files.createDirectories(modelDir);
             }
 
-            // Load data from CSV file
+            // Load data from CSV file through the shared columnar loader
             String dataFilePath = "data/part_risk_data.csv";
-            System.out.println("Loading data from " + dataFilePath);
-            
-            // Read all lines from the CSV file
-            List<String> lines = Files.readAllLines(Paths.get(dataFilePath));
-            System.out.println("Read " + lines.size() + " lines from CSV file");
-            
-            // Skip header line
-            lines = lines.subList(1, lines.size());
-            
-            // Prepare data containers
-            List<double[]> featuresList = new ArrayList<>();
-            List<Integer> labelsList = new ArrayList<>();
-            
-            // Process each line
-            for (int i = 0; i < lines.size(); i++) {
-                try {
-                    String line = lines.get(i);
-                    
-                    // Split the line by comma, but handle quoted values
-                    List<String> values = parseCSVLine(line);
-                    
-                    // Extract the 12 feature values (skipping timestamp at index 0)
-                    double[] features = new double[NUM_FEATURES];
-                    features[0] = Double.parseDouble(values.get(1));  // temperature_evaporator
-                    features[1] = Double.parseDouble(values.get(2));  // temperature_internal
-                    features[2] = Double.parseDouble(values.get(3));  // ambient_temperature
-                    features[3] = Double.parseDouble(values.get(4));  // humidity_internal
-                    features[4] = Double.parseDouble(values.get(5));  // pressure_refrigerant
-                    features[5] = Double.parseDouble(values.get(6));  // current_compressor
-                    features[6] = Double.parseDouble(values.get(7));  // vibration_level
-                    features[7] = Double.parseDouble(values.get(8));  // gas_leak_level
-                    features[8] = Double.parseDouble(values.get(10)); // compressor_cycle_time
-                    features[9] = Double.parseDouble(values.get(11)); // energy_consumption
-                    features[10] = Double.parseDouble(values.get(12)); // temperature_gradient
-                    features[11] = Double.parseDouble(values.get(13)); // pressure_trend
-                    
-                    // Extract the label (part_at_risk at index 14)
-                    String partAtRisk = values.get(14);
-                    
-                    // Skip if label is not recognized
-                    if (!LABEL_TO_INDEX.containsKey(partAtRisk)) {
-                        System.out.println("Warning: Unknown label '" + partAtRisk + "' at line " + (i + 1));
-                        continue;
-                    }
-                    
-                    // Add to our data lists
-                    featuresList.add(features);
-                    labelsList.add(LABEL_TO_INDEX.get(partAtRisk));
-                    
-                } catch (Exception e) {
-                    System.out.println("Warning: Error processing line " + (i + 1) + ": " + e.getMessage());
-                }
-            }
-            
-            System.out.println("Successfully loaded " + featuresList.size() + " data points");
-            
-            // Convert lists to INDArrays for DL4J
-            int numSamples = featuresList.size();
-            INDArray featuresArray = Nd4j.create(numSamples, NUM_FEATURES);
-            INDArray labelsArray = Nd4j.create(numSamples, NUM_CLASSES);
-            
-            for (int i = 0; i < numSamples; i++) {
-                // Set features
-                for (int j = 0; j < NUM_FEATURES; j++) {
-                    featuresArray.putScalar(new int[]{i, j}, featuresList.get(i)[j]);
-                }
-                
-                // Set one-hot encoded label
-                labelsArray.putScalar(new int[]{i, labelsList.get(i)}, 1.0);
-            }
-            
-            // Create DataSet
-            DataSet allData = new DataSet(featuresArray, labelsArray);
+            boolean engineFeatures = PartRiskTrainer.engineFeatures(options);
+            DataSet allData = PartRiskTrainer.loadData(dataFilePath, engineFeatures);
             
             // Shuffle the data
             allData.shuffle(RANDOM_SEED);
@@ -190,9 +116,13 @@ public class PartRiskTrainerSimple {
             
             // Train model
             System.out.println("Training model...");
-            for (int i = 0; i < NUM_EPOCHS; i++) {
-                model.fit(trainingData);
-                System.out.println("Completed epoch " + (i+1) + "/" + NUM_EPOCHS);
+            TensorDataSetIterator trainIterator = TensorDataSetIterator.rows(
+                    trainingData.getFeatures(), trainingData.getLabels(), BATCH_SIZE, true, RANDOM_SEED);
+            try (DataParallelTrainer trainer = DataParallelTrainer.fromArgs(model, options)) {
+                for (int i = 0; i < NUM_EPOCHS; i++) {
+                    trainer.fitEpoch(trainIterator);
+                    System.out.printf("Completed epoch %d/%d (%.0f samples/sec)%n", i + 1, NUM_EPOCHS, trainIterator.samplesPerSecond());
+                }
             }
             
             // Evaluate model
@@ -208,49 +138,20 @@ public class PartRiskTrainerSimple {
             // Save model and normalizer
             File modelFile = new File("model/part_risk.model");
             ModelSerializer.writeModel(model, modelFile, true);
+            File flatFile = FlatModelExporter.export(model, modelFile);
             
             // Save normalizer
             File normalizerFile = new File("model/part_risk_normalizer.bin");
             NormalizerSerializer.getDefault().write(normalizer, normalizerFile);
+            PartRiskTrainer.writeFeatureLayout(modelDir, engineFeatures);
             
             System.out.println("Saved part_risk.model to " + modelFile.getAbsolutePath());
             System.out.println("Saved part_risk_normalizer.bin to " + normalizerFile.getAbsolutePath());
+            System.out.println("Saved part_risk.flat to " + flatFile.getAbsolutePath());
             
         } catch (Exception e) {
             System.err.println("Error training model: " + e.getMessage());
             e.printStackTrace();
         }
     }
-    
-    /**
-     * Parse a CSV line handling quoted values
-     * @param line The CSV line to parse
-     * @return List of values from the CSV line
-     */
-    private static List<String> parseCSVLine(String line) {
-        List<String> result = new ArrayList<>();
-        StringBuilder currentValue = new StringBuilder();
-        boolean inQuotes = false;
-        
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
-            if (c == '"') {
-                // Toggle the inQuotes flag
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                // End of value
-                result.add(currentValue.toString().trim());
-                currentValue = new StringBuilder();
-            } else {
-                // Add character to current value
-                currentValue.append(c);
-            }
-        }
-        
-        // Add the last value
-        result.add(currentValue.toString().trim());
-        
-        return result;
-    }
 }
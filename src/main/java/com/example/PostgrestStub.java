@@ -0,0 +1,576 @@
+package com.example;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * PostgrestStub - Embeddable stand-in for the part of Supabase's PostgREST API the backend uses,
+ * so the fleet pipelines can be load-tested without the real project.
+ *
+ *   GET  /rest/v1/sensor_data   select, order=timestamp.asc|desc, limit, device_id=eq.|in.(...),
+ *                               timestamp=gt.|gte.|lt.|lte.; JSON, or CSV with Accept: text/csv;
+ *                               gzip with Accept-Encoding: gzip
+ *   POST /rest/v1/predictions   one JSON object or an array of them; answered with 201
+ *
+ * sensor_data is synthetic and computed on request, so nothing is stored. Device stub-NNNNN
+ * gets one reading every reading-ms (whole seconds), with the devices' readings spread over the interval,
+ * going back history readings from the moment the stub was created. Reading k of a device
+ * replays row (start + k) of data/part_risk_data.csv, starting at a different row per device,
+ * so windows follow the recorded series with its normal and failing stretches. A little
+ * noise keeps devices apart. Columns the CSV lacks (air temperature, input voltage) and the
+ * vibration axes are drawn around typical values. Without the CSV every column is drawn
+ * around typical values.
+ *
+ * Faults are injected on demand, either with setLatency/setErrorRate or over HTTP while running:
+ *   POST /__stub/faults?latency-ms=200&jitter-ms=50&error-rate=0.05   (GET shows the current values)
+ *   GET  /__stub/stats
+ * Every /rest/v1 request waits latency-ms plus up to jitter-ms, then fails with a PostgREST-style
+ * 503 with probability error-rate.
+ *
+ * Standalone, for pointing a separately started backend at it with SUPABASE_URL:
+ *   java com.example.PostgrestStub [--port=54321] [--devices=1000] [--reading-ms=5000]
+ *        [--history=1000] [--max-rows=10000] [--data=data/part_risk_data.csv]
+ *        [--latency-ms=0] [--jitter-ms=0] [--error-rate=0]
+ */
+public class PostgrestStub implements AutoCloseable {
+
+    public static final String DEVICE_PREFIX = "stub-";
+
+    private static final String[] FEATURE_COLUMNS = {
+            "evaporator_coil_temperature", "fridge_temperature", "freezer_temperature", "air_temperature",
+            "humidity", "compressor_vibration_x", "compressor_vibration_y", "compressor_vibration_z",
+            "compressor_current", "input_voltage", "gas_leakage_level"
+    };
+    private static final List<String> ALL_COLUMNS = new ArrayList<>();
+
+    static {
+        ALL_COLUMNS.add("id");
+        ALL_COLUMNS.add("device_id");
+        ALL_COLUMNS.add("timestamp");
+        ALL_COLUMNS.addAll(Arrays.asList(FEATURE_COLUMNS));
+    }
+
+    // Typical value and spread of each feature, used for columns the CSV does not have
+    private static final double[] MEANS = {-1.6, 4.0, -17.0, 24.0, 40.0, 0.2, 0.2, 0.2, 1.2, 230.0, 0.0};
+    private static final double[] SPREADS = {0.1, 0.3, 0.3, 1.0, 2.0, 0.02, 0.02, 0.02, 0.05, 2.0, 0.01};
+
+    // part_risk_data.csv column feeding each feature, or null
+    private static final String[] CSV_SOURCES = {
+            "temperature_evaporator", "ambient_temperature", "temperature_internal", null,
+            "humidity_internal", "vibration_level", null, null,
+            "current_compressor", null, "gas_leak_level"
+    };
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final int devices;
+    private final long readingMs;
+    private final long origin;
+    private final int maxRows;
+    // Recorded series, [row][feature]; NaN where the CSV has no source column
+    private final double[][] series;
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong predictions = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private volatile long latencyMs;
+    private volatile long jitterMs;
+    private volatile double errorRate;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param dataPath part_risk_data.csv to replay; missing means purely synthetic readings
+     */
+    public PostgrestStub(int devices, long readingMs, int history, int maxRows, Path dataPath) throws IOException {
+        this.devices = devices;
+        this.readingMs = Math.max(1000, readingMs / 1000 * 1000);
+        this.maxRows = maxRows;
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        this.origin = now - history * this.readingMs;
+        this.series = dataPath != null && Files.exists(dataPath) ? loadSeries(dataPath) : new double[0][];
+    }
+
+    public static void main(String[] args) throws Exception {
+        TrainerArgs options = TrainerArgs.parse(args);
+        PostgrestStub stub = new PostgrestStub(options.getInt("devices", 1000), options.getInt("reading-ms", 5000),
+                options.getInt("history", 1000), options.getInt("max-rows", 10000),
+                Paths.get(options.getString("data", "data/part_risk_data.csv")));
+        stub.setLatency(options.getInt("latency-ms", 0), options.getInt("jitter-ms", 0));
+        stub.setErrorRate(options.getDouble("error-rate", 0));
+        String url = stub.start(options.getInt("port", 54321));
+        System.out.printf("PostgREST stub with %d devices (%s) listening on %s%n", stub.devices,
+                stub.series.length > 0 ? stub.series.length + " recorded rows" : "synthetic only", url);
+        System.out.println("Point the backend at it with SUPABASE_URL=" + url + " SUPABASE_KEY=stub");
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Start listening on 127.0.0.1
+     * @param port 0 for any free port
+     * @return base URL, the value for supabase.url
+     */
+    public String start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        // Injected latency sleeps, so every request gets its own virtual thread
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/rest/v1/sensor_data", exchange -> handle(exchange, true));
+        server.createContext("/rest/v1/predictions", exchange -> handle(exchange, false));
+        server.createContext("/__stub/faults", this::faults);
+        server.createContext("/__stub/stats", this::stats);
+        server.start();
+        return url();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    public List<String> deviceIds() {
+        List<String> ids = new ArrayList<>(devices);
+        for (int d = 0; d < devices; d++) {
+            ids.add(deviceId(d));
+        }
+        return ids;
+    }
+
+    public void setLatency(long latencyMs, long jitterMs) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public long readRequests() {
+        return reads.get();
+    }
+
+    public long writeRequests() {
+        return writes.get();
+    }
+
+    /**
+     * Prediction rows accepted so far
+     */
+    public long predictionsStored() {
+        return predictions.get();
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    private void handle(HttpExchange exchange, boolean read) throws IOException {
+        try {
+            (read ? reads : writes).incrementAndGet();
+            long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                error(exchange, 503, "PGRST000", "Injected error");
+                return;
+            }
+            if (read && "GET".equals(exchange.getRequestMethod())) {
+                readSensorData(exchange);
+            } else if (!read && "POST".equals(exchange.getRequestMethod())) {
+                writePredictions(exchange);
+            } else {
+                error(exchange, 405, "PGRST117", "Unsupported HTTP method " + exchange.getRequestMethod());
+            }
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, "PGRST100", e.getMessage());
+        } catch (Exception e) {
+            error(exchange, 500, "PGRST000", e.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void readSensorData(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        List<String> columns = query.containsKey("select")
+                ? Arrays.asList(query.get("select").split(",")) : ALL_COLUMNS;
+        for (String column : columns) {
+            if (!ALL_COLUMNS.contains(column)) {
+                throw new IllegalArgumentException("Column sensor_data." + column + " does not exist");
+            }
+        }
+        boolean descending = query.getOrDefault("order", "timestamp.asc").startsWith("timestamp.desc");
+        int limit = Math.min(maxRows, query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : maxRows);
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        String timestampFilter = query.get("timestamp");
+        if (timestampFilter != null) {
+            int dot = timestampFilter.indexOf('.');
+            long bound = parseTime(timestampFilter.substring(dot + 1));
+            switch (timestampFilter.substring(0, dot)) {
+                case "gte" -> from = bound;
+                case "gt" -> from = bound + 1;
+                case "lte" -> to = bound;
+                case "lt" -> to = bound - 1;
+                default -> throw new IllegalArgumentException("Unsupported timestamp filter " + timestampFilter);
+            }
+        }
+
+        List<long[]> rows = rows(deviceFilter(query.get("device_id")), from, to, descending, limit);
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        boolean csv = accept != null && accept.contains("text/csv");
+        ByteArrayOutputStream body = new ByteArrayOutputStream(rows.size() * 300 + 64);
+        if (csv) {
+            writeCsv(rows, columns, body);
+        } else {
+            writeJson(rows, columns, body);
+        }
+        respond(exchange, 200, csv ? "text/csv; charset=utf-8" : "application/json; charset=utf-8", body.toByteArray());
+    }
+
+    private void writePredictions(HttpExchange exchange) throws IOException {
+        long rows = 0;
+        try (InputStream in = exchange.getRequestBody(); JsonParser parser = JSON_FACTORY.createParser(in)) {
+            JsonToken first = parser.nextToken();
+            if (first == JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                rows = 1;
+            } else if (first == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    rows++;
+                }
+            } else {
+                throw new IllegalArgumentException("Expected a JSON object or array");
+            }
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+        }
+        predictions.addAndGet(rows);
+        exchange.sendResponseHeaders(201, -1);
+    }
+
+    private void faults(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        if ("POST".equals(exchange.getRequestMethod())) {
+            if (query.containsKey("latency-ms") || query.containsKey("jitter-ms")) {
+                setLatency(Long.parseLong(query.getOrDefault("latency-ms", Long.toString(latencyMs))),
+                        Long.parseLong(query.getOrDefault("jitter-ms", Long.toString(jitterMs))));
+            }
+            if (query.containsKey("error-rate")) {
+                setErrorRate(Double.parseDouble(query.get("error-rate")));
+            }
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("latency_ms", latencyMs);
+        values.put("jitter_ms", jitterMs);
+        values.put("error_rate", errorRate);
+        respondJson(exchange, values);
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("devices", devices);
+        values.put("read_requests", reads.get());
+        values.put("write_requests", writes.get());
+        values.put("predictions", predictions.get());
+        values.put("injected_errors", injectedErrors.get());
+        respondJson(exchange, values);
+    }
+
+    /**
+     * Device indexes matching a device_id filter; null means all devices
+     */
+    private int[] deviceFilter(String filter) {
+        if (filter == null) {
+            return null;
+        }
+        List<String> ids;
+        if (filter.startsWith("eq.")) {
+            ids = List.of(filter.substring(3));
+        } else if (filter.startsWith("in.(") && filter.endsWith(")")) {
+            ids = Arrays.asList(filter.substring(4, filter.length() - 1).split(","));
+        } else {
+            throw new IllegalArgumentException("Unsupported device_id filter " + filter);
+        }
+        return ids.stream().map(String::trim).map(id -> id.replace("\"", ""))
+                .filter(id -> id.startsWith(DEVICE_PREFIX))
+                .mapToInt(id -> {
+                    try {
+                        return Integer.parseInt(id.substring(DEVICE_PREFIX.length()));
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                })
+                .filter(d -> d >= 0 && d < devices)
+                .toArray();
+    }
+
+    /**
+     * Up to limit readings in [from, to] of the given devices, merged by timestamp
+     * @return {device, reading index, timestamp ms} per row
+     */
+    private List<long[]> rows(int[] deviceIndexes, long from, long to, boolean descending, int limit) {
+        long now = System.currentTimeMillis();
+        // Per device cursor: {device, next reading index, last reading index}, ordered by its next timestamp
+        PriorityQueue<long[]> cursors = new PriorityQueue<>((a, b) -> descending
+                ? Long.compare(time((int) b[0], b[1]), time((int) a[0], a[1]))
+                : Long.compare(time((int) a[0], a[1]), time((int) b[0], b[1])));
+        int count = deviceIndexes == null ? devices : deviceIndexes.length;
+        for (int i = 0; i < count; i++) {
+            int d = deviceIndexes == null ? i : deviceIndexes[i];
+            long first = from == Long.MIN_VALUE ? 0 : Math.max(0, ceilDiv(from - origin - offset(d), readingMs));
+            long last = Math.floorDiv(Math.min(now, to) - origin - offset(d), readingMs);
+            if (first <= last) {
+                cursors.add(descending ? new long[] {d, last, first} : new long[] {d, first, last});
+            }
+        }
+        List<long[]> rows = new ArrayList<>(Math.min(limit, 1024));
+        while (rows.size() < limit && !cursors.isEmpty()) {
+            long[] cursor = cursors.poll();
+            int d = (int) cursor[0];
+            rows.add(new long[] {d, cursor[1], time(d, cursor[1])});
+            if (cursor[1] != cursor[2]) {
+                cursor[1] += descending ? -1 : 1;
+                cursors.add(cursor);
+            }
+        }
+        return rows;
+    }
+
+    private long offset(int device) {
+        return device * readingMs / devices / 1000 * 1000;
+    }
+
+    private long time(int device, long reading) {
+        return origin + offset(device) + reading * readingMs;
+    }
+
+    /**
+     * Feature values of one reading, deterministic in device and reading index
+     */
+    private double[] reading(int device, long reading) {
+        SplittableRandom random = new SplittableRandom(device * 1_000_003L + reading);
+        double[] values = new double[FEATURE_COLUMNS.length];
+        double[] recorded = series.length > 0
+                ? series[(int) Math.floorMod(device * 7919L + reading, (long) series.length)] : null;
+        for (int f = 0; f < values.length; f++) {
+            double value = recorded != null && !Double.isNaN(recorded[f])
+                    ? recorded[f] + random.nextGaussian() * SPREADS[f] * 0.1
+                    : MEANS[f] + random.nextGaussian() * SPREADS[f];
+            values[f] = Math.round(value * 1000) / 1000.0;
+        }
+        if (recorded != null) {
+            // One recorded vibration level; the y and z axes follow it
+            values[6] = Math.round(values[5] * (1 + random.nextGaussian() * 0.05) * 1000) / 1000.0;
+            values[7] = Math.round(values[5] * (1 + random.nextGaussian() * 0.05) * 1000) / 1000.0;
+        }
+        values[10] = Math.abs(values[10]);
+        return values;
+    }
+
+    private void writeJson(List<long[]> rows, List<String> columns, OutputStream out) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (long[] row : rows) {
+                double[] values = reading((int) row[0], row[1]);
+                generator.writeStartObject();
+                for (String column : columns) {
+                    generator.writeFieldName(column);
+                    switch (column) {
+                        case "id" -> generator.writeNumber(row[1] * devices + row[0] + 1);
+                        case "device_id" -> generator.writeString(deviceId((int) row[0]));
+                        case "timestamp" -> generator.writeString(formatTime(row[2], 'T'));
+                        default -> generator.writeNumber(values[featureIndex(column)]);
+                    }
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private void writeCsv(List<long[]> rows, List<String> columns, OutputStream out) throws IOException {
+        StringBuilder text = new StringBuilder(String.join(",", columns));
+        for (long[] row : rows) {
+            double[] values = reading((int) row[0], row[1]);
+            text.append('\n');
+            for (int c = 0; c < columns.size(); c++) {
+                if (c > 0) {
+                    text.append(',');
+                }
+                switch (columns.get(c)) {
+                    case "id" -> text.append(row[1] * devices + row[0] + 1);
+                    case "device_id" -> text.append(deviceId((int) row[0]));
+                    case "timestamp" -> text.append(formatTime(row[2], ' '));
+                    default -> text.append(values[featureIndex(columns.get(c))]);
+                }
+            }
+        }
+        out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void respondJson(HttpExchange exchange, Map<String, Object> values) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                generator.writeFieldName(entry.getKey());
+                if (entry.getValue() instanceof Number number) {
+                    generator.writeNumber(number.toString());
+                } else {
+                    generator.writeString(String.valueOf(entry.getValue()));
+                }
+            }
+            generator.writeEndObject();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+        exchange.close();
+    }
+
+    private void error(HttpExchange exchange, int status, String code, String message) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("code", code);
+            generator.writeNullField("details");
+            generator.writeNullField("hint");
+            generator.writeStringField("message", message);
+            generator.writeEndObject();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String deviceId(int device) {
+        return String.format("%s%05d", DEVICE_PREFIX, device);
+    }
+
+    private static int featureIndex(String column) {
+        return ALL_COLUMNS.indexOf(column) - 3;
+    }
+
+    private static String formatTime(long millis, char separator) {
+        String text = LocalDateTime.ofEpochSecond(millis / 1000, 0, ZoneOffset.UTC).toString();
+        // LocalDateTime drops zero seconds ("2024-01-01T00:00"); PostgREST always has them
+        if (text.length() == 16) {
+            text += ":00";
+        }
+        return separator == 'T' ? text : text.replace('T', separator);
+    }
+
+    private static long parseTime(String text) {
+        return LocalDateTime.parse(text.trim().replace(' ', 'T')).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+
+    /**
+     * The recorded columns of part_risk_data.csv in feature order, NaN for features it lacks
+     */
+    private static double[][] loadSeries(Path path) throws IOException {
+        List<double[]> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            List<String> header = Arrays.asList(reader.readLine().split(","));
+            int[] sources = new int[CSV_SOURCES.length];
+            for (int f = 0; f < sources.length; f++) {
+                sources[f] = CSV_SOURCES[f] == null ? -1 : header.indexOf(CSV_SOURCES[f]);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                double[] row = new double[sources.length];
+                for (int f = 0; f < sources.length; f++) {
+                    row[f] = sources[f] >= 0 && sources[f] < fields.length && !fields[sources[f]].isEmpty()
+                            ? Double.parseDouble(fields[sources[f]]) : Double.NaN;
+                }
+                rows.add(row);
+            }
+        }
+        return rows.toArray(new double[0][]);
+    }
+}
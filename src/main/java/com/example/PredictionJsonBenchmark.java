@@ -0,0 +1,145 @@
+package com.example;
+
+import com.example.mlbackend.model.PredictionResult;
+import com.example.mlbackend.service.PredictionJsonWriter;
+import com.example.mlbackend.service.ResultStorageService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * PredictionJsonBenchmark - Compares encoding the body of a bulk predictions POST the way
+ * ResultStorageService used to (a HashMap per row from toRow, serialized by ObjectMapper as
+ * RestTemplate's JSON converter does) with the streaming PredictionJsonWriter.
+ *
+ * Both encoders write into the same reused ByteArrayOutputStream, so only the encoding is
+ * measured. First checks that both bodies parse to the same rows, then runs --warmup untimed
+ * iterations and --iterations timed ones over all predictions in --batch-size batches, and
+ * reports the median time per row, encoded MB/s and bytes allocated per row.
+ *
+ *   java com.example.PredictionJsonBenchmark [--predictions=10000] [--batch-size=500]
+ *        [--warmup=10] [--iterations=20]
+ */
+public class PredictionJsonBenchmark {
+
+    private static volatile long sink;
+
+    @FunctionalInterface
+    private interface Encoder {
+        void encode(List<PredictionResult> batch, ByteArrayOutputStream out) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        TrainerArgs options = TrainerArgs.parse(args);
+        int predictions = options.getInt("predictions", 10000);
+        int batchSize = options.getInt("batch-size", 500);
+        int warmup = options.getInt("warmup", 10);
+        int iterations = options.getInt("iterations", 20);
+
+        List<PredictionResult> results = syntheticResults(predictions);
+        List<List<PredictionResult>> batches = new ArrayList<>();
+        for (int from = 0; from < results.size(); from += batchSize) {
+            batches.add(results.subList(from, Math.min(results.size(), from + batchSize)));
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Encoder maps = (batch, out) -> {
+            List<Map<String, Object>> body = new ArrayList<>(batch.size());
+            for (PredictionResult result : batch) {
+                body.add(ResultStorageService.toRow(result));
+            }
+            objectMapper.writeValue(out, body);
+        };
+        Encoder streaming = (batch, out) -> PredictionJsonWriter.writeArray(batch, out);
+
+        verify(objectMapper, batches.get(0), maps, streaming);
+
+        System.out.printf("%d predictions in batches of %d, %d warmup + %d measured iterations%n",
+                predictions, batchSize, warmup, iterations);
+        System.out.printf("%-10s %12s %10s %14s %12s%n", "encoder", "ns/row", "MB/s", "alloc B/row", "body bytes");
+        run("maps", maps, batches, predictions, warmup, iterations);
+        run("streaming", streaming, batches, predictions, warmup, iterations);
+    }
+
+    private static void run(String name, Encoder encoder, List<List<PredictionResult>> batches, int rows,
+                            int warmup, int iterations) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        for (int i = 0; i < warmup; i++) {
+            encodeAll(encoder, batches, out);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        long[] nanos = new long[iterations];
+        long bytes = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            bytes = encodeAll(encoder, batches, out);
+            nanos[i] = System.nanoTime() - start;
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        Arrays.sort(nanos);
+        double median = nanos[nanos.length / 2];
+        System.out.printf("%-10s %12.1f %10.1f %14.1f %12d%n", name, median / rows,
+                bytes / (median / 1e9) / 1048576.0, (double) allocated / iterations / rows, bytes);
+    }
+
+    /**
+     * @return body bytes written over all batches
+     */
+    private static long encodeAll(Encoder encoder, List<List<PredictionResult>> batches,
+                                  ByteArrayOutputStream out) throws Exception {
+        long bytes = 0;
+        for (List<PredictionResult> batch : batches) {
+            out.reset();
+            encoder.encode(batch, out);
+            bytes += out.size();
+        }
+        sink += bytes;
+        return bytes;
+    }
+
+    private static void verify(ObjectMapper objectMapper, List<PredictionResult> batch, Encoder maps,
+                               Encoder streaming) throws Exception {
+        TypeReference<List<Map<String, Object>>> rows = new TypeReference<>() {};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        maps.encode(batch, out);
+        List<Map<String, Object>> expected = objectMapper.readValue(out.toByteArray(), rows);
+        out.reset();
+        streaming.encode(batch, out);
+        List<Map<String, Object>> actual = objectMapper.readValue(out.toByteArray(), rows);
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Streaming body differs from the map body: " + actual.get(0)
+                    + " vs " + expected.get(0));
+        }
+    }
+
+    private static List<PredictionResult> syntheticResults(int count) {
+        Random random = new Random(42);
+        String[] parts = {"none", "compressor", "evaporator", "condenser", "unknown"};
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<PredictionResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(PredictionResult.builder()
+                    .deviceId(String.format("bench-%05d", i))
+                    .timestamp(base.plusSeconds(i))
+                    .isAnomaly(random.nextDouble() < 0.05)
+                    .failureProbability(random.nextDouble())
+                    .healthIndex(random.nextDouble() * 100)
+                    .remainingUsefulLife(random.nextDouble() * 1000)
+                    .partAtRisk(parts[random.nextInt(parts.length)])
+                    .build());
+        }
+        return results;
+    }
+}
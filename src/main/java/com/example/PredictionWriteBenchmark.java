@@ -0,0 +1,143 @@
+package com.example;
+
+import com.example.mlbackend.model.PredictionResult;
+import com.example.mlbackend.service.CopyPredictionWriter;
+import com.example.mlbackend.service.ResultStorageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * PredictionWriteBenchmark - Compares the ways predictions can be written to a local Postgres:
+ *
+ *   rest-row   one POST per prediction with a map body (what ResultStorageService did per result)
+ *   rest-bulk  one POST of a JSON array per batch (ResultStorageService's REST fallback for batches)
+ *   copy       one COPY ... FROM STDIN per batch (CopyPredictionWriter)
+ *
+ * The REST modes need PostgREST in front of the database (--rest-url); without it only COPY
+ * is measured. Benchmark rows use device ids bench-*, and are deleted before and after each run.
+ *
+ *   java com.example.PredictionWriteBenchmark --jdbc-url=jdbc:postgresql://localhost:5432/postgres
+ *        [--user=postgres] [--password=postgres] [--rest-url=http://localhost:3000] [--rest-key=...]
+ *        [--predictions=10000] [--batch-size=500] [--rest-row-limit=2000]
+ */
+public class PredictionWriteBenchmark {
+
+    private static final String DEVICE_PREFIX = "bench-";
+
+    public static void main(String[] args) throws Exception {
+        TrainerArgs options = TrainerArgs.parse(args);
+        String jdbcUrl = options.getString("jdbc-url", "jdbc:postgresql://localhost:5432/postgres");
+        String user = options.getString("user", "postgres");
+        String password = options.getString("password", "postgres");
+        String restUrl = options.getString("rest-url", "");
+        String restKey = options.getString("rest-key", "");
+        int predictions = options.getInt("predictions", 10000);
+        int batchSize = options.getInt("batch-size", 500);
+        // Row-by-row REST is slow; time a prefix and report the rate
+        int restRowLimit = options.getInt("rest-row-limit", 2000);
+
+        List<PredictionResult> results = syntheticResults(predictions);
+        HttpClient client = HttpClient.newHttpClient();
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, user, password)) {
+            System.out.printf("%-10s %10s %10s %14s%n", "mode", "rows", "ms", "rows/sec");
+
+            if (!restUrl.isEmpty()) {
+                cleanUp(connection);
+                List<PredictionResult> prefix = results.subList(0, Math.min(restRowLimit, results.size()));
+                long start = System.nanoTime();
+                for (PredictionResult result : prefix) {
+                    post(client, restUrl, restKey, objectMapper.writeValueAsBytes(ResultStorageService.toRow(result)));
+                }
+                report("rest-row", prefix.size(), System.nanoTime() - start);
+
+                cleanUp(connection);
+                start = System.nanoTime();
+                for (List<PredictionResult> batch : batches(results, batchSize)) {
+                    List<Map<String, Object>> body = new ArrayList<>(batch.size());
+                    for (PredictionResult result : batch) {
+                        body.add(ResultStorageService.toRow(result));
+                    }
+                    post(client, restUrl, restKey, objectMapper.writeValueAsBytes(body));
+                }
+                report("rest-bulk", results.size(), System.nanoTime() - start);
+            }
+
+            cleanUp(connection);
+            long start = System.nanoTime();
+            long copied = 0;
+            for (List<PredictionResult> batch : batches(results, batchSize)) {
+                copied += CopyPredictionWriter.copy(connection, batch);
+            }
+            report("copy", copied, System.nanoTime() - start);
+            cleanUp(connection);
+        }
+    }
+
+    private static void report(String mode, long rows, long nanos) {
+        double ms = nanos / 1e6;
+        System.out.printf("%-10s %10d %10.1f %14.0f%n", mode, rows, ms, rows / (ms / 1000.0));
+    }
+
+    private static void post(HttpClient client, String restUrl, String restKey, byte[] body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(restUrl + "/predictions"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (!restKey.isEmpty()) {
+            request.header("apikey", restKey).header("Authorization", "Bearer " + restKey);
+        }
+        HttpResponse<Void> response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("POST /predictions returned " + response.statusCode());
+        }
+    }
+
+    private static List<List<PredictionResult>> batches(List<PredictionResult> results, int batchSize) {
+        List<List<PredictionResult>> batches = new ArrayList<>();
+        for (int from = 0; from < results.size(); from += batchSize) {
+            batches.add(results.subList(from, Math.min(results.size(), from + batchSize)));
+        }
+        return batches;
+    }
+
+    private static void cleanUp(Connection connection) throws Exception {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM predictions WHERE device_id LIKE ?")) {
+            delete.setString(1, DEVICE_PREFIX + "%");
+            delete.executeUpdate();
+        }
+    }
+
+    private static List<PredictionResult> syntheticResults(int count) {
+        String[] parts = {"compressor", "condenser", "evaporator", "expansion_valve", "fan_motor", "none"};
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.now().withNano(0);
+        List<PredictionResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String part = parts[random.nextInt(parts.length)];
+            results.add(PredictionResult.builder()
+                    .deviceId(String.format("%s%05d", DEVICE_PREFIX, i % 1000))
+                    .timestamp(base.plusSeconds(i))
+                    .isAnomaly(random.nextInt(20) == 0)
+                    .failureProbability(random.nextDouble())
+                    .healthIndex(random.nextDouble() * 100)
+                    .remainingUsefulLife(random.nextDouble() * 1000)
+                    .partAtRisk(part)
+                    .condition(part.equals("none") ? "normal" : "warning")
+                    .build());
+        }
+        return results;
+    }
+}
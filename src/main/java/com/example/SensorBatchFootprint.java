@@ -0,0 +1,88 @@
+package com.example;
+
+import com.example.mlbackend.model.SensorBatch;
+import com.example.mlbackend.model.SensorData;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SensorBatchFootprint - Measures the heap taken by fleet windows held as List<List<SensorData>>
+ * versus one columnar SensorBatch.
+ *
+ * Builds --devices windows of --window readings the way the REST decoder does, with a
+ * LocalDateTime and a device ID String per reading, and measures retained heap after full GCs.
+ * Then converts them to a SensorBatch, drops the lists and measures again.
+ *
+ *   java -Xmx2g com.example.SensorBatchFootprint [--devices=10000] [--window=11]
+ */
+public class SensorBatchFootprint {
+
+    public static void main(String[] args) {
+        TrainerArgs options = TrainerArgs.parse(args);
+        int devices = options.getInt("devices", 10000);
+        int window = options.getInt("window", 11);
+
+        long baseline = usedHeap();
+        List<List<SensorData>> windows = windows(devices, window);
+        long listBytes = usedHeap() - baseline;
+
+        SensorBatch batch = SensorBatch.of(windows);
+        windows = null;
+        long batchBytes = usedHeap() - baseline;
+
+        long rows = (long) devices * window;
+        System.out.printf("%d devices x %d readings = %d rows%n", devices, window, rows);
+        System.out.printf("%-24s %10s %10s%n", "representation", "heap MB", "bytes/row");
+        System.out.printf("%-24s %10.1f %10.1f%n", "List<List<SensorData>>", listBytes / 1048576.0, (double) listBytes / rows);
+        System.out.printf("%-24s %10.1f %10.1f%n", "SensorBatch (measured)", batchBytes / 1048576.0, (double) batchBytes / rows);
+        System.out.printf("%-24s %10.1f %10.1f%n", "SensorBatch (computed)", batch.heapBytes() / 1048576.0,
+                (double) batch.heapBytes() / rows);
+        System.out.printf("List / SensorBatch: %.1fx (%d windows)%n",
+                (double) listBytes / Math.max(1, batchBytes), batch.windowCount());
+    }
+
+    private static List<List<SensorData>> windows(int devices, int window) {
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<List<SensorData>> windows = new ArrayList<>(devices);
+        for (int d = 0; d < devices; d++) {
+            List<SensorData> readings = new ArrayList<>(window);
+            for (int i = 0; i < window; i++) {
+                readings.add(SensorData.builder()
+                        // A new String per reading, as decoded from each JSON row
+                        .deviceId(String.format("device-%05d", d))
+                        .timestamp(base.plusMinutes(i).plusSeconds(d))
+                        .feature1(-1.6 + random.nextGaussian() * 0.1)
+                        .feature2(4.0 + random.nextGaussian() * 0.3)
+                        .feature3(-17.0 + random.nextGaussian() * 0.3)
+                        .feature4(24.0 + random.nextGaussian())
+                        .feature5(40.0 + random.nextGaussian() * 2)
+                        .feature6(0.2 + random.nextGaussian() * 0.02)
+                        .feature7(0.2 + random.nextGaussian() * 0.02)
+                        .feature8(0.2 + random.nextGaussian() * 0.02)
+                        .feature9(1.2 + random.nextGaussian() * 0.05)
+                        .feature10(230.0 + random.nextGaussian() * 2)
+                        .feature11(Math.abs(random.nextGaussian() * 0.01))
+                        .build());
+            }
+            windows.add(readings);
+        }
+        return windows;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,190 @@
+package com.example;
+
+import com.example.mlbackend.model.SensorBatch;
+import com.example.mlbackend.service.SensorHistoryReader;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SensorReadBenchmark - Compares fetching the last N readings of many devices over JDBC
+ * (one LATERAL LIMIT query through SensorHistoryReader) with the REST path (one PostgREST
+ * GET per device, decoded into maps like SupabaseApiService does).
+ *
+ * Meant for a local Postgres with PostgREST in front of it; --seed first fills sensor_data
+ * with synthetic readings for the largest device count (device ids bench-00000, ...).
+ * Without --rest-url only the JDBC path is measured.
+ *
+ *   java com.example.SensorReadBenchmark --jdbc-url=jdbc:postgresql://localhost:5432/postgres
+ *        [--user=postgres] [--password=postgres] [--rest-url=http://localhost:3000] [--rest-key=...]
+ *        [--devices=1000,10000] [--window=11] [--runs=3] [--fetch-size=5000]
+ *        [--rest-concurrency=16] [--seed]
+ */
+public class SensorReadBenchmark {
+
+    private static final String DEVICE_PREFIX = "bench-";
+
+    public static void main(String[] args) throws Exception {
+        TrainerArgs options = TrainerArgs.parse(args);
+        String jdbcUrl = options.getString("jdbc-url", "jdbc:postgresql://localhost:5432/postgres");
+        String user = options.getString("user", "postgres");
+        String password = options.getString("password", "postgres");
+        String restUrl = options.getString("rest-url", "");
+        String restKey = options.getString("rest-key", "");
+        int window = options.getInt("window", 11);
+        int runs = options.getInt("runs", 3);
+        int fetchSize = options.getInt("fetch-size", 5000);
+        int restConcurrency = options.getInt("rest-concurrency", 16);
+        int[] deviceCounts = Arrays.stream(options.getString("devices", "1000,10000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, user, password)) {
+            if (options.getBoolean("seed", false)) {
+                seed(connection, Arrays.stream(deviceCounts).max().orElse(0), window);
+            }
+
+            System.out.printf("%-8s %-6s %10s %10s %14s %12s%n", "devices", "path", "median ms", "rows", "devices/sec", "bytes");
+            for (int devices : deviceCounts) {
+                List<String> deviceIds = deviceIds(devices);
+
+                long[] jdbcNanos = new long[runs];
+                int jdbcRows = 0;
+                for (int r = 0; r < runs; r++) {
+                    long start = System.nanoTime();
+                    SensorBatch windows = SensorHistoryReader.readWindows(connection, deviceIds, window, fetchSize);
+                    jdbcNanos[r] = System.nanoTime() - start;
+                    jdbcRows = windows.rowCount();
+                }
+                report(devices, "jdbc", jdbcNanos, jdbcRows, -1);
+
+                if (!restUrl.isEmpty()) {
+                    long[] restNanos = new long[runs];
+                    long[] restResult = new long[2];
+                    for (int r = 0; r < runs; r++) {
+                        long start = System.nanoTime();
+                        restResult = fetchRest(restUrl, restKey, deviceIds, window, restConcurrency);
+                        restNanos[r] = System.nanoTime() - start;
+                    }
+                    report(devices, "rest", restNanos, (int) restResult[0], restResult[1]);
+                }
+            }
+        }
+    }
+
+    private static void report(int devices, String path, long[] nanos, int rows, long bytes) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double medianMs = sorted[sorted.length / 2] / 1e6;
+        System.out.printf("%-8d %-6s %10.1f %10d %14.0f %12s%n", devices, path, medianMs, rows,
+                devices / (medianMs / 1000.0), bytes < 0 ? "-" : Long.toString(bytes));
+    }
+
+    /**
+     * One GET per device, the way the REST path would fetch per-device windows
+     * @return rows and response bytes received
+     */
+    private static long[] fetchRest(String restUrl, String restKey, List<String> deviceIds, int window,
+                                    int concurrency) throws Exception {
+        HttpClient client = HttpClient.newBuilder().build();
+        ObjectMapper objectMapper = new ObjectMapper();
+        AtomicLong rows = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String deviceId : deviceIds) {
+                futures.add(executor.submit(() -> {
+                    String url = restUrl + "/sensor_data?device_id=eq." + URLEncoder.encode(deviceId, StandardCharsets.UTF_8)
+                            + "&order=timestamp.desc&limit=" + window;
+                    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).GET();
+                    if (!restKey.isEmpty()) {
+                        request.header("apikey", restKey).header("Authorization", "Bearer " + restKey);
+                    }
+                    HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("GET " + url + " returned " + response.statusCode());
+                    }
+                    List<Map<String, Object>> body = objectMapper.readValue(response.body(),
+                            new TypeReference<List<Map<String, Object>>>() {});
+                    rows.addAndGet(body.size());
+                    bytes.addAndGet(response.body().length);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return new long[] {rows.get(), bytes.get()};
+    }
+
+    /**
+     * Replace the benchmark devices' readings with window readings per device, one minute apart
+     */
+    private static void seed(Connection connection, int devices, int window) throws Exception {
+        System.out.println("Seeding " + devices + " devices x " + window + " readings...");
+        long start = System.nanoTime();
+        Random random = new Random(42);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM sensor_data WHERE device_id LIKE ?");
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO sensor_data (device_id, timestamp, "
+                     + "evaporator_coil_temperature, fridge_temperature, freezer_temperature, air_temperature, humidity, "
+                     + "compressor_vibration_x, compressor_vibration_y, compressor_vibration_z, compressor_current, "
+                     + "input_voltage, gas_leakage_level) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            delete.setString(1, DEVICE_PREFIX + "%");
+            delete.executeUpdate();
+            LocalDateTime base = LocalDateTime.now().withNano(0).minusMinutes(window);
+            for (String deviceId : deviceIds(devices)) {
+                for (int i = 0; i < window; i++) {
+                    insert.setString(1, deviceId);
+                    insert.setObject(2, base.plusMinutes(i));
+                    double[] reading = {
+                            -1.6 + random.nextGaussian() * 0.1, 4.0 + random.nextGaussian() * 0.3,
+                            -17.0 + random.nextGaussian() * 0.3, 24.0 + random.nextGaussian(), 40.0 + random.nextGaussian() * 2,
+                            0.2 + random.nextGaussian() * 0.02, 0.2 + random.nextGaussian() * 0.02,
+                            0.2 + random.nextGaussian() * 0.02, 1.2 + random.nextGaussian() * 0.05,
+                            230.0 + random.nextGaussian() * 2, Math.abs(random.nextGaussian() * 0.01)};
+                    for (int f = 0; f < reading.length; f++) {
+                        insert.setDouble(3 + f, reading[f]);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        System.out.printf("Seeded in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static List<String> deviceIds(int devices) {
+        List<String> ids = new ArrayList<>(devices);
+        for (int d = 0; d < devices; d++) {
+            ids.add(String.format("%s%05d", DEVICE_PREFIX, d));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,418 @@
+package com.example;
+
+import com.example.mlbackend.MlBackendApplication;
+import com.example.mlbackend.service.DataFetcherService;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bytedeco.javacpp.Pointer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SoakTest - Runs the full pipeline for hours at an accelerated tick rate against PostgrestStub
+ * and fails on memory growth or latency drift, which often only show up after a long run
+ * (ND4J/javacpp off-heap leaks, JIT deoptimization, caches that never stop growing).
+ *
+ * The backend is booted in this JVM as in FleetLoadHarness. It runs a tick every --tick-ms
+ * (the stub produces a new reading per device at the same rate, so every tick has work) for
+ * --duration-minutes. Every --sample-seconds a timeline row records:
+ *
+ *   heap used and heap after the last GC (the leak signal: live data, not garbage), non-heap,
+ *   direct buffers, javacpp off-heap (Pointer.totalBytes) and process RSS (Pointer.physicalBytes),
+ *   GC count, GC time and longest GC pause, JIT compilation time, tick p50/p99,
+ *   and the mean of every pipeline.* timer (per stage for the staged pipeline) in the window.
+ *
+ * At the end, after --warmup-minutes, it fits a least-squares slope (MB/hour) to heap after GC,
+ * off-heap and RSS, and compares tick p99 of the last third of the run with the first third.
+ * The run fails if a slope exceeds its limit, or p99 grew by more than --max-p99-drift times
+ * and by at least --p99-drift-floor-ms.
+ *
+ * The report (--report) has the configuration, the timeline as tab-separated columns and the
+ * verdicts, in a fixed layout so reports of two releases can be diffed. The exit code is 1 if
+ * any check failed.
+ *
+ *   java -Xmx2g com.example.SoakTest [--duration-minutes=60] [--tick-ms=1000] [--sample-seconds=30]
+ *        [--warmup-minutes=10] [--devices=200] [--pipeline=staged|virtual|single] [--transport=json|csv]
+ *        [--max-heap-slope-mb-per-hour=16] [--max-offheap-slope-mb-per-hour=16]
+ *        [--max-rss-slope-mb-per-hour=32] [--max-p99-drift=1.5] [--p99-drift-floor-ms=50]
+ *        [--report=soak-report.txt] [--data=data/part_risk_data.csv]
+ */
+public class SoakTest {
+
+    private static final double MB = 1024.0 * 1024.0;
+
+    /**
+     * One timeline row
+     */
+    private record Sample(double elapsedSeconds, long ticks, long stored, double heapMb, double heapAfterGcMb,
+                          double nonHeapMb, double directMb, double offHeapMb, double rssMb, long gcCount,
+                          long gcMs, long gcMaxPauseMs, long jitMs, double tickP50Ms, double tickP99Ms,
+                          Map<String, Double> timerMeansMs) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        TrainerArgs options = TrainerArgs.parse(args);
+        int durationMinutes = options.getInt("duration-minutes", 60);
+        // The stub's readings are whole seconds apart
+        int tickMs = Math.max(1000, options.getInt("tick-ms", 1000) / 1000 * 1000);
+        int sampleSeconds = Math.max(1, options.getInt("sample-seconds", 30));
+        int warmupMinutes = options.getInt("warmup-minutes", Math.min(10, durationMinutes / 5));
+        int devices = options.getInt("devices", 200);
+        String pipeline = options.getString("pipeline", "staged");
+        String transport = options.getString("transport", "json");
+        Path reportPath = Paths.get(options.getString("report", "soak-report.txt"));
+
+        Map<String, String> config = new TreeMap<>();
+        config.put("backend_version", String.valueOf(MlBackendApplication.class.getPackage().getImplementationVersion()));
+        config.put("java", System.getProperty("java.version"));
+        config.put("cores", Integer.toString(Runtime.getRuntime().availableProcessors()));
+        config.put("max_heap_mb", String.format(Locale.ROOT, "%.0f", Runtime.getRuntime().maxMemory() / MB));
+        config.put("javacpp_max_bytes_mb", String.format(Locale.ROOT, "%.0f", Pointer.maxBytes() / MB));
+        config.put("duration_minutes", Integer.toString(durationMinutes));
+        config.put("tick_ms", Integer.toString(tickMs));
+        config.put("sample_seconds", Integer.toString(sampleSeconds));
+        config.put("warmup_minutes", Integer.toString(warmupMinutes));
+        config.put("devices", Integer.toString(devices));
+        config.put("pipeline", pipeline);
+        config.put("transport", transport);
+
+        GcPauses gcPauses = GcPauses.register();
+        List<Sample> timeline = new ArrayList<>();
+        List<long[]> ticks = new ArrayList<>();
+
+        try (PostgrestStub stub = new PostgrestStub(devices, tickMs, 100, Math.max(10000, devices * 2),
+                Paths.get(options.getString("data", "data/part_risk_data.csv")));
+             ConfigurableApplicationContext context = startBackend(stub, pipeline, transport)) {
+            DataFetcherService dataFetcherService = context.getBean(DataFetcherService.class);
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            System.out.printf("Soak test: %d minutes, tick every %d ms, %d devices, pipeline=%s%n",
+                    durationMinutes, tickMs, devices, pipeline);
+
+            long start = System.nanoTime();
+            long end = start + TimeUnit.MINUTES.toNanos(durationMinutes);
+            long nextSample = start + TimeUnit.SECONDS.toNanos(sampleSeconds);
+            Sampler sampler = new Sampler(meterRegistry, gcPauses);
+            sampler.reset(stub);
+            int windowStart = 0;
+            while (System.nanoTime() < end) {
+                long tickStart = System.nanoTime();
+                dataFetcherService.runPipeline();
+                long tickNanos = System.nanoTime() - tickStart;
+                ticks.add(new long[] {tickStart - start, tickNanos});
+
+                if (System.nanoTime() >= nextSample) {
+                    Sample sample = sampler.sample((System.nanoTime() - start) / 1e9, ticks.size(), stub,
+                            ticks.subList(windowStart, ticks.size()));
+                    timeline.add(sample);
+                    windowStart = ticks.size();
+                    nextSample += TimeUnit.SECONDS.toNanos(sampleSeconds);
+                    System.out.printf(Locale.ROOT, "%6.0fs ticks=%d heapAfterGc=%.1fMB offHeap=%.1fMB rss=%.1fMB "
+                                    + "p99=%.1fms gcMaxPause=%dms%n", sample.elapsedSeconds(), sample.ticks(),
+                            sample.heapAfterGcMb(), sample.offHeapMb(), sample.rssMb(), sample.tickP99Ms(),
+                            sample.gcMaxPauseMs());
+                }
+                long sleepMs = tickMs - tickNanos / 1_000_000;
+                if (sleepMs > 0) {
+                    Thread.sleep(Math.min(sleepMs, Math.max(0, (end - System.nanoTime()) / 1_000_000)));
+                }
+            }
+        }
+
+        List<String> verdicts = new ArrayList<>();
+        boolean passed = analyze(options, timeline, ticks, warmupMinutes * 60.0, verdicts);
+        writeReport(reportPath, config, timeline, verdicts, passed);
+        System.out.println(String.join(System.lineSeparator(), verdicts));
+        System.out.println("Report written to " + reportPath.toAbsolutePath() + ": " + (passed ? "PASS" : "FAIL"));
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static ConfigurableApplicationContext startBackend(PostgrestStub stub, String pipeline, String transport)
+            throws IOException {
+        stub.start(0);
+        return FleetLoadHarness.startBackend(stub, pipeline, transport);
+    }
+
+    /**
+     * Memory slopes and p99 drift over the samples and ticks after warmup
+     * @return true if every check passed
+     */
+    private static boolean analyze(TrainerArgs options, List<Sample> timeline, List<long[]> ticks,
+                                   double warmupSeconds, List<String> verdicts) {
+        List<Sample> measured = timeline.stream().filter(s -> s.elapsedSeconds() >= warmupSeconds).toList();
+        if (measured.size() < 3) {
+            verdicts.add("samples_after_warmup: " + measured.size() + " (need at least 3) FAIL");
+            return false;
+        }
+        boolean passed = true;
+        passed &= slope(verdicts, "heap_after_gc_slope_mb_per_hour", measured, Sample::heapAfterGcMb,
+                options.getDouble("max-heap-slope-mb-per-hour", 16));
+        passed &= slope(verdicts, "offheap_slope_mb_per_hour", measured, Sample::offHeapMb,
+                options.getDouble("max-offheap-slope-mb-per-hour", 16));
+        passed &= slope(verdicts, "rss_slope_mb_per_hour", measured, Sample::rssMb,
+                options.getDouble("max-rss-slope-mb-per-hour", 32));
+
+        long warmupNanos = (long) (warmupSeconds * 1e9);
+        long[] latencies = ticks.stream().filter(t -> t[0] >= warmupNanos).mapToLong(t -> t[1]).toArray();
+        int third = latencies.length / 3;
+        if (third == 0) {
+            verdicts.add("tick_p99_drift: too few ticks after warmup FAIL");
+            return false;
+        }
+        double firstP99 = percentile(Arrays.copyOfRange(latencies, 0, third), 0.99) / 1e6;
+        double lastP99 = percentile(Arrays.copyOfRange(latencies, latencies.length - third, latencies.length), 0.99) / 1e6;
+        double maxDrift = options.getDouble("max-p99-drift", 1.5);
+        double floorMs = options.getDouble("p99-drift-floor-ms", 50);
+        double drift = lastP99 / Math.max(firstP99, 1e-9);
+        boolean driftOk = drift <= maxDrift || lastP99 - firstP99 < floorMs;
+        verdicts.add(String.format(Locale.ROOT, "tick_p99_first_third_ms: %.1f", firstP99));
+        verdicts.add(String.format(Locale.ROOT, "tick_p99_last_third_ms: %.1f", lastP99));
+        verdicts.add(String.format(Locale.ROOT, "tick_p99_drift: %.2fx (limit %.2fx, floor %.0f ms) %s",
+                drift, maxDrift, floorMs, driftOk ? "PASS" : "FAIL"));
+        passed &= driftOk;
+
+        // Per-timer means, first and last third of the samples; reported, not checked
+        int sampleThird = Math.max(1, measured.size() / 3);
+        for (String timer : measured.get(measured.size() - 1).timerMeansMs().keySet()) {
+            double first = meanOf(measured.subList(0, sampleThird), timer);
+            double last = meanOf(measured.subList(measured.size() - sampleThird, measured.size()), timer);
+            verdicts.add(String.format(Locale.ROOT, "timer %s mean_ms: %.2f -> %.2f", timer, first, last));
+        }
+        return passed;
+    }
+
+    private static boolean slope(List<String> verdicts, String name, List<Sample> samples,
+                                 java.util.function.ToDoubleFunction<Sample> value, double limit) {
+        double n = samples.size();
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        for (Sample sample : samples) {
+            double x = sample.elapsedSeconds() / 3600.0;
+            double y = value.applyAsDouble(sample);
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        double slope = denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+        boolean ok = slope <= limit;
+        verdicts.add(String.format(Locale.ROOT, "%s: %.2f (limit %.2f) %s", name, slope, limit, ok ? "PASS" : "FAIL"));
+        return ok;
+    }
+
+    private static double meanOf(List<Sample> samples, String timer) {
+        return samples.stream().mapToDouble(s -> s.timerMeansMs().getOrDefault(timer, 0.0)).average().orElse(0);
+    }
+
+    private static void writeReport(Path path, Map<String, String> config, List<Sample> timeline,
+                                     List<String> verdicts, boolean passed) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        List<String> timers = timeline.isEmpty() ? List.of()
+                : new ArrayList<>(timeline.get(timeline.size() - 1).timerMeansMs().keySet());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("# Soak test report");
+            out.println();
+            out.println("## Configuration");
+            config.forEach((key, value) -> out.println(key + ": " + value));
+            out.println();
+            out.println("## Timeline");
+            StringBuilder header = new StringBuilder("elapsed_s\tticks\tstored\theap_mb\theap_after_gc_mb\tnon_heap_mb"
+                    + "\tdirect_mb\toffheap_mb\trss_mb\tgc_count\tgc_ms\tgc_max_pause_ms\tjit_ms\ttick_p50_ms\ttick_p99_ms");
+            for (String timer : timers) {
+                header.append('\t').append(timer).append("_mean_ms");
+            }
+            out.println(header);
+            for (Sample s : timeline) {
+                StringBuilder row = new StringBuilder(String.format(Locale.ROOT,
+                        "%.0f\t%d\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%d\t%d\t%d\t%d\t%.1f\t%.1f",
+                        s.elapsedSeconds(), s.ticks(), s.stored(), s.heapMb(), s.heapAfterGcMb(), s.nonHeapMb(),
+                        s.directMb(), s.offHeapMb(), s.rssMb(), s.gcCount(), s.gcMs(), s.gcMaxPauseMs(), s.jitMs(),
+                        s.tickP50Ms(), s.tickP99Ms()));
+                for (String timer : timers) {
+                    row.append(String.format(Locale.ROOT, "\t%.2f", s.timerMeansMs().getOrDefault(timer, 0.0)));
+                }
+                out.println(row);
+            }
+            out.println();
+            out.println("## Summary");
+            verdicts.forEach(out::println);
+            out.println("result: " + (passed ? "PASS" : "FAIL"));
+        }
+    }
+
+    private static double percentile(long[] values, double p) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Takes timeline samples; GC, JIT and timer figures are deltas since the previous sample
+     */
+    private static final class Sampler {
+        private final MeterRegistry meterRegistry;
+        private final GcPauses gcPauses;
+        private long gcCount;
+        private long gcMs;
+        private long jitMs;
+        private long stored;
+        private final Map<String, long[]> timers = new TreeMap<>();
+
+        Sampler(MeterRegistry meterRegistry, GcPauses gcPauses) {
+            this.meterRegistry = meterRegistry;
+            this.gcPauses = gcPauses;
+        }
+
+        void reset(PostgrestStub stub) {
+            gcCount = totalGcCount();
+            gcMs = totalGcMs();
+            jitMs = totalJitMs();
+            stored = stub.predictionsStored();
+            gcPauses.takeMaxPauseMs();
+            for (Map.Entry<String, Timer> timer : pipelineTimers().entrySet()) {
+                timers.put(timer.getKey(), timerTotals(timer.getValue()));
+            }
+        }
+
+        Sample sample(double elapsedSeconds, long tickCount, PostgrestStub stub, List<long[]> windowTicks) {
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+            long heapAfterGc = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                MemoryUsage afterGc = pool.getCollectionUsage();
+                if (pool.getType() == MemoryType.HEAP && afterGc != null) {
+                    heapAfterGc += afterGc.getUsed();
+                }
+            }
+            long direct = 0;
+            for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                if ("direct".equals(pool.getName())) {
+                    direct = pool.getMemoryUsed();
+                }
+            }
+
+            long gcCountNow = totalGcCount();
+            long gcMsNow = totalGcMs();
+            long jitMsNow = totalJitMs();
+            long storedNow = stub.predictionsStored();
+            Map<String, Double> timerMeans = new TreeMap<>();
+            for (Map.Entry<String, Timer> timer : pipelineTimers().entrySet()) {
+                long[] now = timerTotals(timer.getValue());
+                long[] before = timers.getOrDefault(timer.getKey(), new long[2]);
+                long count = now[0] - before[0];
+                timerMeans.put(timer.getKey(), count == 0 ? 0.0 : (now[1] - before[1]) / 1e6 / count);
+                timers.put(timer.getKey(), now);
+            }
+            long[] latencies = windowTicks.stream().mapToLong(t -> t[1]).toArray();
+
+            Sample sample = new Sample(elapsedSeconds, tickCount, storedNow - stored, heap.getUsed() / MB,
+                    heapAfterGc / MB, nonHeap.getUsed() / MB, direct / MB, Pointer.totalBytes() / MB,
+                    Pointer.physicalBytes() / MB, gcCountNow - gcCount, gcMsNow - gcMs, gcPauses.takeMaxPauseMs(),
+                    jitMsNow - jitMs, percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                    timerMeans);
+            gcCount = gcCountNow;
+            gcMs = gcMsNow;
+            jitMs = jitMsNow;
+            stored = storedNow;
+            return sample;
+        }
+
+        /**
+         * pipeline.* timers by name and tag values, e.g. pipeline.stage.duration.infer
+         */
+        private Map<String, Timer> pipelineTimers() {
+            Map<String, Timer> found = new TreeMap<>();
+            for (Meter meter : meterRegistry.getMeters()) {
+                if (meter instanceof Timer timer && meter.getId().getName().startsWith("pipeline.")) {
+                    StringBuilder key = new StringBuilder(meter.getId().getName());
+                    meter.getId().getTags().forEach(tag -> key.append('.').append(tag.getValue()));
+                    found.put(key.toString(), timer);
+                }
+            }
+            return found;
+        }
+
+        private static long[] timerTotals(Timer timer) {
+            return new long[] {timer.count(), (long) timer.totalTime(TimeUnit.NANOSECONDS)};
+        }
+
+        private static long totalGcCount() {
+            return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                    .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+        }
+
+        private static long totalGcMs() {
+            return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                    .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+        }
+
+        private static long totalJitMs() {
+            CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+            return compilation != null && compilation.isCompilationTimeMonitoringSupported()
+                    ? compilation.getTotalCompilationTime() : 0;
+        }
+    }
+
+    /**
+     * Longest stop-the-world GC since the last take, from the collectors' notifications.
+     * Concurrent cycles (e.g. "G1 Concurrent GC") run alongside the application and are left out.
+     */
+    private static final class GcPauses {
+        private final AtomicLong maxPauseMs = new AtomicLong();
+
+        static GcPauses register() {
+            GcPauses pauses = new GcPauses();
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter emitter) {
+                    emitter.addNotificationListener((notification, handback) -> {
+                        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                            return;
+                        }
+                        GarbageCollectionNotificationInfo info =
+                                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                        if (!info.getGcName().contains("Concurrent")) {
+                            pauses.maxPauseMs.accumulateAndGet(info.getGcInfo().getDuration(), Math::max);
+                        }
+                    }, null, null);
+                }
+            }
+            return pauses;
+        }
+
+        long takeMaxPauseMs() {
+            return maxPauseMs.getAndSet(0);
+        }
+    }
+}
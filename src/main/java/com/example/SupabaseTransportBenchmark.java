@@ -0,0 +1,303 @@
+package com.example;
+
+import com.example.mlbackend.config.CompressedResponseRequestFactory;
+import com.example.mlbackend.model.SensorBatch;
+import com.example.mlbackend.service.SensorCsvDecoder;
+import com.example.mlbackend.service.SupabaseApiService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * SupabaseTransportBenchmark - Measures the sensor window fetch in each transport mode against
+ * a local stub of PostgREST:
+ *
+ *   json       application/json, uncompressed (the original REST path)
+ *   json-gzip  application/json with gzip negotiated by CompressedResponseRequestFactory
+ *   csv        text/csv decoded by SensorCsvDecoder
+ *   csv-gzip   text/csv with gzip
+ *
+ * The stub serves --devices device windows of --window readings, rendered the way PostgREST
+ * does: JSON rows with every column name (including id), CSV with a header line and the
+ * selected columns. Each mode fetches every window once per run, one request at a time, and
+ * decodes them into a SensorBatch the way StagedPipeline does. Reported per 10k rows:
+ *
+ *   wire KB     response bytes the server sent
+ *   fetch ms    request + decompression + decode, median of --runs
+ *   decode ms   decompression + decode of the same bytes already in memory, median of --runs
+ *
+ * Before measuring, the JSON and CSV decodes are checked to give the same batch.
+ *
+ *   java com.example.SupabaseTransportBenchmark [--devices=1000] [--window=11] [--runs=5]
+ *        [--modes=json,json-gzip,csv,csv-gzip]
+ */
+public class SupabaseTransportBenchmark {
+
+    private static final String[] FEATURE_COLUMNS = {
+            "evaporator_coil_temperature", "fridge_temperature", "freezer_temperature", "air_temperature",
+            "humidity", "compressor_vibration_x", "compressor_vibration_y", "compressor_vibration_z",
+            "compressor_current", "input_voltage", "gas_leakage_level"
+    };
+
+    private static volatile long sink;
+
+    /**
+     * Pre-rendered responses of one device, in each format and encoding
+     */
+    private record DeviceBodies(byte[] json, byte[] jsonGzip, byte[] csv, byte[] csvGzip) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        TrainerArgs options = TrainerArgs.parse(args);
+        int devices = options.getInt("devices", 1000);
+        int window = options.getInt("window", 11);
+        int runs = options.getInt("runs", 5);
+        String[] modes = options.getString("modes", "json,json-gzip,csv,csv-gzip").split(",");
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, DeviceBodies> bodies = render(objectMapper, devices, window);
+        AtomicLong bytesSent = new AtomicLong();
+        HttpServer server = startServer(bodies, bytesSent);
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        List<String> deviceIds = new ArrayList<>(bodies.keySet());
+        SupabaseApiService decoder = new SupabaseApiService(new RestTemplate(), objectMapper);
+
+        try {
+            verify(objectMapper, decoder, bodies, deviceIds);
+            long rows = (long) devices * window;
+            double per10k = 10_000.0 / rows;
+            System.out.printf("%d devices x %d readings = %d rows, %d runs%n", devices, window, rows, runs);
+            System.out.printf("%-10s %12s %12s %12s%n", "mode", "wire KB/10k", "fetch ms/10k", "decode ms/10k");
+
+            for (String mode : modes) {
+                boolean csv = mode.startsWith("csv");
+                boolean gzip = mode.endsWith("-gzip");
+                RestTemplate restTemplate = new RestTemplate();
+                if (gzip) {
+                    restTemplate.setRequestFactory(
+                            new CompressedResponseRequestFactory(new SimpleClientHttpRequestFactory()));
+                }
+
+                // Warm up the client, the decoders and the JIT
+                fetch(restTemplate, baseUrl, deviceIds, window, csv, decoder);
+                long[] fetchNanos = new long[runs];
+                long wireBytes = 0;
+                for (int r = 0; r < runs; r++) {
+                    long sentBefore = bytesSent.get();
+                    long start = System.nanoTime();
+                    sink += fetch(restTemplate, baseUrl, deviceIds, window, csv, decoder).rowCount();
+                    fetchNanos[r] = System.nanoTime() - start;
+                    wireBytes = bytesSent.get() - sentBefore;
+                }
+
+                List<byte[]> wire = new ArrayList<>(deviceIds.size());
+                for (String deviceId : deviceIds) {
+                    DeviceBodies body = bodies.get(deviceId);
+                    wire.add(csv ? (gzip ? body.csvGzip() : body.csv()) : (gzip ? body.jsonGzip() : body.json()));
+                }
+                decode(objectMapper, decoder, wire, csv, gzip);
+                long[] decodeNanos = new long[runs];
+                for (int r = 0; r < runs; r++) {
+                    long start = System.nanoTime();
+                    sink += decode(objectMapper, decoder, wire, csv, gzip).rowCount();
+                    decodeNanos[r] = System.nanoTime() - start;
+                }
+
+                System.out.printf("%-10s %12.1f %12.1f %12.2f%n", mode, wireBytes * per10k / 1024.0,
+                        median(fetchNanos) / 1e6 * per10k, median(decodeNanos) / 1e6 * per10k);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Fetch every device's window over HTTP the way the staged pipeline's fetch and decode stages do
+     */
+    private static SensorBatch fetch(RestTemplate restTemplate, String baseUrl, List<String> deviceIds, int window,
+                                     boolean csv, SupabaseApiService decoder) {
+        if (csv) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setAccept(List.of(MediaType.parseMediaType("text/csv")));
+            List<byte[]> responses = new ArrayList<>(deviceIds.size());
+            for (String deviceId : deviceIds) {
+                responses.add(restTemplate.exchange(baseUrl + "/sensor_data?device_id=eq." + deviceId
+                        + "&order=timestamp.desc&limit=" + window, HttpMethod.GET, new HttpEntity<>(headers),
+                        byte[].class).getBody());
+            }
+            return decoder.decodeCsvBatch(responses);
+        }
+        List<List<Map<String, Object>>> responses = new ArrayList<>(deviceIds.size());
+        for (String deviceId : deviceIds) {
+            responses.add(restTemplate.exchange(baseUrl + "/sensor_data?device_id=eq." + deviceId
+                            + "&order=timestamp.desc&limit=" + window, HttpMethod.GET, null,
+                    new ParameterizedTypeReference<List<Map<String, Object>>>() {}).getBody());
+        }
+        return decoder.decodeBatch(responses);
+    }
+
+    private static SensorBatch decode(ObjectMapper objectMapper, SupabaseApiService decoder, List<byte[]> wire,
+                                      boolean csv, boolean gzip) throws IOException {
+        if (csv) {
+            List<byte[]> responses = new ArrayList<>(wire.size());
+            for (byte[] body : wire) {
+                responses.add(gzip ? gunzip(body) : body);
+            }
+            return SensorCsvDecoder.decodeBatch(responses);
+        }
+        TypeReference<List<Map<String, Object>>> rows = new TypeReference<>() {};
+        List<List<Map<String, Object>>> responses = new ArrayList<>(wire.size());
+        for (byte[] body : wire) {
+            responses.add(gzip ? objectMapper.readValue(new GZIPInputStream(new ByteArrayInputStream(body)), rows)
+                    : objectMapper.readValue(body, rows));
+        }
+        return decoder.decodeBatch(responses);
+    }
+
+    private static void verify(ObjectMapper objectMapper, SupabaseApiService decoder, Map<String, DeviceBodies> bodies,
+                               List<String> deviceIds) throws IOException {
+        List<byte[]> json = new ArrayList<>();
+        List<byte[]> csv = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            json.add(bodies.get(deviceId).json());
+            csv.add(bodies.get(deviceId).csv());
+        }
+        SensorBatch fromJson = decode(objectMapper, decoder, json, false, false);
+        SensorBatch fromCsv = decode(objectMapper, decoder, csv, true, false);
+        if (fromJson.rowCount() != fromCsv.rowCount() || fromJson.windowCount() != fromCsv.windowCount()) {
+            throw new IllegalStateException("CSV decode has " + fromCsv.rowCount() + " rows, JSON " + fromJson.rowCount());
+        }
+        for (int row = 0; row < fromJson.rowCount(); row++) {
+            boolean same = fromJson.deviceId(row).equals(fromCsv.deviceId(row))
+                    && fromJson.timestamp(row) == fromCsv.timestamp(row);
+            for (int f = 0; f < SensorBatch.FEATURES && same; f++) {
+                same = fromJson.feature(row, f) == fromCsv.feature(row, f);
+            }
+            if (!same) {
+                throw new IllegalStateException("CSV and JSON decodes differ at row " + row);
+            }
+        }
+    }
+
+    private static Map<String, DeviceBodies> render(ObjectMapper objectMapper, int devices, int window)
+            throws IOException {
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        double[] means = {-1.6, 4.0, -17.0, 24.0, 40.0, 0.2, 0.2, 0.2, 1.2, 230.0, 0.0};
+        double[] spreads = {0.1, 0.3, 0.3, 1.0, 2.0, 0.02, 0.02, 0.02, 0.05, 2.0, 0.01};
+        Map<String, DeviceBodies> bodies = new LinkedHashMap<>();
+        long id = 1;
+        for (int d = 0; d < devices; d++) {
+            String deviceId = String.format("bench-%05d", d);
+            List<Map<String, Object>> rows = new ArrayList<>(window);
+            StringBuilder csv = new StringBuilder("device_id,timestamp,").append(String.join(",", FEATURE_COLUMNS));
+            // Newest first, as fetched with order=timestamp.desc
+            for (int i = window - 1; i >= 0; i--) {
+                LocalDateTime timestamp = base.plusMinutes(i).plusSeconds(d);
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", id++);
+                row.put("device_id", deviceId);
+                row.put("timestamp", timestamp.toString().length() == 16 ? timestamp + ":00" : timestamp.toString());
+                csv.append('\n').append(deviceId).append(',').append(row.get("timestamp").toString().replace('T', ' '));
+                for (int f = 0; f < FEATURE_COLUMNS.length; f++) {
+                    double value = means[f] + random.nextGaussian() * spreads[f];
+                    row.put(FEATURE_COLUMNS[f], f == FEATURE_COLUMNS.length - 1 ? Math.abs(value) : value);
+                    csv.append(',').append(row.get(FEATURE_COLUMNS[f]));
+                }
+                rows.add(row);
+            }
+            csv.append('\n');
+            byte[] json = objectMapper.writeValueAsBytes(rows);
+            byte[] csvBytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+            bodies.put(deviceId, new DeviceBodies(json, gzip(json), csvBytes, gzip(csvBytes)));
+        }
+        return bodies;
+    }
+
+    private static HttpServer startServer(Map<String, DeviceBodies> bodies, AtomicLong bytesSent) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/sensor_data", exchange -> {
+            try {
+                String query = exchange.getRequestURI().getQuery();
+                String deviceId = query.substring(query.indexOf("device_id=eq.") + 13).split("&")[0];
+                DeviceBodies body = bodies.get(deviceId);
+                if (body == null) {
+                    respond(exchange, 200, "application/json", null, "[]".getBytes(StandardCharsets.UTF_8), bytesSent);
+                    return;
+                }
+                String accept = exchange.getRequestHeaders().getFirst("Accept");
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                boolean csv = accept != null && accept.contains("text/csv");
+                boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+                byte[] bytes = csv ? (gzip ? body.csvGzip() : body.csv()) : (gzip ? body.jsonGzip() : body.json());
+                respond(exchange, 200, csv ? "text/csv; charset=utf-8" : "application/json; charset=utf-8",
+                        gzip ? "gzip" : null, bytes, bytesSent);
+            } catch (Exception e) {
+                respond(exchange, 500, "text/plain", null, e.toString().getBytes(StandardCharsets.UTF_8), bytesSent);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String contentEncoding,
+                                byte[] body, AtomicLong bytesSent) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (contentEncoding != null) {
+            exchange.getResponseHeaders().set("Content-Encoding", contentEncoding);
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        bytesSent.addAndGet(body.length);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
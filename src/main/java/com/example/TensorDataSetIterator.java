@@ -0,0 +1,263 @@
+package com.example;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * TensorDataSetIterator - Shared DataSetIterator for the trainers.
+ *
+ * The whole data set is held once as contiguous off-heap tensors. Each epoch only
+ * shuffles an int[] of sample indices; batches are gathered from the stored tensors
+ * with bulk ND4J copies instead of per-element putScalar loops.
+ *
+ * Two layouts are supported:
+ * - rows:    features [N, F], labels [N, C]           -> batches [B, F] / [B, C]
+ * - windows: features [N, F], labels [N, C] per row,  -> batches [B, F, T] / [B, C, T]
+ *            each sample is the window of T rows ending at a row, labelled with
+ *            that row's label at the last time step (other steps are masked out)
+ *
+ * asyncSupported() is true, so MultiLayerNetwork.fit(iterator) prefetches the next
+ * batches on a background thread while the current one is being trained.
+ */
+public class TensorDataSetIterator implements DataSetIterator {
+
+    private final INDArray features;
+    private final INDArray labels;
+    private final INDArray featuresByTime; // [F, N] copy used to slice windows, null in row mode
+    private final int sequenceLength;
+    private final int batchSize;
+    private final int[] order;
+    private final Random random;
+
+    private int cursor = 0;
+    private DataSetPreProcessor preProcessor;
+    private long epochStartNanos;
+    private long samplesServed;
+
+    private TensorDataSetIterator(INDArray features, INDArray labels, int sequenceLength,
+                                  int batchSize, boolean shuffle, long seed) {
+        if (features.size(0) != labels.size(0)) {
+            throw new IllegalArgumentException("Features and labels must have the same number of rows: "
+                    + features.size(0) + " vs " + labels.size(0));
+        }
+        this.features = contiguous(features);
+        this.labels = contiguous(labels);
+        this.sequenceLength = sequenceLength;
+        this.batchSize = batchSize;
+        this.featuresByTime = sequenceLength > 0 ? this.features.transpose().dup('c') : null;
+        this.random = shuffle ? new Random(seed) : null;
+
+        // In window mode sample i is the window ending at row i + sequenceLength - 1
+        int numSamples = (int) features.size(0) - Math.max(sequenceLength - 1, 0);
+        if (numSamples <= 0) {
+            throw new IllegalArgumentException("Not enough rows (" + features.size(0)
+                    + ") for sequence length " + sequenceLength);
+        }
+        this.order = new int[numSamples];
+        for (int i = 0; i < numSamples; i++) {
+            order[i] = i;
+        }
+        reset();
+    }
+
+    /**
+     * Iterate over single rows, e.g. for the dense part risk and autoencoder networks
+     */
+    public static TensorDataSetIterator rows(INDArray features, INDArray labels, int batchSize,
+                                             boolean shuffle, long seed) {
+        return new TensorDataSetIterator(features, labels, 0, batchSize, shuffle, seed);
+    }
+
+    /**
+     * Iterate over sliding windows of consecutive rows for recurrent networks
+     */
+    public static TensorDataSetIterator windows(INDArray features, INDArray labels, int sequenceLength,
+                                                int batchSize, boolean shuffle, long seed) {
+        if (sequenceLength < 1) {
+            throw new IllegalArgumentException("Sequence length must be positive: " + sequenceLength);
+        }
+        return new TensorDataSetIterator(features, labels, sequenceLength, batchSize, shuffle, seed);
+    }
+
+    /**
+     * Pack the selected rows of primitive columns into one contiguous float matrix [rows, columns]
+     * @param columns column-major data, e.g. from ColumnarTable.numericColumns()
+     * @param rows row indices to include, in order
+     */
+    public static INDArray matrix(double[][] columns, int[] rows) {
+        int numColumns = columns.length;
+        float[] data = new float[rows.length * numColumns];
+        for (int j = 0; j < numColumns; j++) {
+            double[] column = columns[j];
+            for (int i = 0, offset = j; i < rows.length; i++, offset += numColumns) {
+                data[offset] = (float) column[rows[i]];
+            }
+        }
+        return Nd4j.create(data, new long[] {rows.length, numColumns}, 'c');
+    }
+
+    /**
+     * Randomly split row indices into a training and a held-out part, each kept in ascending order
+     * @return {trainRows, heldOutRows}
+     */
+    public static int[][] splitRows(int[] rows, double trainFraction, long seed) {
+        int[] shuffled = rows.clone();
+        Random random = new Random(seed);
+        for (int i = shuffled.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = tmp;
+        }
+        int numTrain = (int) Math.round(shuffled.length * trainFraction);
+        int[] train = Arrays.copyOf(shuffled, numTrain);
+        int[] heldOut = Arrays.copyOfRange(shuffled, numTrain, shuffled.length);
+        Arrays.sort(train);
+        Arrays.sort(heldOut);
+        return new int[][] {train, heldOut};
+    }
+
+    @Override
+    public DataSet next(int num) {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more data available");
+        }
+        int end = Math.min(cursor + num, order.length);
+        int[] indices = new int[end - cursor];
+        System.arraycopy(order, cursor, indices, 0, indices.length);
+        cursor = end;
+
+        DataSet batch = sequenceLength > 0 ? windowBatch(indices) : rowBatch(indices);
+        if (preProcessor != null) {
+            preProcessor.preProcess(batch);
+        }
+        samplesServed += indices.length;
+        return batch;
+    }
+
+    private DataSet rowBatch(int[] indices) {
+        if (random == null) {
+            // Consecutive rows: hand out views, copied only if a pre-processor will modify them
+            INDArray f = features.get(NDArrayIndex.interval(indices[0], indices[0] + indices.length), NDArrayIndex.all());
+            INDArray l = labels.get(NDArrayIndex.interval(indices[0], indices[0] + indices.length), NDArrayIndex.all());
+            return preProcessor == null ? new DataSet(f, l) : new DataSet(f.dup(), l.dup());
+        }
+        return new DataSet(Nd4j.pullRows(features, 1, indices), Nd4j.pullRows(labels, 1, indices));
+    }
+
+    private DataSet windowBatch(int[] indices) {
+        int numFeatures = (int) features.size(1);
+        int numOutcomes = (int) labels.size(1);
+        INDArray featuresBatch = Nd4j.create(features.dataType(), indices.length, numFeatures, sequenceLength);
+        INDArray labelsBatch = Nd4j.create(labels.dataType(), indices.length, numOutcomes, sequenceLength);
+        INDArray labelsMask = Nd4j.create(labels.dataType(), indices.length, sequenceLength);
+
+        for (int b = 0; b < indices.length; b++) {
+            int start = indices[b];
+            int last = start + sequenceLength - 1;
+            // [F, T] view over the stored tensor, copied in one native assign
+            featuresBatch.tensorAlongDimension(b, 1, 2)
+                    .assign(featuresByTime.get(NDArrayIndex.all(), NDArrayIndex.interval(start, last + 1)));
+            labelsBatch.get(NDArrayIndex.point(b), NDArrayIndex.all(), NDArrayIndex.point(sequenceLength - 1))
+                    .assign(labels.getRow(last));
+            labelsMask.putScalar(b, sequenceLength - 1, 1.0);
+        }
+
+        return new DataSet(featuresBatch, labelsBatch, null, labelsMask);
+    }
+
+    /**
+     * Samples per second handed out since the last reset (i.e. over the current epoch)
+     */
+    public double samplesPerSecond() {
+        double seconds = (System.nanoTime() - epochStartNanos) / 1e9;
+        return seconds > 0 ? samplesServed / seconds : 0.0;
+    }
+
+    /**
+     * Number of samples per epoch (rows, or windows in window mode)
+     */
+    public int numSamples() {
+        return order.length;
+    }
+
+    @Override
+    public int inputColumns() {
+        return (int) features.size(1);
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return (int) labels.size(1);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor < order.length;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(batchSize);
+    }
+
+    @Override
+    public void reset() {
+        cursor = 0;
+        samplesServed = 0;
+        epochStartNanos = System.nanoTime();
+        if (random != null) {
+            // Fisher-Yates over the index array; the tensors themselves never move
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+        }
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    private static INDArray contiguous(INDArray array) {
+        INDArray matrix = array.rank() == 1 ? array.reshape(array.length(), 1) : array;
+        return matrix.isView() || matrix.ordering() != 'c' ? matrix.dup('c') : matrix;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example;
+
+import com.example.mlbackend.util.FlatModelArtifact;
+import com.example.mlbackend.util.KllSketch;
+import com.example.mlbackend.util.ReconstructionError;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ThresholdCalibrator - Sets the autoencoder anomaly threshold from a percentile of the
+ * reconstruction error, without holding the errors (or the data) in memory.
+ *
+ * The CSV files are streamed in blocks. Blocks are scored in parallel, and each worker
+ * thread scores with its own copy of the network and feeds the per-sample MSE (the same
+ * error InferenceService compares against the threshold) into its own KLL sketch. At the end
+ * the sketches are merged and the requested percentile is written to threshold.bin as a
+ * serialized Double, which is the format ModelLoader.loadThreshold reads. Memory use is bounded
+ * by the number of blocks in flight and the sketch size, whatever the size of the input.
+ *
+ *   java com.example.ThresholdCalibrator [--data=data/normal_data.csv,more.csv] [--percentile=99]
+ *        [--model=model/autoencoder.model] [--output=model/threshold.bin] [--threads=N]
+ *        [--block-rows=8192] [--sketch-k=200]
+ */
+public class ThresholdCalibrator {
+
+    public static final double DEFAULT_PERCENTILE = 99.0;
+    public static final int DEFAULT_BLOCK_ROWS = 8192;
+
+    public static void main(String[] args) {
+        try {
+            System.out.println("Starting ThresholdCalibrator...");
+            TrainerArgs options = TrainerArgs.parse(args);
+            List<Path> dataFiles = new ArrayList<>();
+            for (String file : options.getString("data", "data/normal_data.csv").split(",")) {
+                dataFiles.add(Paths.get(file.trim()));
+            }
+            double percentile = options.getDouble("percentile", DEFAULT_PERCENTILE);
+            File modelFile = new File(options.getString("model", "model/autoencoder.model"));
+            Path output = Paths.get(options.getString("output", "model/threshold.bin"));
+
+            MultiLayerNetwork model = restore(modelFile);
+            KllSketch sketch = errorSketch(model, dataFiles,
+                    options.getInt("threads", Runtime.getRuntime().availableProcessors()),
+                    options.getInt("block-rows", DEFAULT_BLOCK_ROWS),
+                    options.getInt("sketch-k", KllSketch.DEFAULT_K));
+
+            System.out.printf("Reconstruction MSE over %d samples: min=%.6f p50=%.6f p90=%.6f p99=%.6f p99.9=%.6f max=%.6f%n",
+                    sketch.count(), sketch.min(), sketch.quantile(0.5), sketch.quantile(0.9),
+                    sketch.quantile(0.99), sketch.quantile(0.999), sketch.max());
+            double threshold = sketch.quantile(percentile / 100.0);
+            writeThreshold(threshold, output);
+            System.out.println("Threshold (p" + percentile + "): " + threshold + ", saved to " + output);
+        } catch (Exception e) {
+            System.err.println("Error in ThresholdCalibrator: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stream the files through the autoencoder and sketch the per-sample reconstruction MSE.
+     * Rows are normalized the same way AutoencoderTrainer normalizes its training data.
+     * @param threads number of scoring threads, each with its own copy of the network
+     * @param blockRows rows per block; at most 2 * threads blocks are held at once
+     * @param k sketch accuracy parameter (rank error about 1.7 / k)
+     */
+    public static KllSketch errorSketch(MultiLayerNetwork model, List<Path> dataFiles, int threads,
+                                        int blockRows, int k) throws IOException, InterruptedException {
+        int numThreads = Math.max(1, threads);
+        Queue<KllSketch> sketches = new ConcurrentLinkedQueue<>();
+        ThreadLocal<MultiLayerNetwork> localModel = ThreadLocal.withInitial(model::clone);
+        ThreadLocal<KllSketch> localSketch = ThreadLocal.withInitial(() -> {
+            KllSketch sketch = new KllSketch(k);
+            sketches.add(sketch);
+            return sketch;
+        });
+        Semaphore inFlight = new Semaphore(numThreads * 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        long start = System.nanoTime();
+
+        try {
+            for (Path dataFile : dataFiles) {
+                String[] header = ColumnarCsvLoader.readHeader(dataFile);
+                ColumnarCsvLoader.stream(dataFile, header, new String[0], blockRows, block -> {
+                    if (failure.get() != null) {
+                        return;
+                    }
+                    inFlight.acquireUninterruptibly();
+                    executor.execute(() -> {
+                        try {
+                            scoreBlock(localModel.get(), block, localSketch.get());
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        if (failure.get() != null) {
+            throw new IOException("Error scoring data: " + failure.get().getMessage(), failure.get());
+        }
+
+        KllSketch merged = new KllSketch(k);
+        for (KllSketch sketch : sketches) {
+            merged.merge(sketch);
+        }
+        System.out.printf("Scored %d samples on %d threads in %d ms%n",
+                merged.count(), numThreads, (System.nanoTime() - start) / 1_000_000);
+        return merged;
+    }
+
+    private static void scoreBlock(MultiLayerNetwork model, ColumnarTable block, KllSketch sketch) {
+        double[][] columns = block.numericColumns();
+        AutoencoderTrainer.normalize(columns);
+        int[] rows = block.completeRows();
+        if (rows.length == 0) {
+            return;
+        }
+        INDArray features = TensorDataSetIterator.matrix(columns, rows);
+        ReconstructionError errors = ReconstructionError.compute(features, model.output(features));
+        for (double error : errors.rowMse()) {
+            sketch.update(error);
+        }
+    }
+
+    /**
+     * Write the threshold as a serialized Double, replacing the old file atomically
+     */
+    public static void writeThreshold(double threshold, Path output) throws IOException {
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        Path tmp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp);
+             ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(threshold);
+        }
+        Files.move(tmp, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static MultiLayerNetwork restore(File modelFile) throws IOException {
+        File flatFile = FlatModelArtifact.siblingOf(modelFile);
+        if (flatFile.exists()) {
+            return FlatModelArtifact.read(flatFile);
+        }
+        return ModelSerializer.restoreMultiLayerNetwork(modelFile);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TrainerArgs - Minimal command line parsing shared by the trainers.
+ * Accepts flags of the form --name=value or bare --name (treated as "true").
+ */
+public class TrainerArgs {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private TrainerArgs() {
+    }
+
+    public static TrainerArgs parse(String[] args) {
+        TrainerArgs parsed = new TrainerArgs();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                System.out.println("Warning: Ignoring unrecognized argument '" + arg + "'");
+                continue;
+            }
+            String flag = arg.substring(2);
+            int eq = flag.indexOf('=');
+            if (eq < 0) {
+                parsed.values.put(flag, "true");
+            } else {
+                parsed.values.put(flag.substring(0, eq), flag.substring(eq + 1));
+            }
+        }
+        return parsed;
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    public String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Copy of these arguments with one flag set, e.g. to hand a trainer its own output directory
+     */
+    public TrainerArgs with(String name, String value) {
+        TrainerArgs copy = new TrainerArgs();
+        copy.values.putAll(values);
+        copy.values.put(name, value);
+        return copy;
+    }
+
+    /**
+     * Directory the trained artifacts are written to, from --model-dir (default model)
+     */
+    public String getModelDir() {
+        return values.getOrDefault("model-dir", "model");
+    }
+
+    /**
+     * Threads Weka uses to build trees in parallel, from --execution-slots (default all cores)
+     */
+    public int getExecutionSlots() {
+        return Math.max(1, getInt("execution-slots", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Number of data-parallel workers from --workers=N, where "all" means every available core
+     */
+    public int getWorkers() {
+        String value = values.getOrDefault("workers", "1");
+        if ("all".equalsIgnoreCase(value)) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Integer.parseInt(value));
+    }
+}
@@ -0,0 +1,403 @@
+package com.example;
+
+import com.example.mlbackend.util.ArtifactDigest;
+import org.nd4j.linalg.dataset.DataSet;
+import weka.core.Instances;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * TrainingOrchestrator - Trains all models in one run instead of starting each trainer by hand.
+ *
+ * The work is a small dependency graph: each data file is loaded once, then the independent
+ * fits (failure RF, health index RF, autoencoder + threshold, RUL, part risk + normalizer) run
+ * concurrently. A job only starts while its estimated cores and memory fit in the global budget
+ * (--cores, --memory-mb); a job that is larger than the whole budget still runs, but alone.
+ * The RF fits build their trees on as many Weka execution slots as they were granted cores.
+ *
+ * Artifacts are written to a fresh generation directory (model/generations/<timestamp>-<nn>/).
+ * The two-digit suffix keeps runs started in the same second apart.
+ * Only when every job succeeded is model/manifest.properties replaced, in one atomic rename,
+ * to point at the new generation, so ModelLoader always sees one consistent set of models.
+ *
+ *   java com.example.TrainingOrchestrator [--cores=N] [--memory-mb=N] [--workers=N]
+ *                                         [--keep-generations=N]
+ */
+public class TrainingOrchestrator {
+
+    public static final String MANIFEST_FILE = "manifest.properties";
+    public static final String GENERATIONS_DIR = "generations";
+
+    // Rough working set per byte of CSV input; Weka keeps Instances plus one bag per slot
+    private static final long WEKA_BYTES_PER_CSV_BYTE = 8;
+    private static final long DL4J_BYTES_PER_CSV_BYTE = 4;
+    private static final long MIN_JOB_MEMORY_MB = 256;
+
+    /**
+     * One node of the training graph
+     */
+    private interface Step {
+        Object run(Map<String, Object> results, int cores) throws Exception;
+    }
+
+    private static class Job {
+        final String name;
+        final List<String> dependencies;
+        final int cores;
+        final long memoryMb;
+        final Step step;
+
+        Job(String name, List<String> dependencies, int cores, long memoryMb, Step step) {
+            this.name = name;
+            this.dependencies = dependencies;
+            this.cores = cores;
+            this.memoryMb = memoryMb;
+            this.step = step;
+        }
+    }
+
+    private static class Outcome {
+        final Job job;
+        final long millis;
+        final Exception error;
+
+        Outcome(Job job, long millis, Exception error) {
+            this.job = job;
+            this.millis = millis;
+            this.error = error;
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.out.println("Starting TrainingOrchestrator...");
+            TrainerArgs options = TrainerArgs.parse(args);
+            boolean published = run(options);
+            if (!published) {
+                System.exit(1);
+            }
+        } catch (Exception e) {
+            System.err.println("Error in TrainingOrchestrator: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Train every model into a new generation and publish it
+     * @return true if all jobs succeeded and the manifest now points at the new generation
+     */
+    public static boolean run(TrainerArgs options) throws Exception {
+        int coreBudget = Math.max(1, options.getInt("cores", Runtime.getRuntime().availableProcessors()));
+        long memoryBudgetMb = options.getInt("memory-mb",
+                (int) (Runtime.getRuntime().maxMemory() * 0.8 / (1024 * 1024)));
+        int workers = Math.min(options.getWorkers(), coreBudget);
+
+        Path modelRoot = Paths.get(options.getModelDir());
+        Path generationDir = createGeneration(modelRoot.resolve(GENERATIONS_DIR));
+        String generation = generationDir.getFileName().toString();
+        TrainerArgs jobOptions = options.with("model-dir", generationDir.toString())
+                .with("workers", String.valueOf(workers));
+
+        System.out.println("Budget: " + coreBudget + " cores, " + memoryBudgetMb + " MB");
+        System.out.println("Writing generation " + generation + " to " + generationDir);
+
+        List<Job> jobs = buildGraph(jobOptions, coreBudget, workers);
+        long start = System.nanoTime();
+        List<String> failed = execute(jobs, coreBudget, memoryBudgetMb);
+        System.out.printf("All jobs finished in %.1f s%n", (System.nanoTime() - start) / 1e9);
+
+        if (!failed.isEmpty()) {
+            System.err.println("Not publishing generation " + generation + ", failed jobs: " + failed);
+            deleteRecursively(generationDir);
+            return false;
+        }
+
+        publish(modelRoot, generation, generationDir);
+        pruneGenerations(modelRoot, generation, options.getInt("keep-generations", 3));
+        return true;
+    }
+
+    private static List<Job> buildGraph(TrainerArgs options, int coreBudget, int workers) {
+        String failureData = "data/failure_prediction_data.csv";
+        String healthData = "data/health_index_data.csv";
+        String normalData = "data/normal_data.csv";
+        String rulData = "data/rul_data.csv";
+        String partRiskData = "data/part_risk_data.csv";
+
+        boolean partRiskEngineFeatures = PartRiskTrainer.engineFeatures(options);
+
+        List<Job> jobs = new ArrayList<>();
+
+        // Stage 1: load each data file once. The Weka loaders hand their Instances to the fits and
+        // the part risk loader its DataSet; the other DL4J loaders fill the column cache that the
+        // trainers then read back.
+        jobs.add(new Job("load-failure", List.of(), 1, memoryFor(failureData, WEKA_BYTES_PER_CSV_BYTE),
+                (results, cores) -> FailurePredictionTrainer.loadData(failureData)));
+        jobs.add(new Job("load-health-index", List.of(), 1, memoryFor(healthData, WEKA_BYTES_PER_CSV_BYTE),
+                (results, cores) -> HealthIndexTrainer.loadData(healthData)));
+        jobs.add(new Job("load-normal", List.of(), 1, memoryFor(normalData, DL4J_BYTES_PER_CSV_BYTE),
+                (results, cores) -> warmColumnCache(normalData)));
+        jobs.add(new Job("load-rul", List.of(), 1, memoryFor(rulData, DL4J_BYTES_PER_CSV_BYTE),
+                (results, cores) -> warmColumnCache(rulData)));
+        jobs.add(new Job("load-part-risk", List.of(), 1, memoryFor(partRiskData, DL4J_BYTES_PER_CSV_BYTE),
+                (results, cores) -> PartRiskTrainer.loadData(partRiskData, partRiskEngineFeatures)));
+
+        // Stage 2: independent fits
+        jobs.add(new Job("failure", List.of("load-failure"), coreBudget, memoryFor(failureData, WEKA_BYTES_PER_CSV_BYTE),
+                (results, cores) -> {
+                    FailurePredictionTrainer.train((Instances) results.remove("load-failure"),
+                            options.with("execution-slots", String.valueOf(cores)));
+                    return null;
+                }));
+        jobs.add(new Job("health-index", List.of("load-health-index"), coreBudget, memoryFor(healthData, WEKA_BYTES_PER_CSV_BYTE),
+                (results, cores) -> {
+                    HealthIndexTrainer.train((Instances) results.remove("load-health-index"),
+                            options.with("execution-slots", String.valueOf(cores)));
+                    return null;
+                }));
+        jobs.add(new Job("autoencoder", List.of("load-normal"), workers, memoryFor(normalData, DL4J_BYTES_PER_CSV_BYTE),
+                (results, cores) -> {
+                    AutoencoderTrainer.train(options);
+                    return null;
+                }));
+        jobs.add(new Job("rul", List.of("load-rul"), workers, memoryFor(rulData, DL4J_BYTES_PER_CSV_BYTE),
+                (results, cores) -> {
+                    RulTrainer.train(options);
+                    return null;
+                }));
+        jobs.add(new Job("part-risk", List.of("load-part-risk"), workers, memoryFor(partRiskData, DL4J_BYTES_PER_CSV_BYTE),
+                (results, cores) -> {
+                    PartRiskTrainer.train((DataSet) results.remove("load-part-risk"), partRiskEngineFeatures, options);
+                    return null;
+                }));
+        return jobs;
+    }
+
+    /**
+     * Run the jobs in dependency order, starting each one as soon as its dependencies are done
+     * and it fits in the remaining budget
+     * @return names of the jobs that failed or were skipped because a dependency failed
+     */
+    private static List<String> execute(List<Job> jobs, int coreBudget, long memoryBudgetMb) throws InterruptedException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        CompletionService<Outcome> completion = new ExecutorCompletionService<>(executor);
+        Map<String, Object> results = new ConcurrentHashMap<>();
+        Map<Job, Integer> grantedCores = new LinkedHashMap<>();
+        List<Job> pending = new ArrayList<>(jobs);
+        Set<String> done = new HashSet<>();
+        List<String> failed = new ArrayList<>();
+        int freeCores = coreBudget;
+        long freeMemoryMb = memoryBudgetMb;
+
+        try {
+            while (!pending.isEmpty() || !grantedCores.isEmpty()) {
+                for (Iterator<Job> it = pending.iterator(); it.hasNext(); ) {
+                    Job job = it.next();
+                    if (job.dependencies.stream().anyMatch(failed::contains)) {
+                        System.err.println("Skipping " + job.name + " (a dependency failed)");
+                        failed.add(job.name);
+                        it.remove();
+                        continue;
+                    }
+                    if (!done.containsAll(job.dependencies)) {
+                        continue;
+                    }
+                    // A fair share of the budget, and of what is free now rather than waiting for more
+                    int cores = Math.min(fairShare(job, pending, grantedCores.values(), coreBudget),
+                            Math.max(freeCores, 1));
+                    boolean idle = grantedCores.isEmpty();
+                    if (!idle && (freeCores <= 0 || job.memoryMb > freeMemoryMb)) {
+                        continue;
+                    }
+                    freeCores -= cores;
+                    freeMemoryMb -= job.memoryMb;
+                    grantedCores.put(job, cores);
+                    it.remove();
+                    System.out.println("Starting " + job.name + " (" + cores + " cores, ~" + job.memoryMb + " MB)");
+                    completion.submit(() -> {
+                        long jobStart = System.nanoTime();
+                        try {
+                            Object result = job.step.run(results, cores);
+                            if (result != null) {
+                                results.put(job.name, result);
+                            }
+                            return new Outcome(job, (System.nanoTime() - jobStart) / 1_000_000, null);
+                        } catch (Exception e) {
+                            return new Outcome(job, (System.nanoTime() - jobStart) / 1_000_000, e);
+                        }
+                    });
+                }
+
+                if (grantedCores.isEmpty()) {
+                    if (!pending.isEmpty()) {
+                        throw new IllegalStateException("Unresolvable job dependencies: "
+                                + pending.stream().map(job -> job.name).toList());
+                    }
+                    break;
+                }
+                Outcome outcome;
+                try {
+                    outcome = completion.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Job runner failed", e);
+                }
+                if (outcome.error == null) {
+                    done.add(outcome.job.name);
+                    System.out.println("Finished " + outcome.job.name + " in " + outcome.millis + " ms");
+                } else {
+                    failed.add(outcome.job.name);
+                    System.err.println("Job " + outcome.job.name + " failed after " + outcome.millis + " ms: "
+                            + outcome.error.getMessage());
+                    outcome.error.printStackTrace();
+                }
+                freeCores += grantedCores.remove(outcome.job);
+                freeMemoryMb += outcome.job.memoryMb;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return failed;
+    }
+
+    /**
+     * Max-min fair share of the core budget between the jobs that are still to finish (pending
+     * jobs with what they ask for, running ones with what they were granted): jobs asking for less
+     * than an equal split get what they ask for, the rest split what is left. The two RF fits both ask for the whole budget, so the one that becomes
+     * ready first no longer takes every core and leaves the other waiting for it to finish.
+     */
+    private static int fairShare(Job job, List<Job> pending, Collection<Integer> running, int coreBudget) {
+        List<Integer> requests = new ArrayList<>(pending.size() + running.size());
+        for (Job other : pending) {
+            requests.add(other.cores);
+        }
+        requests.addAll(running);
+        Collections.sort(requests);
+        int remaining = coreBudget;
+        for (int i = 0; i < requests.size(); i++) {
+            int level = remaining / (requests.size() - i);
+            if (requests.get(i) > level) {
+                return Math.max(1, Math.min(job.cores, level));
+            }
+            remaining -= requests.get(i);
+        }
+        return job.cores;
+    }
+
+    private static long memoryFor(String dataFile, long bytesPerCsvByte) {
+        try {
+            long bytes = Files.size(Paths.get(dataFile)) * bytesPerCsvByte;
+            return Math.max(MIN_JOB_MEMORY_MB, bytes / (1024 * 1024));
+        } catch (IOException e) {
+            return MIN_JOB_MEMORY_MB;
+        }
+    }
+
+    private static Object warmColumnCache(String dataFile) throws IOException {
+        Path path = Paths.get(dataFile);
+        return ColumnarCsvLoader.load(path, ColumnarCsvLoader.readHeader(path), new String[0]).rowCount();
+    }
+
+    /**
+     * New, empty generation directory named after the current time. Runs in the same second get
+     * the next free suffix; the names still sort by age for pruneGenerations.
+     */
+    private static Path createGeneration(Path generationsDir) throws IOException {
+        Files.createDirectories(generationsDir);
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        for (int suffix = 0; ; suffix++) {
+            try {
+                return Files.createDirectory(generationsDir.resolve(String.format("%s-%02d", stamp, suffix)));
+            } catch (FileAlreadyExistsException e) {
+                // Another run took this name
+            }
+        }
+    }
+
+    /**
+     * Record every artifact of the generation in the manifest and swap it in with one atomic rename
+     */
+    private static void publish(Path modelRoot, String generation, Path generationDir) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty("generation", generation);
+        manifest.setProperty("directory", modelRoot.relativize(generationDir).toString().replace('\\', '/'));
+        manifest.setProperty("created", LocalDateTime.now().toString());
+
+        List<Path> artifacts;
+        try (Stream<Path> files = Files.list(generationDir)) {
+            artifacts = files.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path artifact : artifacts) {
+            String name = artifact.getFileName().toString();
+            manifest.setProperty("file." + name + ".size", String.valueOf(Files.size(artifact)));
+            manifest.setProperty("file." + name + ".sha256", ArtifactDigest.sha256(artifact));
+        }
+
+        Path tmp = modelRoot.resolve(MANIFEST_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            manifest.store(out, "Model generation written by TrainingOrchestrator");
+        }
+        Files.move(tmp, modelRoot.resolve(MANIFEST_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Published generation " + generation + " with " + artifacts.size() + " artifacts: "
+                + Arrays.toString(artifacts.stream().map(p -> p.getFileName().toString()).toArray()));
+    }
+
+    /**
+     * Delete all but the newest generations; the published one is always kept
+     */
+    private static void pruneGenerations(Path modelRoot, String published, int keep) throws IOException {
+        Path generationsDir = modelRoot.resolve(GENERATIONS_DIR);
+        List<Path> generations;
+        try (Stream<Path> dirs = Files.list(generationsDir)) {
+            generations = dirs.filter(Files::isDirectory)
+                    .sorted(Comparator.comparing((Path p) -> p.getFileName().toString()).reversed())
+                    .toList();
+        }
+        for (int i = Math.max(keep, 1); i < generations.size(); i++) {
+            Path old = generations.get(i);
+            if (!old.getFileName().toString().equals(published)) {
+                System.out.println("Removing old generation " + old.getFileName());
+                deleteRecursively(old);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example;
+
+import com.example.mlbackend.model.PredictionResult;
+import com.example.mlbackend.model.SensorData;
+import com.example.mlbackend.service.PredictionJsonWriter;
+import com.example.mlbackend.service.SupabaseApiService;
+import com.example.mlbackend.service.VirtualThreadPipeline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * VirtualThreadLoadTest - Drives VirtualThreadPipeline.fanOut over a whole simulated fleet and
+ * reports throughput, concurrency and memory, with virtual threads and with a fixed platform
+ * pool for comparison.
+ *
+ * A local HTTP server stands in for Supabase: GET /sensor_data returns a device's window after
+ * --fetch-ms and POST /predictions answers after --store-ms. Fetches go through RestTemplate
+ * and SupabaseApiService.decode, and predictions are streamed with PredictionJsonWriter, so
+ * the client side is the backend's own REST path. Scoring burns --score-us of CPU per device
+ * on a core-sized pool in place of the models.
+ *
+ *   java com.example.VirtualThreadLoadTest [--devices=10000] [--modes=virtual,platform]
+ *        [--platform-threads=200] [--max-in-flight=1000] [--fetch-ms=50] [--store-ms=20]
+ *        [--score-us=200] [--scoring-threads=0] [--runs=2] [--warmup-devices=1000]
+ *
+ * The stub server shares the machine, so on a small box it bounds throughput long before the
+ * client does; compare the thread and heap columns across modes rather than absolute rates.
+ */
+public class VirtualThreadLoadTest {
+
+    private static volatile double sink;
+
+    public static void main(String[] args) throws Exception {
+        TrainerArgs options = TrainerArgs.parse(args);
+        int devices = options.getInt("devices", 10000);
+        String[] modes = options.getString("modes", "virtual,platform").split(",");
+        int platformThreads = options.getInt("platform-threads", 200);
+        int maxInFlight = options.getInt("max-in-flight", 1000);
+        int warmupDevices = options.getInt("warmup-devices", 1000);
+        int fetchMs = options.getInt("fetch-ms", 50);
+        int storeMs = options.getInt("store-ms", 20);
+        int scoreMicros = options.getInt("score-us", 200);
+        int scoringThreads = options.getInt("scoring-threads", 0);
+        int runs = options.getInt("runs", 2);
+        if (scoringThreads <= 0) {
+            scoringThreads = Runtime.getRuntime().availableProcessors();
+        }
+
+        // Keep idle keep-alive connections around instead of opening a socket per request
+        System.setProperty("http.maxConnections", Integer.toString(Math.min(maxInFlight, 10000)));
+
+        HttpServer server = startServer(fetchMs, storeMs);
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        RestTemplate restTemplate = new RestTemplate();
+        SupabaseApiService decoder = new SupabaseApiService(restTemplate, new ObjectMapper());
+        List<String> deviceIds = new ArrayList<>(devices);
+        for (int d = 0; d < devices; d++) {
+            deviceIds.add(String.format("load-%05d", d));
+        }
+
+        VirtualThreadPipeline.Fetch fetch = deviceId -> decoder.decode(restTemplate.exchange(
+                baseUrl + "/sensor_data?device_id=eq." + deviceId, HttpMethod.GET, null,
+                new ParameterizedTypeReference<List<Map<String, Object>>>() {}).getBody());
+        VirtualThreadPipeline.Score score = window -> burn(window, scoreMicros);
+        VirtualThreadPipeline.Store store = (window, result) -> restTemplate.execute(baseUrl + "/predictions",
+                HttpMethod.POST, request -> {
+                    request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    PredictionJsonWriter.writeObject(result, request.getBody());
+                }, ClientHttpResponse::getStatusCode);
+
+        System.out.printf("%d devices, fetch %d ms, store %d ms, score %d us on %d scoring threads, max in flight %d%n",
+                devices, fetchMs, storeMs, scoreMicros, scoringThreads, maxInFlight);
+        System.out.printf("%-9s %4s %10s %12s %8s %10s %12s %14s %12s%n", "mode", "run", "wall ms", "devices/sec",
+                "failed", "peak I/O", "peak thrds", "peak heap MB", "heap/dev KB");
+
+        ExecutorService scoringPool = VirtualThreadPipeline.newScoringPool(scoringThreads);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        try {
+            // Warm up the HTTP client, Jackson and the JIT so the first measured run is not penalized
+            try (ExecutorService io = Executors.newVirtualThreadPerTaskExecutor()) {
+                VirtualThreadPipeline.fanOut(deviceIds.subList(0, Math.min(warmupDevices, devices)), io, scoringPool,
+                        maxInFlight, new AtomicInteger(), fetch, score, store);
+            }
+            for (String mode : modes) {
+                for (int run = 1; run <= runs; run++) {
+                    System.gc();
+                    long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+                    threads.resetPeakThreadCount();
+                    AtomicLong peakHeap = new AtomicLong(baselineHeap);
+                    Thread sampler = startHeapSampler(memory, peakHeap);
+
+                    VirtualThreadPipeline.TickStats stats;
+                    try (ExecutorService io = "platform".equals(mode.trim())
+                            ? Executors.newFixedThreadPool(platformThreads)
+                            : Executors.newVirtualThreadPerTaskExecutor()) {
+                        stats = VirtualThreadPipeline.fanOut(deviceIds, io, scoringPool, maxInFlight,
+                                new AtomicInteger(), fetch, score, store);
+                    }
+                    sampler.interrupt();
+                    sampler.join();
+
+                    double wallMs = stats.nanos() / 1e6;
+                    long heapGrowth = Math.max(0, peakHeap.get() - baselineHeap);
+                    System.out.printf("%-9s %4d %10.0f %12.0f %8d %10d %12d %14.1f %12.2f%n", mode.trim(), run, wallMs,
+                            devices / (wallMs / 1000.0), stats.failed(), stats.peakInFlight(),
+                            threads.getPeakThreadCount(), peakHeap.get() / (1024.0 * 1024.0),
+                            heapGrowth / 1024.0 / devices);
+                }
+            }
+        } finally {
+            scoringPool.shutdownNow();
+            server.stop(0);
+        }
+        System.out.println("peak thrds counts platform threads only (virtual threads are not counted); "
+                + "heap/dev is peak heap growth over the run divided by devices");
+    }
+
+    /**
+     * Stand-in for the models: spin on the window's values for about micros of CPU time
+     */
+    private static PredictionResult burn(List<SensorData> window, int micros) {
+        SensorData latest = window.get(window.size() - 1);
+        long until = System.nanoTime() + micros * 1000L;
+        double acc = 0;
+        while (System.nanoTime() < until) {
+            for (SensorData reading : window) {
+                acc += Math.sqrt(Math.abs(reading.getFeature1() * reading.getFeature9() + acc));
+            }
+        }
+        sink = acc;
+        return PredictionResult.builder()
+                .deviceId(latest.getDeviceId())
+                .timestamp(latest.getTimestamp())
+                .failureProbability(0.1)
+                .healthIndex(0.9)
+                .remainingUsefulLife(500)
+                .partAtRisk("NONE")
+                .condition("Normal")
+                .build();
+    }
+
+    private static Thread startHeapSampler(MemoryMXBean memory, AtomicLong peakHeap) {
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "heap-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+        return sampler;
+    }
+
+    /**
+     * Supabase stand-in with simulated latency; its handlers run on virtual threads
+     */
+    private static HttpServer startServer(int fetchMs, int storeMs) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 16384);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/sensor_data", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            String deviceId = query.substring(query.indexOf("eq.") + 3);
+            respond(exchange, fetchMs, windowJson(deviceId));
+        });
+        server.createContext("/predictions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, storeMs, "");
+        });
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, int delayMs, String body) throws IOException {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(body.isEmpty() ? 201 : 200, body.isEmpty() ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Eleven readings, newest first, as PostgREST returns them
+     */
+    private static String windowJson(String deviceId) {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 10; i >= 0; i--) {
+            if (i < 10) {
+                json.append(',');
+            }
+            json.append("{\"device_id\":\"").append(deviceId)
+                    .append("\",\"timestamp\":\"").append(base.plusMinutes(i))
+                    .append("\",\"evaporator_coil_temperature\":-1.6,\"fridge_temperature\":4.0")
+                    .append(",\"freezer_temperature\":-17.0,\"air_temperature\":24.0,\"humidity\":40.0")
+                    .append(",\"compressor_vibration_x\":0.2,\"compressor_vibration_y\":0.2")
+                    .append(",\"compressor_vibration_z\":0.2,\"compressor_current\":1.2")
+                    .append(",\"input_voltage\":230.0,\"gas_leakage_level\":0.01}");
+        }
+        return json.append(']').toString();
+    }
+}
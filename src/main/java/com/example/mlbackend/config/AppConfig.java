@@ -2,8 +2,10 @@ package com.example.mlbackend.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
@@ -18,7 +20,8 @@ public class AppConfig {
     }
 
     @Bean
-    public RestTemplate restTemplate(ObjectMapper objectMapper) {
+    public RestTemplate restTemplate(ObjectMapper objectMapper,
+                                     @Value("${supabase.transport.compression:true}") boolean compression) {
         RestTemplate restTemplate = new RestTemplate();
         
         // Add the configured ObjectMapper to RestTemplate
@@ -26,6 +29,11 @@ public class AppConfig {
         converter.setObjectMapper(objectMapper);
         restTemplate.getMessageConverters().add(0, converter);
         
+        // Negotiate gzip/deflate responses; HttpURLConnection does not do it on its own
+        if (compression) {
+            restTemplate.setRequestFactory(new CompressedResponseRequestFactory(new SimpleClientHttpRequestFactory()));
+        }
+        
         return restTemplate;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,154 @@
+package com.example.mlbackend.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Asks for gzip or deflate responses and decompresses them before the message converters see
+ * the body. The JDK HttpURLConnection behind RestTemplate neither sends Accept-Encoding nor
+ * decodes Content-Encoding, so without this every PostgREST response comes back uncompressed.
+ *
+ * The decompressed response drops Content-Encoding and Content-Length, which describe the
+ * compressed bytes. deflate is read as zlib-wrapped data, which is what servers send for it.
+ *
+ * This wraps the request factory rather than registering a ClientHttpRequestInterceptor,
+ * because any interceptor makes RestTemplate buffer the whole request body in memory. The
+ * wrapped request is a StreamingHttpOutputMessage, and setBody is handed to the wrapped
+ * request, so the prediction writes (ResultStorageService) still stream when it supports that.
+ */
+public class CompressedResponseRequestFactory implements ClientHttpRequestFactory {
+
+    private final ClientHttpRequestFactory requestFactory;
+
+    public CompressedResponseRequestFactory(ClientHttpRequestFactory requestFactory) {
+        this.requestFactory = requestFactory;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        ClientHttpRequest request = requestFactory.createRequest(uri, httpMethod);
+        if (!request.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING)) {
+            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        }
+        return new CompressedResponseRequest(request);
+    }
+
+    private static final class CompressedResponseRequest implements ClientHttpRequest, StreamingHttpOutputMessage {
+        private final ClientHttpRequest request;
+
+        CompressedResponseRequest(ClientHttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public void setBody(Body body) {
+            if (request instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(body);
+            } else {
+                try {
+                    body.writeTo(request.getBody());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            ClientHttpResponse response = request.execute();
+            String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+            if ("gzip".equalsIgnoreCase(encoding) || "deflate".equalsIgnoreCase(encoding)) {
+                return new DecompressedResponse(response, "gzip".equalsIgnoreCase(encoding));
+            }
+            return response;
+        }
+    }
+
+    private static final class DecompressedResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final boolean gzip;
+        private HttpHeaders headers;
+        private InputStream body;
+
+        DecompressedResponse(ClientHttpResponse response, boolean gzip) {
+            this.response = response;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                headers = new HttpHeaders();
+                headers.putAll(response.getHeaders());
+                headers.remove(HttpHeaders.CONTENT_ENCODING);
+                headers.remove(HttpHeaders.CONTENT_LENGTH);
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                // An empty body (204, errors from some proxies) has no gzip header to read
+                PushbackInputStream raw = new PushbackInputStream(response.getBody(), 1);
+                int first = raw.read();
+                if (first < 0) {
+                    body = InputStream.nullInputStream();
+                } else {
+                    raw.unread(first);
+                    body = gzip ? new GZIPInputStream(raw, 8192) : new InflaterInputStream(raw);
+                }
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+}
@@ -4,9 +4,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.postgresql.Driver;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+
 @Slf4j
 @Configuration
 public class SupabaseClientConfig {
@@ -17,15 +21,25 @@ public class SupabaseClientConfig {
     @Value("${supabase.key}")
     private String supabaseKey;
 
+    @Value("${database.pool.maximum-size:10}")
+    private int maximumPoolSize;
+
+    @Value("${database.pool.minimum-idle:1}")
+    private int minimumIdle;
+
+    @Value("${database.pool.connection-timeout-ms:10000}")
+    private long connectionTimeoutMs;
+
+    /**
+     * Pooled connections to the Supabase Postgres database.
+     * The pool starts lazily (initializationFailTimeout -1), so the REST-only setup still
+     * starts when the database port is not reachable.
+     */
     @Bean
-    public DriverManagerDataSource supabaseDataSource() {
-        log.info("Configuring Supabase REST API connection");
+    public HikariDataSource supabaseDataSource() {
+        log.info("Configuring Supabase database connection pool");
         
         try {
-            // Try direct REST API connection
-            DriverManagerDataSource dataSource = new DriverManagerDataSource();
-            dataSource.setDriverClassName(Driver.class.getName());
-            
             // Extract database host from SUPABASE_URL
             String dbHost = extractDbHost(supabaseUrl);
             
@@ -34,24 +48,28 @@ public class SupabaseClientConfig {
             
             log.debug("JDBC URL: {}", jdbcUrl);
             
-            dataSource.setUrl(jdbcUrl);
-            dataSource.setUsername("postgres");
-            dataSource.setPassword(supabaseKey);
-            
             // Test database connection
-            try {
-                dataSource.getConnection().close();
+            try (Connection connection = DriverManager.getConnection(jdbcUrl, "postgres", supabaseKey)) {
                 log.info("Successfully connected to database");
             } catch (Exception e) {
                 log.warn("Could not connect to database with initial configuration: {}", e.getMessage());
                 
                 // Fallback to another configuration with alternate port
                 jdbcUrl = "jdbc:postgresql://" + dbHost + ":6543/postgres";
-                dataSource.setUrl(jdbcUrl);
                 log.debug("Trying fallback JDBC URL: {}", jdbcUrl);
             }
             
-            return dataSource;
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("supabase");
+            config.setDriverClassName(Driver.class.getName());
+            config.setJdbcUrl(jdbcUrl);
+            config.setUsername("postgres");
+            config.setPassword(supabaseKey);
+            config.setMaximumPoolSize(maximumPoolSize);
+            config.setMinimumIdle(minimumIdle);
+            config.setConnectionTimeout(connectionTimeoutMs);
+            config.setInitializationFailTimeout(-1);
+            return new HikariDataSource(config);
         } catch (Exception e) {
             log.error("Error setting up database connection: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to configure database connection", e);
@@ -1,6 +1,6 @@
 package com.example.mlbackend.controller;
 
-import com.example.mlbackend.service.SchedulerService;
+import com.example.mlbackend.service.DataFetcherService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -18,7 +18,8 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class PredictionController {
 
-    private final SchedulerService schedulerService;
+    // Not SchedulerService: it only exists in poll mode, and the manual trigger works in every mode
+    private final DataFetcherService dataFetcherService;
 
     /**
      * Manually triggers the prediction pipeline.
@@ -28,7 +29,7 @@ public class PredictionController {
      */
     @PostMapping("/run-pipeline")
     public String runPipeline() {
-        schedulerService.scheduledDataPipeline();
+        dataFetcherService.runPipeline();
         return "Pipeline executed successfully";
     }
 } 
\ No newline at end of file
@@ -0,0 +1,278 @@
+package com.example.mlbackend.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar batch of sensor readings: the windows of many devices without one object per row.
+ *
+ *   columns      double[FEATURES][rows], one column per sensor, in SensorData.getFeatureArray() order
+ *   timestamps   long[rows], epoch milliseconds of the timestamp-without-time-zone values, read as UTC
+ *   deviceCodes  int[rows], index into the device dictionary (each device ID is stored once)
+ *
+ * Rows are grouped into windows, one per device, ordered by timestamp within a window. Window
+ * w owns rows start(w) (inclusive) to end(w) (exclusive). A row costs 100 bytes of primitive
+ * arrays, against roughly 230 for a SensorData with its LocalDateTime and device ID String.
+ * Sensor values are kept as double, like SensorData, so the Weka forests and the derived
+ * features see the same values whether a window arrives as a List or in a batch.
+ *
+ * Built by the JDBC reader (SensorHistoryReader) and the REST decoder
+ * (SupabaseApiService.decodeBatch), turned into network input by DataPreprocessor.createSequences
+ * and scored by InferenceService.runInference. of() and toSensorData() adapt to the List-based API.
+ */
+public final class SensorBatch {
+
+    public static final int FEATURES = 11;
+
+    private final String[] dictionary;
+    private final int[] deviceCodes;
+    private final long[] timestamps;
+    private final double[][] columns;
+    private final int[] offsets;
+
+    private SensorBatch(String[] dictionary, int[] deviceCodes, long[] timestamps, double[][] columns, int[] offsets) {
+        this.dictionary = dictionary;
+        this.deviceCodes = deviceCodes;
+        this.timestamps = timestamps;
+        this.columns = columns;
+        this.offsets = offsets;
+    }
+
+    public int windowCount() {
+        return offsets.length - 1;
+    }
+
+    public int rowCount() {
+        return timestamps.length;
+    }
+
+    public int start(int window) {
+        return offsets[window];
+    }
+
+    public int end(int window) {
+        return offsets[window + 1];
+    }
+
+    public int length(int window) {
+        return offsets[window + 1] - offsets[window];
+    }
+
+    /**
+     * Row of the window's latest reading
+     */
+    public int latest(int window) {
+        return offsets[window + 1] - 1;
+    }
+
+    public String windowDeviceId(int window) {
+        return dictionary[deviceCodes[offsets[window]]];
+    }
+
+    public String deviceId(int row) {
+        return dictionary[deviceCodes[row]];
+    }
+
+    public int deviceCode(int row) {
+        return deviceCodes[row];
+    }
+
+    public int dictionarySize() {
+        return dictionary.length;
+    }
+
+    public long timestamp(int row) {
+        return timestamps[row];
+    }
+
+    public LocalDateTime localTimestamp(int row) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(timestamps[row], 1000L),
+                (int) Math.floorMod(timestamps[row], 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    public double feature(int row, int feature) {
+        return columns[feature][row];
+    }
+
+    /**
+     * One sensor's values of every row (not a copy)
+     */
+    public double[] column(int feature) {
+        return columns[feature];
+    }
+
+    /**
+     * Copy a row's features into into, for APIs that take double[]
+     * @return into
+     */
+    public double[] features(int row, double[] into) {
+        for (int f = 0; f < FEATURES; f++) {
+            into[f] = columns[f][row];
+        }
+        return into;
+    }
+
+    /**
+     * Bytes held by the batch's arrays, including the dictionary strings
+     */
+    public long heapBytes() {
+        long rows = timestamps.length;
+        long bytes = 16 + rows * 4 + 16 + rows * 8 + 16 + (long) offsets.length * 4 + 16 + FEATURES * (16 + rows * 8);
+        for (String deviceId : dictionary) {
+            bytes += 8 + 24 + 16 + deviceId.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * A batch of the selected windows, in the given order
+     */
+    public SensorBatch select(int[] windows) {
+        Builder builder = new Builder(windows.length == 0 ? 0 : windows.length * length(windows[0]));
+        for (int window : windows) {
+            builder.startWindow();
+            for (int row = start(window); row < end(window); row++) {
+                int copy = builder.addRow(deviceId(row), timestamps[row]);
+                for (int f = 0; f < FEATURES; f++) {
+                    builder.columns[f][copy] = columns[f][row];
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * One window's readings as SensorData objects, oldest first, for the List-based API
+     */
+    public List<SensorData> toSensorData(int window) {
+        List<SensorData> rows = new ArrayList<>(length(window));
+        for (int row = start(window); row < end(window); row++) {
+            rows.add(SensorData.builder()
+                    .deviceId(deviceId(row))
+                    .timestamp(localTimestamp(row))
+                    .feature1(columns[0][row])
+                    .feature2(columns[1][row])
+                    .feature3(columns[2][row])
+                    .feature4(columns[3][row])
+                    .feature5(columns[4][row])
+                    .feature6(columns[5][row])
+                    .feature7(columns[6][row])
+                    .feature8(columns[7][row])
+                    .feature9(columns[8][row])
+                    .feature10(columns[9][row])
+                    .feature11(columns[10][row])
+                    .build());
+        }
+        return rows;
+    }
+
+    /**
+     * Columnar copy of List-based windows, one window per list
+     */
+    public static SensorBatch of(List<List<SensorData>> windows) {
+        int rows = 0;
+        for (List<SensorData> window : windows) {
+            rows += window.size();
+        }
+        Builder builder = new Builder(rows);
+        for (List<SensorData> window : windows) {
+            builder.startWindow();
+            for (SensorData reading : window) {
+                int row = builder.addRow(reading.getDeviceId(),
+                        reading.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli());
+                double[] features = reading.getFeatureArray();
+                for (int f = 0; f < FEATURES; f++) {
+                    builder.setFeature(row, f, features[f]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Appends rows window by window. A window starts with startWindow(), or implicitly when a
+     * row's device differs from the previous row's.
+     */
+    public static final class Builder {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] deviceCodes;
+        private long[] timestamps;
+        private double[][] columns = new double[FEATURES][];
+        private int[] offsets = new int[17];
+        private int windows;
+        private int rows;
+        private boolean windowRequested;
+
+        public Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            deviceCodes = new int[capacity];
+            timestamps = new long[capacity];
+            for (int f = 0; f < FEATURES; f++) {
+                columns[f] = new double[capacity];
+            }
+        }
+
+        /**
+         * Start a new window with the next row, even if it is for the same device
+         */
+        public void startWindow() {
+            windowRequested = true;
+        }
+
+        /**
+         * Start a row; its features are then written with setFeature
+         * @return index of the new row
+         */
+        public int addRow(String deviceId, long timestampMillis) {
+            Integer code = codes.get(deviceId);
+            if (code == null) {
+                code = dictionary.size();
+                codes.put(deviceId, code);
+                dictionary.add(deviceId);
+            }
+            if (windowRequested || windows == 0 || deviceCodes[rows - 1] != code) {
+                if (windows + 1 == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[windows++] = rows;
+                windowRequested = false;
+            }
+            if (rows == timestamps.length) {
+                int capacity = rows * 2;
+                deviceCodes = Arrays.copyOf(deviceCodes, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                for (int f = 0; f < FEATURES; f++) {
+                    columns[f] = Arrays.copyOf(columns[f], capacity);
+                }
+            }
+            deviceCodes[rows] = code;
+            timestamps[rows] = timestampMillis;
+            return rows++;
+        }
+
+        public void setFeature(int row, int feature, double value) {
+            columns[feature][row] = value;
+        }
+
+        public int rowCount() {
+            return rows;
+        }
+
+        public SensorBatch build() {
+            int[] windowOffsets = Arrays.copyOf(offsets, windows + 1);
+            windowOffsets[windows] = rows;
+            double[][] trimmed = new double[FEATURES][];
+            for (int f = 0; f < FEATURES; f++) {
+                trimmed[f] = Arrays.copyOf(columns[f], rows);
+            }
+            return new SensorBatch(dictionary.toArray(new String[0]), Arrays.copyOf(deviceCodes, rows),
+                    Arrays.copyOf(timestamps, rows), trimmed, windowOffsets);
+        }
+    }
+}
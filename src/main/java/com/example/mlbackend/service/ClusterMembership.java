@@ -0,0 +1,209 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.util.ConsistentHashRing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster mode (cluster.enabled=true): backend instances split the devices between them.
+ *
+ * Membership lives in the backend_nodes lease table (src/main/resources/db/backend_nodes.sql),
+ * so no coordination service is needed besides Postgres. Every heartbeat-ms an instance
+ * renews its lease and reads the members whose lease is younger than lease-ms. The sorted
+ * member list is hashed into a ConsistentHashRing, and an instance scores only the devices
+ * the ring assigns to it: DeviceDirectory filters the fleet modes, DataFetcherService.scoreWindow
+ * and SensorDataListener skip windows of devices owned elsewhere.
+ *
+ * Rebalancing follows from the table. A starting node appears at its first heartbeat; a
+ * stopping node deletes its row; a crashed node drops out once its lease expires. Each change
+ * moves only the devices next to that node on the ring. Views converge within one heartbeat,
+ * so around a change a device may be scored by two nodes (or none) for one tick.
+ *
+ * A node whose own heartbeat has failed for longer than lease-ms owns nothing: the others
+ * already see its lease as expired and have taken its devices over.
+ *
+ * cluster.jdbc-url points the lease table at a different database, e.g. one local Postgres
+ * shared by several local instances.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClusterMembership {
+
+    private static final String HEARTBEAT_SQL = "INSERT INTO backend_nodes (node_id) VALUES (?) "
+            + "ON CONFLICT (node_id) DO UPDATE SET heartbeat_at = now()";
+    private static final String MEMBERS_SQL = "SELECT node_id FROM backend_nodes "
+            + "WHERE heartbeat_at > now() - (CAST(? AS double precision) * interval '1 millisecond')";
+    private static final String EXPIRE_SQL = "DELETE FROM backend_nodes "
+            + "WHERE heartbeat_at < now() - (CAST(? AS double precision) * interval '1 millisecond')";
+    private static final String LEAVE_SQL = "DELETE FROM backend_nodes WHERE node_id = ?";
+
+    // Rows of nodes gone for this many leases are deleted, keeping the table small
+    private static final int EXPIRED_LEASES_KEPT = 10;
+
+    private final DataSource supabaseDataSource;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cluster.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${cluster.heartbeat-ms:5000}")
+    private long heartbeatMs;
+
+    @Value("${cluster.lease-ms:15000}")
+    private long leaseMs;
+
+    @Value("${cluster.virtual-nodes:256}")
+    private int virtualNodes;
+
+    @Value("${cluster.jdbc-url:}")
+    private String jdbcUrl;
+
+    @Value("${cluster.username:postgres}")
+    private String username;
+
+    @Value("${cluster.password:}")
+    private String password;
+
+    private JdbcTemplate jdbcTemplate;
+    private ScheduledExecutorService heartbeats;
+    private String nodeId;
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(List.of(), 1);
+    private volatile long lastHeartbeatNanos;
+    private Counter rebalances;
+    private Counter heartbeatFailures;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        DataSource dataSource = jdbcUrl.isBlank() ? supabaseDataSource : new DriverManagerDataSource(jdbcUrl, username, password);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        nodeId = configuredNodeId.isBlank() ? defaultNodeId() : configuredNodeId;
+
+        Gauge.builder("cluster.members", () -> ring.members().size())
+                .description("Live backend instances sharing the devices")
+                .register(meterRegistry);
+        rebalances = Counter.builder("cluster.rebalances")
+                .description("Membership changes that moved devices between instances")
+                .register(meterRegistry);
+        heartbeatFailures = Counter.builder("cluster.heartbeat.failures")
+                .description("Failed lease renewals")
+                .register(meterRegistry);
+
+        log.info("Cluster mode enabled: node {} (heartbeat {} ms, lease {} ms, {} virtual nodes)",
+                nodeId, heartbeatMs, leaseMs, virtualNodes);
+        heartbeat();
+        // Own thread: a long pipeline run on the shared scheduler must not let the lease expire
+        heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void leave() {
+        if (!enabled) {
+            return;
+        }
+        heartbeats.shutdownNow();
+        try {
+            // The others pick up this node's devices at their next heartbeat instead of after the lease
+            jdbcTemplate.update(LEAVE_SQL, nodeId);
+            log.info("Node {} left the cluster", nodeId);
+        } catch (Exception e) {
+            log.warn("Could not remove node {} from backend_nodes: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Renew this node's lease and refresh the ring from the live members
+     */
+    private void heartbeat() {
+        try {
+            jdbcTemplate.update(HEARTBEAT_SQL, nodeId);
+            List<String> members = jdbcTemplate.queryForList(MEMBERS_SQL, String.class, leaseMs);
+            lastHeartbeatNanos = System.nanoTime();
+            jdbcTemplate.update(EXPIRE_SQL, leaseMs * EXPIRED_LEASES_KEPT);
+
+            ConsistentHashRing next = new ConsistentHashRing(members, virtualNodes);
+            if (!next.members().equals(ring.members())) {
+                log.info("Cluster membership changed: {} -> {}", ring.members(), next.members());
+                rebalances.increment();
+            }
+            ring = next;
+        } catch (Exception e) {
+            heartbeatFailures.increment();
+            log.warn("Cluster heartbeat of node {} failed: {}", nodeId, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if this node should score the device; always true outside cluster mode
+     */
+    public boolean owns(String deviceId) {
+        if (!enabled) {
+            return true;
+        }
+        if (!hasLease()) {
+            return false;
+        }
+        return nodeId.equals(ring.owner(deviceId));
+    }
+
+    /**
+     * The devices of deviceIds this node should score
+     */
+    public List<String> owned(List<String> deviceIds) {
+        if (!enabled) {
+            return deviceIds;
+        }
+        if (!hasLease()) {
+            return List.of();
+        }
+        return ring.ownedBy(nodeId, deviceIds);
+    }
+
+    private boolean hasLease() {
+        long last = lastHeartbeatNanos;
+        return last != 0 && System.nanoTime() - last < leaseMs * 1_000_000L;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        // pid and a random suffix keep several instances on one host apart
+        return host + "-" + ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.model.PredictionResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bulk writer for the predictions table using PostgreSQL COPY ... FROM STDIN (CSV).
+ *
+ * Rows are encoded straight into a byte buffer that is handed to the driver's CopyIn and
+ * reused in 64 KB chunks, so a batch is one COPY statement instead of one REST POST per
+ * prediction, with no map or JSON per row.
+ * Values are written in the same form as the REST path (timestamp as yyyy-MM-dd HH:mm:ss,
+ * rul as ResultStorageService.rulValue), so both paths store identical rows.
+ *
+ * After a failed COPY the writer reports itself unavailable for retry-after-ms, and
+ * ResultStorageService uses REST meanwhile.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CopyPredictionWriter {
+
+    private static final String COPY_SQL = "COPY predictions (timestamp, device_id, is_anomaly, failure_prob, "
+            + "health_index, rul) FROM STDIN WITH (FORMAT csv)";
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${storage.copy.enabled:false}")
+    private boolean enabled;
+
+    @Value("${storage.copy.retry-after-ms:60000}")
+    private long retryAfterMs;
+
+    private volatile long unavailableUntil;
+    private Counter copiedRows;
+    private Counter failures;
+
+    @PostConstruct
+    public void init() {
+        copiedRows = Counter.builder("storage.copy.rows")
+                .description("Predictions written with COPY")
+                .register(meterRegistry);
+        failures = Counter.builder("storage.copy.failures")
+                .description("COPY batches that failed and fell back to REST")
+                .register(meterRegistry);
+        log.info("COPY prediction writer {}", enabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * @return true if COPY is enabled and has not failed within the last retry-after-ms
+     */
+    public boolean isAvailable() {
+        return enabled && System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    /**
+     * COPY the batch in one statement; on failure nothing is written and COPY is paused
+     */
+    public void write(List<PredictionResult> results) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            copy(connection, results);
+            copiedRows.increment(results.size());
+        } catch (SQLException | RuntimeException e) {
+            failures.increment();
+            unavailableUntil = System.currentTimeMillis() + retryAfterMs;
+            throw e;
+        }
+    }
+
+    /**
+     * COPY the results into predictions on the given connection
+     * @return number of rows written
+     */
+    public static long copy(Connection connection, List<PredictionResult> results) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+        try {
+            CsvBuffer buffer = new CsvBuffer(CHUNK_BYTES);
+            for (PredictionResult result : results) {
+                buffer.timestamp(result.getTimestamp()).comma()
+                        .text(result.getDeviceId()).comma()
+                        .text(result.isAnomaly() ? "true" : "false").comma()
+                        .number(result.getFailureProbability()).comma()
+                        .number(result.getHealthIndex()).comma()
+                        .text(ResultStorageService.rulValue(result).toString()).newline();
+                if (buffer.size() >= CHUNK_BYTES - 1024) {
+                    copyIn.writeToCopy(buffer.bytes(), 0, buffer.size());
+                    buffer.reset();
+                }
+            }
+            if (buffer.size() > 0) {
+                copyIn.writeToCopy(buffer.bytes(), 0, buffer.size());
+            }
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Growable byte buffer that writes CSV fields without intermediate Strings where possible
+     */
+    private static final class CsvBuffer {
+        private byte[] bytes;
+        private int size;
+
+        CsvBuffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        CsvBuffer comma() {
+            put((byte) ',');
+            return this;
+        }
+
+        CsvBuffer newline() {
+            put((byte) '\n');
+            return this;
+        }
+
+        /**
+         * yyyy-MM-dd HH:mm:ss, the format the REST path sends
+         */
+        CsvBuffer timestamp(LocalDateTime t) {
+            digits(t.getYear(), 4);
+            put((byte) '-');
+            digits(t.getMonthValue(), 2);
+            put((byte) '-');
+            digits(t.getDayOfMonth(), 2);
+            put((byte) ' ');
+            digits(t.getHour(), 2);
+            put((byte) ':');
+            digits(t.getMinute(), 2);
+            put((byte) ':');
+            digits(t.getSecond(), 2);
+            return this;
+        }
+
+        CsvBuffer number(double value) {
+            return ascii(Double.toString(value));
+        }
+
+        /**
+         * Quoted only when it contains a separator, quote or line break; null becomes an empty (NULL) field
+         */
+        CsvBuffer text(String value) {
+            if (value == null) {
+                return this;
+            }
+            boolean quote = value.isEmpty();
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                return utf8(value);
+            }
+            put((byte) '"');
+            utf8(value.replace("\"", "\"\""));
+            put((byte) '"');
+            return this;
+        }
+
+        private CsvBuffer ascii(String value) {
+            ensure(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+            return this;
+        }
+
+        private CsvBuffer utf8(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            ensure(encoded.length);
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            size += encoded.length;
+            return this;
+        }
+
+        private void digits(int value, int width) {
+            ensure(width);
+            for (int i = width - 1; i >= 0; i--) {
+                bytes[size + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += width;
+        }
+
+        private void put(byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -23,6 +23,13 @@ public class DataFetcherService {
     private final SupabaseApiService supabaseApiService;
     private final InferenceService inferenceService;
     private final ResultStorageService resultStorageService;
+    private final ScoredWindowCache scoredWindowCache;
+    private final StagedPipeline stagedPipeline;
+    private final VirtualThreadPipeline virtualThreadPipeline;
+    private final ClusterMembership clusterMembership;
+
+    // Readings per window (matches the RUL model's sequence length)
+    public static final int WINDOW_SIZE = 11;
 
     /**
      * Fetch the latest sensor data from Supabase
@@ -49,19 +56,58 @@ public class DataFetcherService {
         try {
             log.info("Starting data pipeline execution");
             
+            // Fleet mode: every device through the staged, backpressured pipeline
+            if (stagedPipeline.isEnabled()) {
+                stagedPipeline.runTick();
+                return;
+            }
+            
+            // Fleet mode: one virtual thread per device for fetch and store, scoring on a core-sized pool
+            if (virtualThreadPipeline.isEnabled()) {
+                virtualThreadPipeline.runTick();
+                return;
+            }
+            
             // 1. Fetch the latest sensor data (11 records for sequence - matches RUL model expectations)
-            List<SensorData> sensorDataList = fetchLatestSensorData(11);
+            List<SensorData> sensorDataList = fetchLatestSensorData(WINDOW_SIZE);
             
             if (sensorDataList.isEmpty()) {
                 log.warn("No sensor data available, skipping inference");
                 return;
             }
             
+            scoreWindow(sensorDataList);
+        } catch (Exception e) {
+            log.error("Error executing pipeline: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Score a window of one device's readings (ascending by timestamp) and store the prediction
+     * @param sensorDataList the window, latest reading last
+     */
+    public void scoreWindow(List<SensorData> sensorDataList) {
+        try {
+            String deviceId = sensorDataList.get(sensorDataList.size() - 1).getDeviceId();
+            
+            // Cluster mode: another instance owns this device and stores its predictions
+            if (!clusterMembership.owns(deviceId)) {
+                log.debug("Device {} is owned by another node, skipping", deviceId);
+                return;
+            }
+            
+            // Nothing new from this device since the last stored prediction: skip scoring and the duplicate write
+            if (scoredWindowCache.isUnchanged(sensorDataList)) {
+                log.info("Window of device {} unchanged since last run, skipping inference", deviceId);
+                return;
+            }
+            
             // 2. Run inference on the data
             var predictionResult = inferenceService.runInference(sensorDataList);
             
             // 3. Store the results
             resultStorageService.storePrediction(predictionResult);
+            scoredWindowCache.markScored(sensorDataList);
             
             log.info("Pipeline execution completed successfully");
         } catch (Exception e) {
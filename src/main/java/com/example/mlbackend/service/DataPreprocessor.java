@@ -1,5 +1,6 @@
 package com.example.mlbackend.service;
 
+import com.example.mlbackend.model.SensorBatch;
 import com.example.mlbackend.model.SensorData;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -36,24 +37,53 @@ public class DataPreprocessor {
      * @return INDArray with shape [1, sequence_length, features]
      */
     public INDArray createSequence(List<SensorData> sensorDataList) {
-        int sequenceLength = sensorDataList.size();
-        int featureCount = 11;
-        
-        // Create a 3D array: [batch_size=1, sequence_length, features=11]
-        INDArray sequence = Nd4j.zeros(1, sequenceLength, featureCount);
+        // Same layout as a batch of one; filled on the heap and copied once instead of a putScalar per value
+        return createSequences(List.of(sensorDataList));
+    }
+
+    /**
+     * Creates the normalized sequences of several windows in one array, for batched inference.
+     * 
+     * @param windows Windows of the same length, each in chronological order
+     * @return INDArray with shape [windows, sequence_length, features], row i laid out as createSequence(windows.get(i))
+     */
+    public INDArray createSequences(List<List<SensorData>> windows) {
+        return createSequences(SensorBatch.of(windows));
+    }
+
+    /**
+     * Creates the normalized sequences of a columnar batch, one per window, straight from its columns.
+     * 
+     * @param batch Windows of the same length, each in chronological order
+     * @return INDArray with shape [windows, sequence_length, features]
+     */
+    public INDArray createSequences(SensorBatch batch) {
+        int batchSize = batch.windowCount();
+        int sequenceLength = batch.length(0);
+        int featureCount = SensorBatch.FEATURES;
+        double[] mean = modelLoader.getMean();
+        double[] std = modelLoader.getStd();
         
-        for (int i = 0; i < sequenceLength; i++) {
-            SensorData data = sensorDataList.get(i);
-            double[] features = data.getFeatureArray();
-            double[] normalizedFeatures = normalizeFeatures(features);
-            
-            // Add normalized features to the sequence
-            for (int j = 0; j < featureCount; j++) {
-                sequence.putScalar(new int[] {0, i, j}, normalizedFeatures[j]);
+        // Fill one flat c-order buffer instead of a putScalar call per value
+        float[] data = new float[batchSize * sequenceLength * featureCount];
+        for (int b = 0; b < batchSize; b++) {
+            if (batch.length(b) != sequenceLength) {
+                throw new IllegalArgumentException("Window " + b + " has " + batch.length(b)
+                        + " readings, expected " + sequenceLength);
+            }
+        }
+        // Column by column, so each sensor's mean and std are loaded once
+        for (int j = 0; j < featureCount; j++) {
+            double[] column = batch.column(j);
+            for (int b = 0; b < batchSize; b++) {
+                int start = batch.start(b);
+                for (int i = 0; i < sequenceLength; i++) {
+                    data[(b * sequenceLength + i) * featureCount + j] = (float) ((column[start + i] - mean[j]) / std[j]);
+                }
             }
         }
         
-        return sequence;
+        return Nd4j.create(data, new long[] {batchSize, sequenceLength, featureCount}, 'c');
     }
 
     /**
@@ -64,6 +94,17 @@ public class DataPreprocessor {
      * @return Weka Instance ready for model prediction
      */
     public Instance createInstance(SensorData sensorData, boolean isFailureModel) {
+        return createInstance(sensorData.getFeatureArray(), isFailureModel);
+    }
+
+    /**
+     * Creates a Weka Instance for the Random Forest models from raw feature values.
+     * 
+     * @param features Raw feature values in SensorData.getFeatureArray() order
+     * @param isFailureModel Whether to use the failure model header (true) or health index header (false)
+     * @return Weka Instance ready for model prediction
+     */
+    public Instance createInstance(double[] features, boolean isFailureModel) {
         // Get the appropriate header
         Instances header = isFailureModel ? 
                 modelLoader.getFailureHeader() : modelLoader.getHealthIndexHeader();
@@ -73,7 +114,6 @@ public class DataPreprocessor {
         instance.setDataset(header);
         
         // Normalize and set feature values
-        double[] features = sensorData.getFeatureArray();
         double[] normalizedFeatures = normalizeFeatures(features);
         
         for (int i = 0; i < 11; i++) {
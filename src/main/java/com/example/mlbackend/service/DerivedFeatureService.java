@@ -0,0 +1,118 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.model.SensorBatch;
+import com.example.mlbackend.model.SensorData;
+import com.example.mlbackend.util.PartRiskFeatures;
+import com.example.mlbackend.util.RollingFeatures;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-device derived features (RollingFeatures) kept up to date as windows are scored.
+ *
+ * Consecutive windows of a device overlap, so only readings newer than the device's last one
+ * are fed to its state: each reading is processed once, in O(1), however long the rolling
+ * window is. Readings that fell out of the fetched window between two scorings are not seen.
+ * Timestamps are taken as epoch milliseconds read as UTC, like SensorBatch, so the List and
+ * the columnar path feed the same state.
+ *
+ * Readings are mapped to the part risk model's columns with PartRiskFeatures.fromSensorData and
+ * fed to an engine with PartRiskFeatures.LAYOUT and WINDOW, the layout PartRiskTrainer uses, so
+ * the derived features are computed the same way for training and serving.
+ *
+ * At most max-devices states are kept; the least recently seen device is evicted first and
+ * starts over if it comes back.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DerivedFeatureService {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${features.derived.max-devices:10000}")
+    private int maxDevices;
+
+    private Map<String, RollingFeatures> states;
+    private Counter readings;
+
+    @PostConstruct
+    public void init() {
+        states = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RollingFeatures> eldest) {
+                return size() > maxDevices;
+            }
+        };
+        readings = Counter.builder("features.derived.readings")
+                .description("Readings added to the per-device derived feature state")
+                .register(meterRegistry);
+        Gauge.builder("features.derived.devices", this, service -> service.deviceCount())
+                .description("Devices with derived feature state")
+                .register(meterRegistry);
+        log.info("Derived features over a {}-reading window, compressor on above {} A",
+                PartRiskFeatures.WINDOW, PartRiskFeatures.COMPRESSOR_ON_ABOVE);
+    }
+
+    /**
+     * Add the window's new readings to its device's state
+     * @param window one device's readings in ascending order
+     * @return the derived features after the latest reading, in RollingFeatures.NAMES order
+     */
+    public double[] observe(List<SensorData> window) {
+        RollingFeatures state = stateOf(window.get(window.size() - 1).getDeviceId());
+        synchronized (state) {
+            double[] columns = new double[PartRiskFeatures.COLUMNS.length];
+            int added = 0;
+            for (SensorData reading : window) {
+                long timestamp = reading.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+                if (timestamp > state.lastTimestamp()
+                        && state.update(timestamp, PartRiskFeatures.fromSensorData(reading.getFeatureArray(), columns))) {
+                    added++;
+                }
+            }
+            readings.increment(added);
+            return state.derived(new double[RollingFeatures.NAMES.length]);
+        }
+    }
+
+    /**
+     * Add the new readings of one window of a columnar batch to its device's state
+     * @return the derived features after the window's latest reading, in RollingFeatures.NAMES order
+     */
+    public double[] observe(SensorBatch batch, int window) {
+        RollingFeatures state = stateOf(batch.windowDeviceId(window));
+        synchronized (state) {
+            double[] reading = new double[SensorBatch.FEATURES];
+            double[] columns = new double[PartRiskFeatures.COLUMNS.length];
+            int added = 0;
+            for (int row = batch.start(window); row < batch.end(window); row++) {
+                if (batch.timestamp(row) > state.lastTimestamp() && state.update(batch.timestamp(row),
+                        PartRiskFeatures.fromSensorData(batch.features(row, reading), columns))) {
+                    added++;
+                }
+            }
+            readings.increment(added);
+            return state.derived(new double[RollingFeatures.NAMES.length]);
+        }
+    }
+
+    public synchronized int deviceCount() {
+        return states.size();
+    }
+
+    private synchronized RollingFeatures stateOf(String deviceId) {
+        return states.computeIfAbsent(deviceId, id -> new RollingFeatures(PartRiskFeatures.LAYOUT, PartRiskFeatures.WINDOW));
+    }
+}
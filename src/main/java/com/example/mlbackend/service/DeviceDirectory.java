@@ -0,0 +1,61 @@
+package com.example.mlbackend.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The devices a fleet tick scores (staged and virtual-thread pipelines).
+ *
+ * Uses pipeline.fleet.device-ids when set. Otherwise devices are discovered from recent
+ * readings: over JDBC, every device with a reading in the last discovery-minutes; over REST,
+ * the distinct devices among the latest discovery-rows rows. In cluster mode the list is cut
+ * down to the devices ClusterMembership assigns to this instance.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceDirectory {
+
+    private final SupabaseApiService supabaseApiService;
+    private final SensorHistoryReader sensorHistoryReader;
+    private final ClusterMembership clusterMembership;
+
+    @Value("${pipeline.fleet.device-ids:}")
+    private String configuredDeviceIds;
+
+    @Value("${pipeline.fleet.discovery-source:rest}")
+    private String discoverySource;
+
+    @Value("${pipeline.fleet.discovery-rows:1000}")
+    private int discoveryRows;
+
+    @Value("${pipeline.fleet.discovery-minutes:60}")
+    private long discoveryMinutes;
+
+    /**
+     * The fleet's devices; in cluster mode only those this instance owns
+     */
+    public List<String> deviceIds() throws Exception {
+        List<String> deviceIds;
+        if (!configuredDeviceIds.isBlank()) {
+            deviceIds = Arrays.stream(configuredDeviceIds.split(",")).map(String::trim).filter(id -> !id.isEmpty()).toList();
+        } else {
+            deviceIds = "jdbc".equals(discoverySource)
+                    ? sensorHistoryReader.recentDeviceIds(LocalDateTime.now().minusMinutes(discoveryMinutes))
+                    : supabaseApiService.fetchRecentDeviceIds(discoveryRows);
+            log.debug("Discovered {} devices via {}", deviceIds.size(), discoverySource);
+        }
+        if (!clusterMembership.isEnabled()) {
+            return deviceIds;
+        }
+        List<String> owned = clusterMembership.owned(deviceIds);
+        log.debug("This node owns {} of {} devices", owned.size(), deviceIds.size());
+        return owned;
+    }
+}
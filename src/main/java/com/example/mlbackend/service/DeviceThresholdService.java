@@ -0,0 +1,233 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.util.AdaptiveThreshold;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-device anomaly thresholds learned online.
+ *
+ * Each device's threshold is the configured percentile of its own reconstruction errors
+ * (AdaptiveThreshold). Until a device has seen the warm-up number of samples, the global
+ * threshold from ModelLoader is used, and every error is learned as is, so a device that is
+ * normally noisier than the global threshold ends up with a higher threshold of its own.
+ * The error being judged is added after the decision, so it never raises its own threshold.
+ * After warm-up, errors above outlier-factor times the device's threshold are not learned
+ * (anomaly.threshold.outliers), so a gross, lasting fault keeps alerting.
+ *
+ * All sketches share a fixed memory budget. When the budget is exceeded, the least recently
+ * seen devices are evicted, and they start over from warm-up if they come back.
+ * Memory is exported in total, as the largest device's sketch, and as a distribution of sketch
+ * sizes (anomaly.threshold.device.memory, recorded when a sketch grows) rather than one tagged
+ * gauge per device, which would be one time series per device.
+ *
+ * Each sketch is locked on its own, so scoring threads only contend when they judge the same
+ * device. The map lock covers just the LRU order, the byte total and eviction.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceThresholdService {
+
+    private final ModelLoader modelLoader;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${anomaly.device-threshold.enabled:true}")
+    private boolean enabled;
+
+    @Value("${anomaly.device-threshold.percentile:99.0}")
+    private double percentile;
+
+    @Value("${anomaly.device-threshold.warmup-samples:500}")
+    private long warmupSamples;
+
+    @Value("${anomaly.device-threshold.sketch-k:64}")
+    private int sketchK;
+
+    @Value("${anomaly.device-threshold.outlier-factor:3.0}")
+    private double outlierFactor;
+
+    @Value("${anomaly.device-threshold.memory-budget-bytes:16777216}")
+    private long memoryBudgetBytes;
+
+    // Access-ordered, so iteration starts at the least recently used device; guards totalBytes too
+    private final Map<String, DeviceSketch> sketches = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    private Counter evictions;
+    private Counter outliers;
+    private DistributionSummary deviceMemory;
+
+    private static class DeviceSketch {
+        final AdaptiveThreshold threshold;
+        long bytes; // under the device's lock
+        long accountedBytes; // this sketch's share of totalBytes, under the sketches lock
+
+        DeviceSketch(AdaptiveThreshold threshold) {
+            this.threshold = threshold;
+            this.bytes = threshold.estimatedBytes();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("anomaly.threshold.devices", this, service -> service.deviceCount())
+                .description("Devices with an adaptive anomaly threshold sketch")
+                .register(meterRegistry);
+        Gauge.builder("anomaly.threshold.memory", this, service -> service.memoryBytes())
+                .description("Memory used by all per-device threshold sketches")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("anomaly.threshold.device.memory.max", this, service -> service.maxDeviceMemoryBytes())
+                .description("Memory used by the largest per-device threshold sketch")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        deviceMemory = DistributionSummary.builder("anomaly.threshold.device.memory")
+                .description("Size of a device's threshold sketch, recorded when it grows")
+                .baseUnit("bytes")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        evictions = Counter.builder("anomaly.threshold.evictions")
+                .description("Device sketches evicted to stay within the memory budget")
+                .register(meterRegistry);
+        outliers = Counter.builder("anomaly.threshold.outliers")
+                .description("Errors above outlier-factor times the device threshold, not learned")
+                .register(meterRegistry);
+        log.info("Per-device anomaly thresholds {} (p{}, warm-up {} samples, outliers above {}x, budget {} bytes)",
+                enabled ? "enabled" : "disabled", percentile, warmupSamples, outlierFactor, memoryBudgetBytes);
+    }
+
+    /**
+     * Decide whether the error is anomalous for this device, then learn from it
+     * @param deviceId device the error was measured on
+     * @param error reconstruction MSE of the latest reading
+     * @return true if the error is above the device's threshold (or the global one during warm-up)
+     */
+    public boolean isAnomaly(String deviceId, double error) {
+        double globalThreshold = modelLoader.getThreshold();
+        if (!enabled || deviceId == null) {
+            return error > globalThreshold;
+        }
+        DeviceSketch device = sketchOf(deviceId);
+        double threshold;
+        boolean learned;
+        long addedBytes;
+        synchronized (device) {
+            threshold = device.threshold.threshold(globalThreshold);
+            learned = device.threshold.observe(error, threshold);
+            long bytes = device.threshold.estimatedBytes();
+            addedBytes = bytes - device.bytes;
+            device.bytes = bytes;
+        }
+        log.debug("Device {}: MSE {}, threshold {}", deviceId, error, threshold);
+        if (!learned) {
+            outliers.increment();
+        }
+        if (addedBytes != 0) {
+            account(deviceId, device, addedBytes);
+        }
+        return error > threshold;
+    }
+
+    /**
+     * Current threshold for a device; the global threshold until the device is warmed up
+     */
+    public double thresholdFor(String deviceId) {
+        double globalThreshold = modelLoader.getThreshold();
+        if (!enabled || deviceId == null) {
+            return globalThreshold;
+        }
+        DeviceSketch device;
+        synchronized (sketches) {
+            device = sketches.get(deviceId);
+        }
+        if (device == null) {
+            return globalThreshold;
+        }
+        synchronized (device) {
+            return device.threshold.threshold(globalThreshold);
+        }
+    }
+
+    /**
+     * The device's sketch, created if it has none; marks the device as most recently used
+     */
+    private DeviceSketch sketchOf(String deviceId) {
+        synchronized (sketches) {
+            DeviceSketch device = sketches.get(deviceId);
+            if (device == null) {
+                device = new DeviceSketch(new AdaptiveThreshold(sketchK, percentile, warmupSamples, outlierFactor));
+                sketches.put(deviceId, device);
+                device.accountedBytes = device.bytes;
+                totalBytes += device.accountedBytes;
+                evictOverBudget(deviceId);
+            }
+            return device;
+        }
+    }
+
+    /**
+     * Add a sketch's growth to the total and evict over budget; skipped if the sketch was evicted meanwhile
+     */
+    private void account(String deviceId, DeviceSketch device, long addedBytes) {
+        synchronized (sketches) {
+            if (sketches.get(deviceId) != device) {
+                return;
+            }
+            device.accountedBytes += addedBytes;
+            totalBytes += addedBytes;
+            deviceMemory.record(device.accountedBytes);
+            evictOverBudget(deviceId);
+        }
+    }
+
+    /**
+     * Drop least recently used devices until the sketches fit in the budget;
+     * the device that was just updated is kept. Caller holds the sketches lock.
+     */
+    private void evictOverBudget(String currentDeviceId) {
+        Iterator<Map.Entry<String, DeviceSketch>> it = sketches.entrySet().iterator();
+        while (totalBytes > memoryBudgetBytes && it.hasNext()) {
+            Map.Entry<String, DeviceSketch> eldest = it.next();
+            if (eldest.getKey().equals(currentDeviceId)) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= eldest.getValue().accountedBytes;
+            evictions.increment();
+            log.debug("Evicted threshold sketch of device {} to stay within {} bytes", eldest.getKey(), memoryBudgetBytes);
+        }
+    }
+
+    public int deviceCount() {
+        synchronized (sketches) {
+            return sketches.size();
+        }
+    }
+
+    public long memoryBytes() {
+        synchronized (sketches) {
+            return totalBytes;
+        }
+    }
+
+    public long maxDeviceMemoryBytes() {
+        synchronized (sketches) {
+            long max = 0;
+            for (DeviceSketch device : sketches.values()) {
+                max = Math.max(max, device.accountedBytes);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.util.KllSketch;
+import com.example.mlbackend.util.QuantizedScoreCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Optional memo cache in front of the failure and health-index Random Forests.
+ *
+ * Refrigerator readings repeat a lot (temperatures barely move, vibration sits at baseline),
+ * so the raw 11-feature vector is quantized with a bucket width per feature and the forest
+ * output is cached per bucket vector. A hit returns the score of the first reading seen in
+ * those buckets, which differs from exact scoring by at most what the forest does within
+ * one bucket.
+ *
+ * To make that error visible, a sample of the hits (error-sample-rate) is scored exactly as
+ * well, and the absolute difference goes into a quantile sketch per forest. Hit ratio and
+ * error quantiles are exported as metrics, so the bucket widths can be tuned against them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ForestScoreCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${inference.forest-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inference.forest-cache.bucket-widths:0.1,0.1,0.1,0.1,0.5,0.01,0.01,0.01,0.05,1.0,0.01}")
+    private double[] bucketWidths;
+
+    @Value("${inference.forest-cache.capacity:65536}")
+    private int capacity;
+
+    @Value("${inference.forest-cache.stripes:16}")
+    private int stripes;
+
+    @Value("${inference.forest-cache.error-sample-rate:0.01}")
+    private double errorSampleRate;
+
+    private final Map<Forest, ForestCache> caches = new EnumMap<>(Forest.class);
+
+    public enum Forest {
+        FAILURE("failure"),
+        HEALTH_INDEX("health_index");
+
+        private final String tag;
+
+        Forest(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * Exact scoring of the current reading, run on a miss and for sampled hits
+     */
+    @FunctionalInterface
+    public interface Scorer {
+        double score() throws Exception;
+    }
+
+    private static class ForestCache {
+        final QuantizedScoreCache scores;
+        final Counter hits;
+        final Counter misses;
+        final KllSketch errors = new KllSketch();
+
+        ForestCache(QuantizedScoreCache scores, Counter hits, Counter misses) {
+            this.scores = scores;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        double hitRatio() {
+            double lookups = hits.count() + misses.count();
+            return lookups == 0 ? 0.0 : hits.count() / lookups;
+        }
+
+        double error(double quantile) {
+            synchronized (errors) {
+                return errors.count() == 0 ? 0.0 : errors.quantile(quantile);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Random Forest score cache disabled");
+            return;
+        }
+        for (Forest forest : Forest.values()) {
+            ForestCache cache = new ForestCache(
+                    new QuantizedScoreCache(bucketWidths, capacity, stripes),
+                    Counter.builder("inference.forest.cache.hits")
+                            .description("Forest scores served from the quantized feature cache")
+                            .tag("model", forest.tag)
+                            .register(meterRegistry),
+                    Counter.builder("inference.forest.cache.misses")
+                            .description("Forest scores computed because the quantized features were not cached")
+                            .tag("model", forest.tag)
+                            .register(meterRegistry));
+            Gauge.builder("inference.forest.cache.hit.ratio", cache, ForestCache::hitRatio)
+                    .description("Share of forest lookups served from the cache")
+                    .tag("model", forest.tag)
+                    .register(meterRegistry);
+            Gauge.builder("inference.forest.cache.entries", cache, c -> c.scores.size())
+                    .description("Quantized feature vectors with a cached forest score")
+                    .tag("model", forest.tag)
+                    .register(meterRegistry);
+            for (double quantile : new double[] {0.5, 0.99, 1.0}) {
+                Gauge.builder("inference.forest.cache.error", cache, c -> c.error(quantile))
+                        .description("Absolute difference between cached and exact score on sampled hits")
+                        .tag("model", forest.tag)
+                        .tag("quantile", Double.toString(quantile))
+                        .register(meterRegistry);
+            }
+            caches.put(forest, cache);
+        }
+        log.info("Random Forest score cache enabled ({} entries per forest, bucket widths {}, error sample rate {})",
+                caches.get(Forest.FAILURE).scores.capacity(), Arrays.toString(bucketWidths), errorSampleRate);
+    }
+
+    /**
+     * Score of the reading, from the cache when its quantized features were scored before
+     * @param forest forest being scored
+     * @param features raw sensor features of the reading
+     * @param exact scores the reading with the forest
+     */
+    public double score(Forest forest, double[] features, Scorer exact) throws Exception {
+        ForestCache cache = caches.get(forest);
+        if (cache == null) {
+            return exact.score();
+        }
+
+        double cached = cache.scores.get(features);
+        if (Double.isNaN(cached)) {
+            cache.misses.increment();
+            double score = exact.score();
+            cache.scores.put(features, score);
+            return score;
+        }
+
+        cache.hits.increment();
+        if (ThreadLocalRandom.current().nextDouble() < errorSampleRate) {
+            double error = Math.abs(cached - exact.score());
+            synchronized (cache.errors) {
+                cache.errors.update(error);
+            }
+        }
+        return cached;
+    }
+}
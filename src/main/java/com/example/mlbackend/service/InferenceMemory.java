@@ -0,0 +1,173 @@
+package com.example.mlbackend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.javacpp.Pointer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LearningPolicy;
+import org.nd4j.linalg.api.memory.enums.SpillPolicy;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Off-heap memory handling for inference: reusable ND4J workspaces and a native memory budget.
+ *
+ * inWorkspace runs an inference call inside the calling thread's "INFERENCE" workspace. Every
+ * INDArray created in the call (sequences, part-risk input, model outputs through output(),
+ * argMax, reconstruction errors) is carved out of the workspace's one native block, and the
+ * whole block is reset when the call returns, instead of each array waiting for GC to free
+ * its memory. ND4J keeps workspaces per thread, so each scoring thread reuses its own.
+ * The block size is learned from the first call and grows (once) when a larger batch spills.
+ * Nothing created inside may escape the call: callers return plain Java values only.
+ * Workspaces are tracked per thread. The workspace of a thread that has ended (e.g. an idle
+ * Tomcat worker that ran POST /run-pipeline) is destroyed, and its native block freed, the
+ * next time a thread registers or the size gauge is read.
+ *
+ * The budget is off-heap-budget-bytes, or JavaCPP's maxBytes (-Dorg.bytedeco.javacpp.maxbytes)
+ * when that is 0. admitBatchSize shrinks batches linearly from soft-limit-ratio of the budget
+ * down to one window at the budget, so large batches stop adding native memory near the limit.
+ *
+ * Usage is exported as inference.offheap.* and the workspaces' size as inference.workspace.bytes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InferenceMemory {
+
+    private static final String WORKSPACE_ID = "INFERENCE";
+
+    // Sized by the first call, reallocated when a larger batch spills, never released between calls
+    private static final WorkspaceConfiguration WORKSPACE_CONFIG = WorkspaceConfiguration.builder()
+            .initialSize(0)
+            .overallocationLimit(0.25)
+            .policyAllocation(AllocationPolicy.OVERALLOCATE)
+            .policyLearning(LearningPolicy.FIRST_LOOP)
+            .policySpill(SpillPolicy.REALLOCATE)
+            .build();
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${inference.memory.workspaces.enabled:true}")
+    private boolean workspacesEnabled;
+
+    @Value("${inference.memory.off-heap-budget-bytes:0}")
+    private long configuredBudgetBytes;
+
+    @Value("${inference.memory.soft-limit-ratio:0.8}")
+    private double softLimitRatio;
+
+    // Workspace of each live thread that ran inference, for the size gauge and cleanup
+    private final Map<Thread, MemoryWorkspace> workspaces = new ConcurrentHashMap<>();
+    private long budgetBytes;
+    private Counter throttledBatches;
+
+    @PostConstruct
+    public void init() {
+        budgetBytes = configuredBudgetBytes > 0 ? configuredBudgetBytes : Pointer.maxBytes();
+        Gauge.builder("inference.offheap.bytes", Pointer::totalBytes)
+                .description("Native memory allocated through JavaCPP (ND4J arrays and workspaces)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("inference.offheap.physical.bytes", Pointer::physicalBytes)
+                .description("Resident set size of the process")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("inference.offheap.budget.bytes", () -> budgetBytes)
+                .description("Off-heap budget used for batch admission")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("inference.workspace.bytes", this::workspaceBytes)
+                .description("Current size of the inference workspaces of all threads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        throttledBatches = Counter.builder("inference.memory.throttled")
+                .description("Batches shrunk because off-heap usage was near the budget")
+                .register(meterRegistry);
+        log.info("Inference memory: workspaces {}, off-heap budget {} MB (soft limit {}%)",
+                workspacesEnabled ? "enabled" : "disabled", budgetBytes / (1024 * 1024), Math.round(softLimitRatio * 100));
+    }
+
+    /**
+     * Run work inside this thread's inference workspace; arrays created by work are released when it returns
+     * @param work must not return or keep INDArrays created inside
+     */
+    public <T> T inWorkspace(Supplier<T> work) {
+        if (!workspacesEnabled) {
+            return work.get();
+        }
+        try (MemoryWorkspace workspace = Nd4j.getWorkspaceManager()
+                .getAndActivateWorkspace(WORKSPACE_CONFIG, WORKSPACE_ID)) {
+            if (workspaces.put(Thread.currentThread(), workspace) == null) {
+                releaseEndedThreads();
+            }
+            return work.get();
+        }
+    }
+
+    /**
+     * Forward pass whose output lands in the current workspace, or is detached outside one
+     */
+    public INDArray output(MultiLayerNetwork model, INDArray input) {
+        MemoryWorkspace workspace = Nd4j.getMemoryManager().getCurrentWorkspace();
+        return model.output(input, false, null, null, workspace);
+    }
+
+    /**
+     * Batch size to use now: requested below the soft limit, shrinking linearly to 1 at the budget
+     */
+    public int admitBatchSize(int requested) {
+        if (budgetBytes <= 0 || requested <= 1) {
+            return requested;
+        }
+        double usage = (double) Pointer.totalBytes() / budgetBytes;
+        if (usage < softLimitRatio) {
+            return requested;
+        }
+        double headroom = Math.max(0.0, (1.0 - usage) / Math.max(1e-6, 1.0 - softLimitRatio));
+        int admitted = Math.max(1, (int) (requested * headroom));
+        if (admitted < requested) {
+            throttledBatches.increment();
+            log.debug("Off-heap usage at {}% of budget, batch of {} shrunk to {}",
+                    Math.round(usage * 100), requested, admitted);
+        }
+        return admitted;
+    }
+
+    private double workspaceBytes() {
+        releaseEndedThreads();
+        long total = 0;
+        for (MemoryWorkspace workspace : workspaces.values()) {
+            total += workspace.getCurrentSize();
+        }
+        return total;
+    }
+
+    /**
+     * Destroy the workspaces of threads that have ended; nothing else can use them any more
+     */
+    private void releaseEndedThreads() {
+        Iterator<Map.Entry<Thread, MemoryWorkspace>> it = workspaces.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Thread, MemoryWorkspace> entry = it.next();
+            if (!entry.getKey().isAlive()) {
+                it.remove();
+                entry.getValue().destroyWorkspace(true);
+                log.debug("Released the inference workspace of ended thread {}", entry.getKey().getName());
+            }
+        }
+    }
+}
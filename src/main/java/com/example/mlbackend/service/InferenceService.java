@@ -1,7 +1,10 @@
 package com.example.mlbackend.service;
 
 import com.example.mlbackend.model.PredictionResult;
+import com.example.mlbackend.model.SensorBatch;
 import com.example.mlbackend.model.SensorData;
+import com.example.mlbackend.util.ReconstructionError;
+import com.example.mlbackend.util.PartRiskFeatures;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -11,6 +14,8 @@ import org.springframework.stereotype.Service;
 import weka.classifiers.Classifier;
 import weka.core.Instance;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Slf4j
@@ -18,13 +23,64 @@ import java.util.List;
 @RequiredArgsConstructor
 public class InferenceService {
 
+    // Sensor columns in the order of the autoencoder input
+    private static final String[] SENSOR_FEATURES = {
+            "evaporator_coil_temperature", "fridge_temperature", "freezer_temperature",
+            "air_temperature", "humidity", "compressor_vibration_x", "compressor_vibration_y",
+            "compressor_vibration_z", "compressor_current", "input_voltage", "gas_leakage_level"
+    };
+
     private final ModelLoader modelLoader;
     private final DataPreprocessor dataPreprocessor;
+    private final DeviceThresholdService deviceThresholdService;
+    private final ForestScoreCache forestScoreCache;
+    private final InferenceMemory inferenceMemory;
+    private final DerivedFeatureService derivedFeatureService;
 
     /**
      * Run all predictions on sensor data and return results
      */
     public PredictionResult runInference(List<SensorData> sensorDataList) {
+        // Every array of the call lives in this thread's workspace and is released on return
+        return inferenceMemory.inWorkspace(() -> infer(sensorDataList));
+    }
+
+    /**
+     * Run all predictions on a batch of windows, one per device (List-based adapter of the columnar path)
+     * @param windows windows of the same length, each in ascending order with the latest reading last
+     * @param sequences the windows' normalized sequences from DataPreprocessor.createSequences
+     * @return one result per window, in window order
+     */
+    public List<PredictionResult> runInference(List<List<SensorData>> windows, INDArray sequences) {
+        return runInference(SensorBatch.of(windows), sequences);
+    }
+
+    /**
+     * Run all predictions on a columnar batch, one window per device, with one forward pass per
+     * network and admitted sub-batch. Near the off-heap budget the batch is scored in smaller sub-batches.
+     * @param batch windows of the same length, each in ascending order with the latest reading last
+     * @param sequences the windows' normalized sequences from DataPreprocessor.createSequences
+     * @return one result per window, in window order
+     */
+    public List<PredictionResult> runInference(SensorBatch batch, INDArray sequences) {
+        int windows = batch.windowCount();
+        if (windows == 0) {
+            throw new IllegalArgumentException("Batch cannot be empty");
+        }
+        List<PredictionResult> results = new ArrayList<>(windows);
+        int from = 0;
+        while (from < windows) {
+            int first = from;
+            int to = Math.min(windows, from + inferenceMemory.admitBatchSize(windows - from));
+            INDArray chunkSequences = from == 0 && to == windows ? sequences
+                    : sequences.get(NDArrayIndex.interval(from, to), NDArrayIndex.all(), NDArrayIndex.all());
+            results.addAll(inferenceMemory.inWorkspace(() -> infer(batch, first, to, chunkSequences)));
+            from = to;
+        }
+        return results;
+    }
+
+    private PredictionResult infer(List<SensorData> sensorDataList) {
         try {
             if (sensorDataList.isEmpty()) {
                 throw new IllegalArgumentException("Sensor data list cannot be empty");
@@ -37,19 +93,24 @@ public class InferenceService {
             INDArray sequence = dataPreprocessor.createSequence(sensorDataList);
             
             // 1. Anomaly Detection with Autoencoder
-            boolean isAnomaly = detectAnomaly(sequence);
+            boolean isAnomaly = detectAnomaly(latestData.getDeviceId(), sequence);
+            
+            double[] latestFeatures = latestData.getFeatureArray();
+            
+            // Rolling features of the device, updated with the window's new readings
+            double[] derived = derivedFeatureService.observe(sensorDataList);
             
             // 2. Failure Prediction with Random Forest
-            double failureProbability = predictFailureProbability(latestData);
+            double failureProbability = predictFailureProbability(latestFeatures);
             
             // 3. Health Index Prediction with Random Forest
-            double healthIndex = predictHealthIndex(latestData);
+            double healthIndex = predictHealthIndex(latestFeatures);
             
             // 4. RUL Prediction with LSTM
             double remainingUsefulLife = predictRUL(sequence);
             
             // 5. Part Risk Prediction with DL4J
-            String[] partRiskInfo = predictPartAtRisk(latestData);
+            String[] partRiskInfo = predictPartAtRisk(latestFeatures, derived);
             String partAtRisk = partRiskInfo[0];
             String condition = partRiskInfo[1];
             
@@ -71,13 +132,61 @@ public class InferenceService {
     }
 
     /**
-     * Detect anomalies using the autoencoder model
+     * Score windows [from, to) of the batch; sequences holds exactly those windows
      */
-    private boolean detectAnomaly(INDArray sequence) {
+    private List<PredictionResult> infer(SensorBatch batch, int from, int to, INDArray sequences) {
         try {
-            // Get the autoencoder model and threshold
-            double threshold = modelLoader.getThreshold();
+            int count = to - from;
+            
+            // Raw features of every window's latest reading, for the forests and the part risk model
+            double[][] latestFeatures = new double[count][];
+            double[][] derived = new double[count][];
+            for (int i = 0; i < count; i++) {
+                latestFeatures[i] = batch.features(batch.latest(from + i), new double[SensorBatch.FEATURES]);
+                derived[i] = derivedFeatureService.observe(batch, from + i);
+            }
+            
+            // 1. Autoencoder reconstruction error of every window's latest reading
+            long seqLength = sequences.size(1);
+            INDArray latestSequenceFeatures = sequences.get(
+                    NDArrayIndex.all(),
+                    NDArrayIndex.point(seqLength - 1),
+                    NDArrayIndex.all());
+            ReconstructionError errors = ReconstructionError.compute(latestSequenceFeatures,
+                    inferenceMemory.output(modelLoader.getAutoencoderModel(), latestSequenceFeatures));
+            
+            // 4. RUL and 5. part risk for the whole batch
+            double[] remainingUsefulLife = predictRUL(sequences, count);
+            String[][] partRisk = predictPartAtRisk(latestFeatures, derived);
             
+            List<PredictionResult> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int latest = batch.latest(from + i);
+                String deviceId = batch.deviceId(latest);
+                boolean isAnomaly = judgeAnomaly(deviceId, errors, i);
+                results.add(PredictionResult.builder()
+                        .deviceId(deviceId)
+                        .timestamp(batch.localTimestamp(latest))
+                        .isAnomaly(isAnomaly)
+                        .failureProbability(predictFailureProbability(latestFeatures[i]))
+                        .healthIndex(predictHealthIndex(latestFeatures[i]))
+                        .remainingUsefulLife(remainingUsefulLife[i])
+                        .partAtRisk(partRisk[i][0])
+                        .condition(partRisk[i][1])
+                        .build());
+            }
+            return results;
+        } catch (Exception e) {
+            log.error("Error during batch inference: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to run batch inference", e);
+        }
+    }
+
+    /**
+     * Detect anomalies using the autoencoder model and the device's adaptive threshold
+     */
+    private boolean detectAnomaly(String deviceId, INDArray sequence) {
+        try {
             // Get the latest data point (last in sequence) and reshape to 2D for autoencoder
             long seqLength = sequence.size(1);
             INDArray latestFeatures = sequence.get(
@@ -91,38 +200,54 @@ public class InferenceService {
             log.debug("Autoencoder input shape: {}", reshapedInput.shape());
             
             // Get the reconstruction
-            INDArray output = modelLoader.getAutoencoderModel().output(reshapedInput);
+            INDArray output = inferenceMemory.output(modelLoader.getAutoencoderModel(), reshapedInput);
             
-            // Calculate Mean Squared Error (MSE)
-            INDArray mseArray = reshapedInput.sub(output).mul(reshapedInput.sub(output)).sum(1).div(11);
-            double mse = mseArray.getDouble(0);
+            // Calculate Mean Squared Error (MSE) and the per-sensor squared errors in one pass
+            ReconstructionError error = ReconstructionError.compute(reshapedInput, output);
+            double mse = error.rowMse(0);
             
-            log.debug("Anomaly MSE: {}, Threshold: {}", mse, threshold);
+            log.debug("Anomaly MSE: {}", mse);
             
-            // If MSE > threshold, it's an anomaly
-            return mse > threshold;
+            return judgeAnomaly(deviceId, error, 0);
         } catch (Exception e) {
             log.error("Error in anomaly detection: {}", e.getMessage(), e);
             throw new RuntimeException("Anomaly detection failed", e);
         }
     }
 
+    /**
+     * If MSE > threshold, it's an anomaly; the device's threshold then learns from this MSE
+     */
+    private boolean judgeAnomaly(String deviceId, ReconstructionError error, int row) {
+        double mse = error.rowMse(row);
+        boolean isAnomaly = deviceThresholdService.isAnomaly(deviceId, mse);
+        if (isAnomaly) {
+            int feature = error.dominantFeature(row);
+            log.info("Anomaly on device {}: MSE {}, largest error on {} ({})",
+                    deviceId, mse, SENSOR_FEATURES[feature], error.squaredErrors().getDouble(row, feature));
+        }
+        return isAnomaly;
+    }
+
     /**
      * Predict failure probability using Random Forest model
      */
-    private double predictFailureProbability(SensorData sensorData) {
+    private double predictFailureProbability(double[] features) {
         try {
-            // Create a Weka instance for failure prediction
-            Instance instance = dataPreprocessor.createInstance(sensorData, true);
-            
-            // Get the failure model
-            Classifier failureModel = modelLoader.getFailureModel();
-            
-            // Get class probability distribution (class 1 = failure)
-            double[] distribution = failureModel.distributionForInstance(instance);
-            
-            // Return probability of class 1 (failure)
-            return distribution[1];
+            // Served from the quantized feature cache when an equivalent reading was scored before
+            return forestScoreCache.score(ForestScoreCache.Forest.FAILURE, features, () -> {
+                // Create a Weka instance for failure prediction
+                Instance instance = dataPreprocessor.createInstance(features, true);
+                
+                // Get the failure model
+                Classifier failureModel = modelLoader.getFailureModel();
+                
+                // Get class probability distribution (class 1 = failure)
+                double[] distribution = failureModel.distributionForInstance(instance);
+                
+                // Return probability of class 1 (failure)
+                return distribution[1];
+            });
         } catch (Exception e) {
             log.error("Error in failure prediction: {}", e.getMessage(), e);
             throw new RuntimeException("Failure prediction failed", e);
@@ -132,16 +257,19 @@ public class InferenceService {
     /**
      * Predict health index using Random Forest regression model
      */
-    private double predictHealthIndex(SensorData sensorData) {
+    private double predictHealthIndex(double[] features) {
         try {
-            // Create a Weka instance for health index prediction
-            Instance instance = dataPreprocessor.createInstance(sensorData, false);
-            
-            // Get the health index model
-            Classifier healthIndexModel = modelLoader.getHealthIndexModel();
-            
-            // Classify instance (regression value)
-            return healthIndexModel.classifyInstance(instance);
+            // Served from the quantized feature cache when an equivalent reading was scored before
+            return forestScoreCache.score(ForestScoreCache.Forest.HEALTH_INDEX, features, () -> {
+                // Create a Weka instance for health index prediction
+                Instance instance = dataPreprocessor.createInstance(features, false);
+                
+                // Get the health index model
+                Classifier healthIndexModel = modelLoader.getHealthIndexModel();
+                
+                // Classify instance (regression value)
+                return healthIndexModel.classifyInstance(instance);
+            });
         } catch (Exception e) {
             log.error("Error in health index prediction: {}", e.getMessage(), e);
             throw new RuntimeException("Health index prediction failed", e);
@@ -162,7 +290,7 @@ public class InferenceService {
             }
             
             // Get the RUL model
-            INDArray output = modelLoader.getRulModel().output(sequence);
+            INDArray output = inferenceMemory.output(modelLoader.getRulModel(), sequence);
             
             // Get the RUL value (single scalar output)
             return output.getDouble(0, 0);
@@ -174,107 +302,126 @@ public class InferenceService {
         }
     }
     
+    /**
+     * Predict RUL for a batch of sequences with one forward pass
+     * @return one RUL per sequence; the fallback value for all of them if the model cannot score the batch
+     */
+    private double[] predictRUL(INDArray sequences, int batchSize) {
+        double[] remainingUsefulLife = new double[batchSize];
+        Arrays.fill(remainingUsefulLife, 500.0);
+        try {
+            long seqLength = sequences.size(1);
+            if (seqLength != 11) {
+                log.warn("RUL model expects sequence length 11, but got {}. Using fallback value.", seqLength);
+                return remainingUsefulLife;
+            }
+            INDArray output = inferenceMemory.output(modelLoader.getRulModel(), sequences);
+            for (int i = 0; i < batchSize; i++) {
+                remainingUsefulLife[i] = output.getDouble(i, 0);
+            }
+            return remainingUsefulLife;
+        } catch (Exception e) {
+            log.error("Error in RUL prediction: {}", e.getMessage(), e);
+            log.warn("Using fallback RUL value due to model error");
+            return remainingUsefulLife;
+        }
+    }
+
     /**
      * Predict which part is at risk using the Part Risk DL4J model
-     * @param sensorData The latest sensor data
+     * @param features The raw features of the latest reading
+     * @param derived The device's derived features (RollingFeatures.NAMES order)
      * @return String array with [partAtRisk, condition]
      */
-    private String[] predictPartAtRisk(SensorData sensorData) {
+    private String[] predictPartAtRisk(double[] features, double[] derived) {
+        return predictPartAtRisk(new double[][] {features}, new double[][] {derived})[0];
+    }
+
+    /**
+     * Predict which part is at risk for several readings with one forward pass
+     * @param latestFeatures The raw features of each device's latest reading
+     * @param derived Each device's derived features
+     * @return [partAtRisk, condition] per reading
+     */
+    private String[][] predictPartAtRisk(double[][] latestFeatures, double[][] derived) {
+        String[][] fallback = new String[latestFeatures.length][];
+        for (int i = 0; i < fallback.length; i++) {
+            fallback[i] = new String[] {"unknown", "normal"};
+        }
         try {
             // Get the part risk model
             if (modelLoader.getPartRiskModel() == null) {
                 log.warn("Part risk model not available. Using fallback values.");
-                return new String[] {"unknown", "normal"};
+                return fallback;
             }
             
-            // Create input features array from sensor data
-            // We need all 11 features from SensorData plus a derived feature for the part risk model
-            double[] features = new double[12];
-            features[0] = sensorData.getFeature1();  // evaporator_coil_temperature
-            features[1] = sensorData.getFeature2();  // fridge_temperature
-            features[2] = sensorData.getFeature3();  // freezer_temperature
-            features[3] = sensorData.getFeature4();  // air_temperature
-            features[4] = sensorData.getFeature5();  // humidity
-            features[5] = sensorData.getFeature6();  // compressor_vibration_x
-            features[6] = sensorData.getFeature7();  // compressor_vibration_y
-            features[7] = sensorData.getFeature8();  // compressor_vibration_z
-            features[8] = sensorData.getFeature9();  // compressor_current
-            features[9] = sensorData.getFeature10(); // input_voltage
-            features[10] = sensorData.getFeature11(); // gas_leakage_level
-            // Add a derived feature (e.g., average of vibration values) as the 12th feature
-            features[11] = (features[5] + features[6] + features[7]) / 3.0; // Average vibration
+            // Create input features array from sensor data, one row per reading
+            double[][] features = new double[latestFeatures.length][];
+            for (int i = 0; i < features.length; i++) {
+                features[i] = modelLoader.isPartRiskColumnLayout()
+                        ? partRiskFeatures(latestFeatures[i], derived[i])
+                        : PartRiskFeatures.legacy(latestFeatures[i]);
+            }
             
             // Convert to INDArray
-            INDArray input = Nd4j.create(features).reshape(1, 12);
+            INDArray input = Nd4j.create(features);
             
-            // Apply normalizer if available
+            // Apply normalizer if available (to the features only)
             if (modelLoader.getPartRiskNormalizer() != null) {
-                // Create a dataset with the input
-                org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler normalizer = 
-                    modelLoader.getPartRiskNormalizer();
-                
-                // We need to create a fake dataset with our input for normalization
-                org.nd4j.linalg.dataset.DataSet dummyDataSet = 
-                    new org.nd4j.linalg.dataset.DataSet(input, Nd4j.create(1, 6));
-                
-                // Apply normalization to features only
-                normalizer.transform(dummyDataSet);
-                
-                // Get the normalized input
-                input = dummyDataSet.getFeatures();
+                modelLoader.getPartRiskNormalizer().transform(input);
             }
             
             // Run prediction
-            INDArray output = modelLoader.getPartRiskModel().output(input);
+            INDArray output = inferenceMemory.output(modelLoader.getPartRiskModel(), input);
             
-            // Get the predicted class (index of max value)
-            int predictedClass = Nd4j.argMax(output, 1).getInt(0);
-            
-            // Map class index to part name
-            String partAtRisk;
-            String condition;
-            
-            switch (predictedClass) {
-                case 0:
-                    partAtRisk = "compressor";
-                    condition = "warning";
-                    break;
-                case 1:
-                    partAtRisk = "condenser";
-                    condition = "warning";
-                    break;
-                case 2:
-                    partAtRisk = "evaporator";
-                    condition = "warning";
-                    break;
-                case 3:
-                    partAtRisk = "expansion_valve";
-                    condition = "warning";
-                    break;
-                case 4:
-                    partAtRisk = "fan_motor";
-                    condition = "warning";
-                    break;
-                case 5:
-                    partAtRisk = "none";
-                    condition = "normal";
-                    break;
-                default:
-                    partAtRisk = "unknown";
-                    condition = "normal";
-                    break;
+            // Get the predicted class (index of max value) of every row
+            INDArray predictedClasses = Nd4j.argMax(output, 1);
+            String[][] partRisk = new String[features.length][];
+            for (int i = 0; i < features.length; i++) {
+                int predictedClass = predictedClasses.getInt(i);
+                partRisk[i] = partRiskLabel(predictedClass);
+                
+                // Get the confidence score for the predicted class
+                double confidence = output.getDouble(i, predictedClass);
+                log.debug("Part risk prediction: {} with confidence {}", partRisk[i][0], confidence);
             }
-            
-            // Get the confidence score for the predicted class
-            double confidence = output.getDouble(0, predictedClass);
-            log.debug("Part risk prediction: {} with confidence {}", partAtRisk, confidence);
-            
-            return new String[] {partAtRisk, condition};
+            return partRisk;
         } catch (Exception e) {
             log.error("Error in part risk prediction: {}", e.getMessage(), e);
             log.warn("Using fallback part risk values due to model error");
             // Return reasonable fallback values
-            return new String[] {"unknown", "normal"};
+            return fallback;
+        }
+    }
+
+    /**
+     * Part risk model input in PartRiskFeatures.COLUMNS order, as PartRiskTrainer builds it:
+     * the latest reading's sensors plus the device's derived features in their training columns
+     */
+    private static double[] partRiskFeatures(double[] sensorFeatures, double[] derived) {
+        double[] features = PartRiskFeatures.fromSensorData(sensorFeatures, new double[PartRiskFeatures.COLUMNS.length]);
+        return PartRiskFeatures.withDerived(features, derived);
+    }
+
+    /**
+     * Map class index to [part name, condition]
+     */
+    private static String[] partRiskLabel(int predictedClass) {
+        switch (predictedClass) {
+            case 0:
+                return new String[] {"compressor", "warning"};
+            case 1:
+                return new String[] {"condenser", "warning"};
+            case 2:
+                return new String[] {"evaporator", "warning"};
+            case 3:
+                return new String[] {"expansion_valve", "warning"};
+            case 4:
+                return new String[] {"fan_motor", "warning"};
+            case 5:
+                return new String[] {"none", "normal"};
+            default:
+                return new String[] {"unknown", "normal"};
         }
     }
-} 
\ No newline at end of file
+}
@@ -1,5 +1,8 @@
 package com.example.mlbackend.service;
 
+import com.example.mlbackend.util.ArtifactDigest;
+import com.example.mlbackend.util.FlatModelArtifact;
+import com.example.mlbackend.util.PartRiskFeatures;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.nn.api.Model;
@@ -29,14 +32,21 @@ import java.io.ObjectInputStream;
 import java.io.FileInputStream;
 import java.lang.Exception;
 import java.util.ArrayList;
+import java.util.Properties;
 
 @Slf4j
 @Getter
 @Component
 public class ModelLoader {
 
-    // Absolute path to model directory
-    private final String MODEL_DIR = "model/";
+    // Root of the model directory; TrainingOrchestrator publishes generations below it
+    private final String MODEL_ROOT = "model/";
+    private static final String MANIFEST_FILE = "manifest.properties";
+
+    // Directory the models are actually read from (MODEL_ROOT or the published generation)
+    private String modelDir = MODEL_ROOT;
+    // Manifest of the published generation in use, for the SHA-256 checks; null when reading MODEL_ROOT
+    private Properties manifest;
 
     private MultiLayerNetwork autoencoderModel;
     private MultiLayerNetwork rulModel;
@@ -49,10 +59,13 @@ public class ModelLoader {
     private Instances failureHeader;
     private Instances healthIndexHeader;
     private org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler partRiskNormalizer;
+    // True if the part risk model was trained on PartRiskFeatures.COLUMNS; otherwise it takes the legacy input
+    private boolean partRiskColumnLayout;
 
     @PostConstruct
     public void init() {
-        log.info("Loading ML models from {}", new File(MODEL_DIR).getAbsolutePath());
+        modelDir = resolveModelDir();
+        log.info("Loading ML models from {}", new File(modelDir).getAbsolutePath());
         
         try {
             // Create fallback models in case loading fails
@@ -73,6 +86,71 @@ public class ModelLoader {
         }
     }
     
+    /**
+     * Use the generation named in model/manifest.properties if there is one and all of its
+     * artifacts are present with the recorded sizes; otherwise read the model root directly
+     * (models written by running a single trainer). SHA-256 hashes are checked later, only for
+     * the artifacts that are actually loaded (intact).
+     */
+    private String resolveModelDir() {
+        File manifestFile = new File(MODEL_ROOT + MANIFEST_FILE);
+        if (!manifestFile.exists()) {
+            return MODEL_ROOT;
+        }
+        Properties manifest = new Properties();
+        try (FileInputStream in = new FileInputStream(manifestFile)) {
+            manifest.load(in);
+        } catch (IOException e) {
+            log.warn("Could not read model manifest {}: {}", manifestFile.getAbsolutePath(), e.getMessage());
+            return MODEL_ROOT;
+        }
+
+        String directory = manifest.getProperty("directory");
+        if (directory == null) {
+            log.warn("Model manifest {} has no directory entry", manifestFile.getAbsolutePath());
+            return MODEL_ROOT;
+        }
+        File generationDir = new File(MODEL_ROOT + directory);
+        for (String key : manifest.stringPropertyNames()) {
+            if (!key.startsWith("file.") || !key.endsWith(".size")) {
+                continue;
+            }
+            String name = key.substring(5, key.length() - 5);
+            File artifact = new File(generationDir, name);
+            if (!artifact.isFile() || artifact.length() != Long.parseLong(manifest.getProperty(key))) {
+                log.warn("Model generation {} is incomplete ({}), using {}",
+                        manifest.getProperty("generation"), artifact.getName(), MODEL_ROOT);
+                return MODEL_ROOT;
+            }
+        }
+        log.info("Using model generation {} from manifest", manifest.getProperty("generation"));
+        this.manifest = manifest;
+        return MODEL_ROOT + directory + "/";
+    }
+
+    /**
+     * Check an artifact against its SHA-256 in the manifest just before it is loaded. Same size is
+     * not enough: a corrupt or partially overwritten file keeps its length. Artifacts that are not
+     * loaded (e.g. the zip model next to a flat one) are never read. Files outside a published
+     * generation, or without a recorded hash, pass.
+     */
+    private boolean intact(File artifact) {
+        String expected = manifest == null ? null : manifest.getProperty("file." + artifact.getName() + ".sha256");
+        if (expected == null) {
+            return true;
+        }
+        try {
+            if (expected.equalsIgnoreCase(ArtifactDigest.sha256(artifact.toPath()))) {
+                return true;
+            }
+            log.error("{} does not match its SHA-256 in the model manifest, not loading it",
+                    artifact.getAbsolutePath());
+        } catch (IOException e) {
+            log.error("Could not verify {}: {}, not loading it", artifact.getAbsolutePath(), e.getMessage());
+        }
+        return false;
+    }
+
     private void createFallbackModels() {
         log.info("Creating fallback models");
         
@@ -159,10 +237,10 @@ public class ModelLoader {
     private void loadDeepLearningModels() {
         try {
             // Try to load autoencoder model
-            File autoencoderFile = new File(MODEL_DIR + "autoencoder.model");
-            if (autoencoderFile.exists()) {
+            File autoencoderFile = new File(modelDir + "autoencoder.model");
+            if (networkExists(autoencoderFile)) {
                 log.info("Loading autoencoder model from: {}", autoencoderFile.getAbsolutePath());
-                MultiLayerNetwork loadedModel = ModelSerializer.restoreMultiLayerNetwork(autoencoderFile);
+                MultiLayerNetwork loadedModel = restoreNetwork(autoencoderFile);
                 if (loadedModel != null) {
                     autoencoderModel = loadedModel;
                     log.info("Successfully loaded autoencoder model");
@@ -172,10 +250,10 @@ public class ModelLoader {
             }
             
             // Try to load RUL model
-            File rulFile = new File(MODEL_DIR + "rul.model");
-            if (rulFile.exists()) {
+            File rulFile = new File(modelDir + "rul.model");
+            if (networkExists(rulFile)) {
                 log.info("Loading RUL model from: {}", rulFile.getAbsolutePath());
-                MultiLayerNetwork loadedModel = ModelSerializer.restoreMultiLayerNetwork(rulFile);
+                MultiLayerNetwork loadedModel = restoreNetwork(rulFile);
                 if (loadedModel != null) {
                     rulModel = loadedModel;
                     log.info("Successfully loaded RUL model");
@@ -185,17 +263,18 @@ public class ModelLoader {
             }
             
             // Try to load Part Risk model
-            File partRiskFile = new File(MODEL_DIR + "part_risk.model");
-            if (partRiskFile.exists()) {
+            File partRiskFile = new File(modelDir + "part_risk.model");
+            if (networkExists(partRiskFile)) {
                 log.info("Loading Part Risk model from: {}", partRiskFile.getAbsolutePath());
-                MultiLayerNetwork loadedModel = ModelSerializer.restoreMultiLayerNetwork(partRiskFile);
+                MultiLayerNetwork loadedModel = restoreNetwork(partRiskFile);
                 if (loadedModel != null) {
                     partRiskModel = loadedModel;
                     log.info("Successfully loaded Part Risk model");
+                    partRiskColumnLayout = loadPartRiskLayout();
                     
                     // Try to load the normalizer for part risk model
-                    File normalizerFile = new File(MODEL_DIR + "part_risk_normalizer.bin");
-                    if (normalizerFile.exists()) {
+                    File normalizerFile = new File(modelDir + "part_risk_normalizer.bin");
+                    if (normalizerFile.exists() && intact(normalizerFile)) {
                         log.info("Loading Part Risk normalizer from: {}", normalizerFile.getAbsolutePath());
                         try {
                             partRiskNormalizer = org.nd4j.linalg.dataset.api.preprocessor.serializer.NormalizerSerializer
@@ -206,7 +285,8 @@ public class ModelLoader {
                             partRiskNormalizer = new org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler();
                         }
                     } else {
-                        log.warn("Part Risk normalizer file not found: {}", normalizerFile.getAbsolutePath());
+                        log.warn("Part Risk normalizer file not found or corrupt: {}",
+                                normalizerFile.getAbsolutePath());
                         partRiskNormalizer = new org.nd4j.linalg.dataset.api.preprocessor.NormalizerMinMaxScaler();
                     }
                 }
@@ -234,11 +314,68 @@ public class ModelLoader {
         }
     }
     
+    /**
+     * Whether the part risk model next to its LAYOUT_FILE was trained on PartRiskFeatures.COLUMNS
+     */
+    private boolean loadPartRiskLayout() {
+        File layoutFile = new File(modelDir + PartRiskFeatures.LAYOUT_FILE);
+        if (!layoutFile.exists() || !intact(layoutFile)) {
+            log.warn("Part Risk model has no {}: it predates the shared feature layout and gets the legacy input "
+                    + "(11 sensors plus average vibration). Retrain it with PartRiskTrainer to use derived features.",
+                    PartRiskFeatures.LAYOUT_FILE);
+            return false;
+        }
+        Properties layout = new Properties();
+        try (FileInputStream in = new FileInputStream(layoutFile)) {
+            layout.load(in);
+        } catch (IOException e) {
+            log.warn("Could not read {}: {}, using the legacy part risk input", layoutFile.getAbsolutePath(), e.getMessage());
+            return false;
+        }
+        if (!String.join(",", PartRiskFeatures.COLUMNS).equals(layout.getProperty("columns"))) {
+            log.warn("Part Risk model was trained on columns {}, not PartRiskFeatures.COLUMNS; using the legacy input",
+                    layout.getProperty("columns"));
+            return false;
+        }
+        log.info("Part Risk model uses the shared feature layout (derived features: {})",
+                layout.getProperty("derived-features"));
+        return true;
+    }
+
+    /**
+     * A network is available if either the zip model or its flat artifact exists
+     */
+    private boolean networkExists(File modelFile) {
+        return modelFile.exists() || FlatModelArtifact.siblingOf(modelFile).exists();
+    }
+
+    /**
+     * Restore a network, preferring the memory-mapped flat artifact over the zip model.
+     * Falls back to ModelSerializer if the flat artifact is missing or unreadable.
+     */
+    private MultiLayerNetwork restoreNetwork(File modelFile) throws IOException {
+        File flatFile = FlatModelArtifact.siblingOf(modelFile);
+        if (flatFile.exists() && intact(flatFile)) {
+            try {
+                long start = System.nanoTime();
+                MultiLayerNetwork network = FlatModelArtifact.read(flatFile);
+                log.info("Mapped flat model {} in {} ms", flatFile.getName(), (System.nanoTime() - start) / 1_000_000);
+                return network;
+            } catch (Exception e) {
+                log.warn("Could not read flat model {}: {}", flatFile.getAbsolutePath(), e.getMessage());
+            }
+        }
+        if (!modelFile.exists() || !intact(modelFile)) {
+            return null;
+        }
+        return ModelSerializer.restoreMultiLayerNetwork(modelFile);
+    }
+    
     private void loadWekaModels() {
         try {
             // Try to load failure model
-            File failureModelFile = new File(MODEL_DIR + "rf_failure.model");
-            if (failureModelFile.exists()) {
+            File failureModelFile = new File(modelDir + "rf_failure.model");
+            if (failureModelFile.exists() && intact(failureModelFile)) {
                 log.info("Loading failure model from: {}", failureModelFile.getAbsolutePath());
                 Classifier loadedModel = (Classifier) SerializationHelper.read(failureModelFile.getAbsolutePath());
                 if (loadedModel != null) {
@@ -246,12 +383,12 @@ public class ModelLoader {
                     log.info("Successfully loaded failure model");
                 }
             } else {
-                log.warn("Failure model file not found: {}", failureModelFile.getAbsolutePath());
+                log.warn("Failure model file not found or corrupt: {}", failureModelFile.getAbsolutePath());
             }
             
             // Try to load health index model
-            File healthIndexModelFile = new File(MODEL_DIR + "rf_health_index.model");
-            if (healthIndexModelFile.exists()) {
+            File healthIndexModelFile = new File(modelDir + "rf_health_index.model");
+            if (healthIndexModelFile.exists() && intact(healthIndexModelFile)) {
                 log.info("Loading health index model from: {}", healthIndexModelFile.getAbsolutePath());
                 Classifier loadedModel = (Classifier) SerializationHelper.read(healthIndexModelFile.getAbsolutePath());
                 if (loadedModel != null) {
@@ -259,7 +396,7 @@ public class ModelLoader {
                     log.info("Successfully loaded health index model");
                 }
             } else {
-                log.warn("Health index model file not found: {}", healthIndexModelFile.getAbsolutePath());
+                log.warn("Health index model file not found or corrupt: {}", healthIndexModelFile.getAbsolutePath());
             }
         } catch (Exception e) {
             log.error("Error loading Weka models: {}", e.getMessage());
@@ -269,8 +406,8 @@ public class ModelLoader {
     
     private void loadThreshold() {
         try {
-            File thresholdFile = new File(MODEL_DIR + "threshold.bin");
-            if (thresholdFile.exists()) {
+            File thresholdFile = new File(modelDir + "threshold.bin");
+            if (thresholdFile.exists() && intact(thresholdFile)) {
                 log.info("Loading threshold from: {}", thresholdFile.getAbsolutePath());
                 try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(thresholdFile))) {
                     Object obj = ois.readObject();
@@ -280,7 +417,7 @@ public class ModelLoader {
                     }
                 }
             } else {
-                log.warn("Threshold file not found: {}", thresholdFile.getAbsolutePath());
+                log.warn("Threshold file not found or corrupt: {}", thresholdFile.getAbsolutePath());
             }
         } catch (Exception e) {
             log.error("Error loading threshold: {}", e.getMessage());
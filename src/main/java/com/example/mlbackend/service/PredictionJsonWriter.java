@@ -0,0 +1,117 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.model.PredictionResult;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Streaming JSON encoder for predictions rows, used for the REST writes in ResultStorageService.
+ *
+ * Writes each result field by field with a Jackson JsonGenerator straight into an OutputStream
+ * (the request body), instead of building a Map per row and letting ObjectMapper walk it with
+ * reflection. The generator encodes into Jackson's recycled per-thread byte buffer and flushes
+ * it to the stream, field names are pre-encoded, and the timestamp is written as digits into a
+ * char buffer rather than through DateTimeFormatter.
+ *
+ * The output has the same fields and values as ResultStorageService.toRow: timestamp as
+ * yyyy-MM-dd HH:mm:ss and rul as ResultStorageService.rulValue.
+ */
+public final class PredictionJsonWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final SerializableString TIMESTAMP = new SerializedString("timestamp");
+    private static final SerializableString DEVICE_ID = new SerializedString("device_id");
+    private static final SerializableString IS_ANOMALY = new SerializedString("is_anomaly");
+    private static final SerializableString FAILURE_PROB = new SerializedString("failure_prob");
+    private static final SerializableString HEALTH_INDEX = new SerializedString("health_index");
+    private static final SerializableString RUL = new SerializedString("rul");
+
+    private static final int TIMESTAMP_CHARS = 19;
+
+    private PredictionJsonWriter() {
+    }
+
+    /**
+     * Write the results as one JSON array (a PostgREST bulk insert body)
+     */
+    public static void writeArray(List<PredictionResult> results, OutputStream out) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            char[] timestamp = new char[TIMESTAMP_CHARS];
+            generator.writeStartArray(results, results.size());
+            for (PredictionResult result : results) {
+                writeRow(generator, result, timestamp);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Write one result as a JSON object
+     */
+    public static void writeObject(PredictionResult result, OutputStream out) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            writeRow(generator, result, new char[TIMESTAMP_CHARS]);
+        }
+    }
+
+    private static void writeRow(JsonGenerator generator, PredictionResult result, char[] timestamp)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(TIMESTAMP);
+        if (result.getTimestamp() == null) {
+            generator.writeNull();
+        } else {
+            formatTimestamp(result.getTimestamp(), timestamp);
+            generator.writeString(timestamp, 0, TIMESTAMP_CHARS);
+        }
+        generator.writeFieldName(DEVICE_ID);
+        generator.writeString(result.getDeviceId());
+        generator.writeFieldName(IS_ANOMALY);
+        generator.writeBoolean(result.isAnomaly());
+        generator.writeFieldName(FAILURE_PROB);
+        generator.writeNumber(result.getFailureProbability());
+        generator.writeFieldName(HEALTH_INDEX);
+        generator.writeNumber(result.getHealthIndex());
+        generator.writeFieldName(RUL);
+        Object rul = ResultStorageService.rulValue(result);
+        if (rul instanceof String text) {
+            generator.writeString(text);
+        } else {
+            generator.writeNumber(result.getRemainingUsefulLife());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * yyyy-MM-dd HH:mm:ss into the first 19 chars of into
+     */
+    private static void formatTimestamp(LocalDateTime t, char[] into) {
+        digits(into, 0, t.getYear(), 4);
+        into[4] = '-';
+        digits(into, 5, t.getMonthValue(), 2);
+        into[7] = '-';
+        digits(into, 8, t.getDayOfMonth(), 2);
+        into[10] = ' ';
+        digits(into, 11, t.getHour(), 2);
+        into[13] = ':';
+        digits(into, 14, t.getMinute(), 2);
+        into[16] = ':';
+        digits(into, 17, t.getSecond(), 2);
+    }
+
+    private static void digits(char[] into, int offset, int value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            into[offset + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -4,15 +4,20 @@ import com.example.mlbackend.model.PredictionResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -21,6 +26,7 @@ import java.util.Map;
 public class ResultStorageService {
 
     private final RestTemplate restTemplate;
+    private final CopyPredictionWriter copyPredictionWriter;
     
     @Value("${supabase.url}")
     private String supabaseUrl;
@@ -35,41 +41,47 @@ public class ResultStorageService {
      * @param result prediction result
      */
     public void storePrediction(PredictionResult result) {
+        storePredictions(List.of(result));
+    }
+
+    /**
+     * Store a batch of prediction results, with COPY when direct database access is enabled
+     * and available, otherwise (or if COPY fails) through the REST API
+     * @param results prediction results
+     */
+    public void storePredictions(List<PredictionResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        if (copyPredictionWriter.isAvailable()) {
+            try {
+                copyPredictionWriter.write(results);
+                log.info("Stored {} prediction results with COPY", results.size());
+                return;
+            } catch (Exception e) {
+                log.warn("COPY of {} prediction results failed, falling back to REST: {}", results.size(), e.getMessage());
+            }
+        }
+        if (results.size() == 1) {
+            postPrediction(results.get(0));
+        } else {
+            postPredictions(results);
+        }
+    }
+
+    /**
+     * Store one prediction result with a REST POST
+     */
+    private void postPrediction(PredictionResult result) {
         try {
             log.debug("Storing prediction for device: {}", result.getDeviceId());
             
-            // Create HTTP headers with Supabase authentication
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("apikey", supabaseKey);
-            headers.set("Authorization", "Bearer " + supabaseKey);
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            
-            // Create request body
-            Map<String, Object> body = new HashMap<>();
-            body.put("timestamp", formatter.format(result.getTimestamp()));
-            body.put("device_id", result.getDeviceId());
-            body.put("is_anomaly", result.isAnomaly());
-            body.put("failure_prob", result.getFailureProbability());
-            body.put("health_index", result.getHealthIndex());
-            
-            // Store part risk information in the RUL field for backward compatibility
-            // Format: "RUL: X, Part at risk: Y"
-            String partRiskInfo = "";
-            if (result.getPartAtRisk() != null && !result.getPartAtRisk().equals("none") && !result.getPartAtRisk().equals("unknown")) {
-                partRiskInfo = String.format("%s (Part at risk: %s)", 
-                        result.getRemainingUsefulLife(), 
-                        result.getPartAtRisk());
-                body.put("rul", partRiskInfo);
-            } else {
-                body.put("rul", result.getRemainingUsefulLife());
-            }
-            
-            // Create HTTP entity with headers and body
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-            
-            // Make REST API call to Supabase
+            // Stream the row into the request body with Supabase authentication headers
             String url = supabaseUrl + "/rest/v1/predictions";
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
+            HttpStatusCode status = restTemplate.execute(url, HttpMethod.POST, request -> {
+                setHeaders(request.getHeaders());
+                writeBody(request, out -> PredictionJsonWriter.writeObject(result, out));
+            }, ClientHttpResponse::getStatusCode);
             
             log.info("Stored prediction result: anomaly={}, failure_prob={}, health_index={}, rul={}, part_at_risk={}", 
                     result.isAnomaly(), 
@@ -78,10 +90,75 @@ public class ResultStorageService {
                     result.getRemainingUsefulLife(),
                     result.getPartAtRisk());
             
-            log.debug("Storage response status: {}", response.getStatusCode());
+            log.debug("Storage response status: {}", status);
         } catch (Exception e) {
             log.error("Error storing prediction result: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to store prediction result", e);
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Store several prediction results with one REST POST of a JSON array (PostgREST bulk insert).
+     * The array is streamed into the request body by PredictionJsonWriter, with no map per row.
+     */
+    private void postPredictions(List<PredictionResult> results) {
+        try {
+            String url = supabaseUrl + "/rest/v1/predictions";
+            HttpStatusCode status = restTemplate.execute(url, HttpMethod.POST, request -> {
+                setHeaders(request.getHeaders());
+                writeBody(request, out -> PredictionJsonWriter.writeArray(results, out));
+            }, ClientHttpResponse::getStatusCode);
+            
+            log.info("Stored {} prediction results", results.size());
+            log.debug("Storage response status: {}", status);
+        } catch (Exception e) {
+            log.error("Error storing {} prediction results: {}", results.size(), e.getMessage(), e);
+            throw new RuntimeException("Failed to store prediction results", e);
+        }
+    }
+
+    /**
+     * Hand the body writer to the request, which calls it with the connection's output stream
+     * once the headers are sent. getBody() would write into an in-memory buffer instead, so the
+     * whole body would be held in memory before anything goes out.
+     */
+    private static void writeBody(ClientHttpRequest request, StreamingHttpOutputMessage.Body body)
+            throws IOException {
+        if (request instanceof StreamingHttpOutputMessage streaming) {
+            streaming.setBody(body);
+        } else {
+            body.writeTo(request.getBody());
+        }
+    }
+
+    private void setHeaders(HttpHeaders headers) {
+        headers.set("apikey", supabaseKey);
+        headers.set("Authorization", "Bearer " + supabaseKey);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Column values of a predictions row
+     */
+    public static Map<String, Object> toRow(PredictionResult result) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("timestamp", formatter.format(result.getTimestamp()));
+        row.put("device_id", result.getDeviceId());
+        row.put("is_anomaly", result.isAnomaly());
+        row.put("failure_prob", result.getFailureProbability());
+        row.put("health_index", result.getHealthIndex());
+        row.put("rul", rulValue(result));
+        return row;
+    }
+
+    /**
+     * Value of the rul column. Part risk information is stored in the RUL field for backward
+     * compatibility: "X (Part at risk: Y)" when a part is at risk, otherwise the RUL number.
+     */
+    public static Object rulValue(PredictionResult result) {
+        if (result.getPartAtRisk() != null && !result.getPartAtRisk().equals("none") && !result.getPartAtRisk().equals("unknown")) {
+            return result.getRemainingUsefulLife() + " (Part at risk: " + result.getPartAtRisk() + ")";
+        }
+        return result.getRemainingUsefulLife();
+    }
+}
@@ -3,6 +3,7 @@ package com.example.mlbackend.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -12,6 +13,8 @@ import java.time.format.DateTimeFormatter;
 @Slf4j
 @Service
 @RequiredArgsConstructor
+// Polling is the default; pipeline.ingestion.mode=notify replaces it with SensorDataListener
+@ConditionalOnProperty(name = "pipeline.ingestion.mode", havingValue = "poll", matchIfMissing = true)
 public class SchedulerService {
 
     private final DataFetcherService dataFetcherService;
@@ -0,0 +1,163 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.model.SensorBatch;
+import com.example.mlbackend.model.SensorData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers the last window that was scored and stored for each device, so a tick where the
+ * device has not reported anything new can skip inference and the duplicate prediction write.
+ *
+ * A window is identified by the timestamp of its latest reading plus a 64-bit hash over
+ * all readings in it (device, timestamps and sensor values). The timestamp alone is not
+ * enough, because late or corrected rows can change a window without moving its end.
+ * Timestamps are hashed as epoch milliseconds and sensor values at float precision, so a
+ * List window and the same readings in a SensorBatch have the same key.
+ * At most max-devices windows are remembered; the least recently seen device is evicted first.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ScoredWindowCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${pipeline.window-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${pipeline.window-cache.max-devices:10000}")
+    private int maxDevices;
+
+    private Map<String, WindowKey> lastScored;
+    private Counter hits;
+    private Counter misses;
+
+    private record WindowKey(long lastTimestamp, long contentHash) {
+    }
+
+    @PostConstruct
+    public void init() {
+        lastScored = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WindowKey> eldest) {
+                return size() > maxDevices;
+            }
+        };
+        hits = Counter.builder("pipeline.window.cache.hits")
+                .description("Ticks skipped because the device's window was already scored")
+                .register(meterRegistry);
+        misses = Counter.builder("pipeline.window.cache.misses")
+                .description("Ticks where the device's window was new and had to be scored")
+                .register(meterRegistry);
+        Gauge.builder("pipeline.window.cache.devices", this, cache -> cache.size())
+                .description("Devices with a remembered scored window")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return true if exactly this window was already scored and stored for its device
+     */
+    public synchronized boolean isUnchanged(List<SensorData> window) {
+        if (!enabled || window.isEmpty()) {
+            return false;
+        }
+        WindowKey previous = lastScored.get(deviceOf(window));
+        if (previous != null && previous.equals(keyOf(window))) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Remember the window once its prediction has been stored
+     */
+    public synchronized void markScored(List<SensorData> window) {
+        if (!enabled || window.isEmpty()) {
+            return;
+        }
+        lastScored.put(deviceOf(window), keyOf(window));
+    }
+
+    /**
+     * @return true if exactly this window of the batch was already scored and stored for its device
+     */
+    public synchronized boolean isUnchanged(SensorBatch batch, int window) {
+        if (!enabled || batch.length(window) == 0) {
+            return false;
+        }
+        WindowKey previous = lastScored.get(batch.windowDeviceId(window));
+        if (previous != null && previous.equals(keyOf(batch, window))) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Remember a window of the batch once its prediction has been stored
+     */
+    public synchronized void markScored(SensorBatch batch, int window) {
+        if (!enabled || batch.length(window) == 0) {
+            return;
+        }
+        lastScored.put(batch.windowDeviceId(window), keyOf(batch, window));
+    }
+
+    public synchronized int size() {
+        return lastScored.size();
+    }
+
+    private static String deviceOf(List<SensorData> window) {
+        return Objects.toString(window.get(window.size() - 1).getDeviceId(), "");
+    }
+
+    private static WindowKey keyOf(List<SensorData> window) {
+        long hash = 0xcbf29ce484222325L;
+        long timestamp = 0;
+        for (SensorData reading : window) {
+            timestamp = reading.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+            hash = mix(hash, Objects.hashCode(reading.getDeviceId()));
+            hash = mix(hash, timestamp);
+            for (double value : reading.getFeatureArray()) {
+                hash = mix(hash, Float.floatToIntBits((float) value));
+            }
+        }
+        return new WindowKey(timestamp, hash);
+    }
+
+    private static WindowKey keyOf(SensorBatch batch, int window) {
+        long hash = 0xcbf29ce484222325L;
+        for (int row = batch.start(window); row < batch.end(window); row++) {
+            hash = mix(hash, Objects.hashCode(batch.deviceId(row)));
+            hash = mix(hash, batch.timestamp(row));
+            for (int f = 0; f < SensorBatch.FEATURES; f++) {
+                hash = mix(hash, Float.floatToIntBits((float) batch.feature(row, f)));
+            }
+        }
+        return new WindowKey(batch.timestamp(batch.latest(window)), hash);
+    }
+
+    private static long mix(long hash, long value) {
+        // FNV-style combine followed by a murmur3 finalizer step for good bit spread
+        long h = (hash ^ value) * 0x100000001b3L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 33);
+    }
+}
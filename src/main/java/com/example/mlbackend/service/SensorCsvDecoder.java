@@ -0,0 +1,271 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.model.SensorBatch;
+import com.example.mlbackend.util.AsciiDoubleParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes PostgREST CSV responses (Accept: text/csv) of sensor_data straight into SensorBatch
+ * columns.
+ *
+ * The response bytes are parsed in place: fields are located by offset, numbers are read
+ * with AsciiDoubleParser from a ByteBuffer wrapping the body, and timestamps are read digit
+ * by digit. No String, map or SensorData is created per row. Device IDs are only turned into
+ * a String when they differ from the previous row's. The header line gives the column order,
+ * so the decoder does not depend on the select list.
+ *
+ * Each body is one device window, newest row first as fetched, and becomes one window in
+ * ascending timestamp order. Values are decoded the same way as SupabaseApiService.decodeBatch.
+ * A missing or unparseable number becomes 0, a missing device ID becomes "unknown", and a
+ * timestamp that is not yyyy-MM-dd[T ]HH:mm:ss[.fff] goes through the same fallback parser
+ * as JSON rows.
+ */
+@Slf4j
+public final class SensorCsvDecoder {
+
+    private static final int IGNORED = -1;
+    private static final int DEVICE_ID = -2;
+    private static final int TIMESTAMP = -3;
+
+    private SensorCsvDecoder() {
+    }
+
+    /**
+     * Decode several device windows into one batch, one window per body
+     */
+    public static SensorBatch decodeBatch(List<byte[]> bodies) {
+        int[][] lines = new int[bodies.size()][];
+        int rows = 0;
+        for (int b = 0; b < bodies.size(); b++) {
+            lines[b] = lineStarts(bodies.get(b));
+            rows += Math.max(0, lines[b].length - 2);
+        }
+        SensorBatch.Builder builder = new SensorBatch.Builder(rows);
+        for (int b = 0; b < bodies.size(); b++) {
+            decodeWindow(bodies.get(b), lines[b], builder);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Append one body's rows to the builder as a new window, oldest first
+     * @return rows added
+     */
+    public static int decodeWindow(byte[] body, SensorBatch.Builder builder) {
+        return decodeWindow(body, lineStarts(body), builder);
+    }
+
+    private static int decodeWindow(byte[] body, int[] lines, SensorBatch.Builder builder) {
+        int lineCount = lines.length - 1;
+        if (lineCount < 2) {
+            return 0;
+        }
+        int[] slots = header(body, lines[0], lineEnd(body, lines, 0));
+        int[] starts = new int[slots.length];
+        int[] ends = new int[slots.length];
+        ByteBuffer buf = ByteBuffer.wrap(body);
+
+        String deviceId = null;
+        int deviceStart = 0;
+        int deviceEnd = 0;
+        int added = 0;
+        builder.startWindow();
+        for (int line = lineCount - 1; line >= 1; line--) {
+            int start = lines[line];
+            int end = lineEnd(body, lines, line);
+            if (start == end) {
+                continue;
+            }
+            try {
+                int fields = split(body, start, end, starts, ends);
+                int row = -1;
+                for (int c = 0; c < fields; c++) {
+                    if (slots[c] == DEVICE_ID) {
+                        if (deviceId == null || !Arrays.equals(body, deviceStart, deviceEnd, body, starts[c], ends[c])) {
+                            deviceId = text(body, starts[c], ends[c]);
+                            deviceStart = starts[c];
+                            deviceEnd = ends[c];
+                        }
+                    }
+                }
+                for (int c = 0; c < fields; c++) {
+                    if (slots[c] == TIMESTAMP) {
+                        row = builder.addRow(deviceId == null || deviceId.isEmpty() ? "unknown" : deviceId,
+                                timestamp(body, starts[c], ends[c]));
+                    }
+                }
+                if (row < 0) {
+                    throw new IllegalArgumentException("CSV response has no timestamp column");
+                }
+                for (int c = 0; c < fields; c++) {
+                    if (slots[c] >= 0) {
+                        double value = AsciiDoubleParser.parse(buf, starts[c], ends[c]);
+                        builder.setFeature(row, slots[c], Double.isNaN(value) ? 0.0 : value);
+                    }
+                }
+                added++;
+            } catch (Exception e) {
+                log.error("Error parsing sensor data CSV record: {}", e.getMessage(), e);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Start offsets of the lines, followed by body.length as the end of the last line.
+     * Line breaks inside quoted fields do not end a line.
+     */
+    private static int[] lineStarts(byte[] body) {
+        int[] starts = new int[16];
+        int count = 0;
+        starts[count++] = 0;
+        boolean quoted = false;
+        for (int i = 0; i < body.length; i++) {
+            byte c = body[i];
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\n' && !quoted && i + 1 < body.length) {
+                if (count + 1 == starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        starts = Arrays.copyOf(starts, count + 1);
+        starts[count] = body.length;
+        return starts;
+    }
+
+    /**
+     * End of the line without its \n or \r\n
+     */
+    private static int lineEnd(byte[] body, int[] lines, int line) {
+        int end = lines[line + 1];
+        if (end > lines[line] && body[end - 1] == '\n') {
+            end--;
+        }
+        if (end > lines[line] && body[end - 1] == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Feature index, DEVICE_ID, TIMESTAMP or IGNORED for each header column
+     */
+    private static int[] header(byte[] body, int start, int end) {
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        int fields = split(body, start, end, starts, ends);
+        int[] slots = new int[fields];
+        for (int c = 0; c < fields; c++) {
+            String name = text(body, starts[c], ends[c]);
+            slots[c] = IGNORED;
+            if ("device_id".equals(name)) {
+                slots[c] = DEVICE_ID;
+            } else if ("timestamp".equals(name)) {
+                slots[c] = TIMESTAMP;
+            } else {
+                for (int f = 0; f < SensorBatch.FEATURES; f++) {
+                    if (SupabaseApiService.FEATURE_COLUMNS[f].equals(name)) {
+                        slots[c] = f;
+                    }
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Field bounds of one line; quoted fields keep their quotes, which the value readers skip
+     * @return number of fields, at most starts.length
+     */
+    private static int split(byte[] body, int start, int end, int[] starts, int[] ends) {
+        int fields = 0;
+        int fieldStart = start;
+        boolean quoted = false;
+        for (int i = start; i <= end && fields < starts.length; i++) {
+            if (i == end || (body[i] == ',' && !quoted)) {
+                starts[fields] = fieldStart;
+                ends[fields++] = i;
+                fieldStart = i + 1;
+            } else if (body[i] == '"') {
+                quoted = !quoted;
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Field as a String, unquoted and with doubled quotes unescaped
+     */
+    private static String text(byte[] body, int start, int end) {
+        if (end - start >= 2 && body[start] == '"' && body[end - 1] == '"') {
+            return new String(body, start + 1, end - start - 2, StandardCharsets.UTF_8).replace("\"\"", "\"");
+        }
+        return new String(body, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * yyyy-MM-dd[T ]HH:mm:ss[.fraction] as epoch milliseconds in UTC, like the JSON path
+     */
+    private static long timestamp(byte[] body, int start, int end) {
+        if (end - start >= 2 && body[start] == '"' && body[end - 1] == '"') {
+            start++;
+            end--;
+        }
+        if (end - start >= 19 && body[start + 4] == '-' && body[start + 7] == '-'
+                && (body[start + 10] == 'T' || body[start + 10] == ' ')
+                && body[start + 13] == ':' && body[start + 16] == ':') {
+            int year = digits(body, start, 4);
+            int month = digits(body, start + 5, 2);
+            int day = digits(body, start + 8, 2);
+            int hour = digits(body, start + 11, 2);
+            int minute = digits(body, start + 14, 2);
+            int second = digits(body, start + 17, 2);
+            int millis = 0;
+            int i = start + 19;
+            if (i < end && body[i] == '.') {
+                int scale = 100;
+                for (i++; i < end && body[i] >= '0' && body[i] <= '9'; i++) {
+                    millis += (body[i] - '0') * scale;
+                    scale /= 10;
+                }
+            }
+            if (i == end && year >= 0 && month >= 0 && day >= 0 && hour >= 0 && hour < 24
+                    && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+                try {
+                    long days = LocalDate.of(year, month, day).toEpochDay();
+                    return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+                } catch (DateTimeException e) {
+                    // Not a valid date, let the fallback parser decide
+                }
+            }
+        }
+        String text = start == end ? null : new String(body, start, end - start, StandardCharsets.UTF_8);
+        return SupabaseApiService.parseTimestamp(text).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * @return the number, or -1 if a byte is not a digit
+     */
+    private static int digits(byte[] body, int start, int width) {
+        int value = 0;
+        for (int i = start; i < start + width; i++) {
+            byte c = body[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
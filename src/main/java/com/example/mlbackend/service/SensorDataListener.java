@@ -0,0 +1,310 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.model.SensorData;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Push-based ingestion (pipeline.ingestion.mode=notify), used instead of SchedulerService polling.
+ *
+ * An insert trigger on sensor_data (src/main/resources/db/sensor_data_notify.sql) sends one
+ * NOTIFY per statement and device, with a JSON payload such as {"device_id": "fridge-1"}.
+ * A dedicated connection LISTENs on that channel. Notifications are debounced per device:
+ * the first one schedules a scoring run debounce-ms later, and the ones arriving before it
+ * runs are folded into it, so a burst of inserts is scored once.
+ *
+ * A scoring run reads only the rows newer than the device's last known reading and appends
+ * them to the device's in-memory window of the last WINDOW_SIZE readings; the first run for
+ * a device reads the full window. The window then goes through DataFetcherService.scoreWindow.
+ *
+ * NOTIFY is not delivered through transaction-mode poolers (Supabase port 6543), so the
+ * listener needs a direct connection; set pipeline.notify.jdbc-url to point it elsewhere,
+ * e.g. at a local Postgres for testing. After a lost connection the listener reconnects with
+ * backoff and rescores every known device, picking up rows inserted while it was away.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "pipeline.ingestion.mode", havingValue = "notify")
+public class SensorDataListener {
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final String COLUMNS = "device_id, timestamp, evaporator_coil_temperature, fridge_temperature, "
+            + "freezer_temperature, air_temperature, humidity, compressor_vibration_x, compressor_vibration_y, "
+            + "compressor_vibration_z, compressor_current, input_voltage, gas_leakage_level";
+
+    private final DataSource supabaseDataSource;
+    private final DataFetcherService dataFetcherService;
+    private final ClusterMembership clusterMembership;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${pipeline.notify.channel:sensor_data_inserted}")
+    private String channel;
+
+    @Value("${pipeline.notify.debounce-ms:500}")
+    private long debounceMs;
+
+    @Value("${pipeline.notify.poll-timeout-ms:1000}")
+    private int pollTimeoutMs;
+
+    @Value("${pipeline.notify.max-devices:10000}")
+    private int maxDevices;
+
+    @Value("${pipeline.notify.jdbc-url:}")
+    private String jdbcUrl;
+
+    @Value("${pipeline.notify.username:postgres}")
+    private String username;
+
+    @Value("${pipeline.notify.password:}")
+    private String password;
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ScheduledExecutorService scorer;
+    private Thread listenerThread;
+    private volatile boolean running;
+
+    // Pending debounced run per device
+    private final Map<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+
+    // Last WINDOW_SIZE readings per device; only touched by the single scorer thread
+    private Map<String, Deque<SensorData>> windows;
+
+    private Counter notifications;
+    private Counter scoringRuns;
+    private Counter reconnects;
+
+    @PostConstruct
+    public void start() {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid notification channel name: " + channel);
+        }
+        dataSource = jdbcUrl.isBlank() ? supabaseDataSource : new DriverManagerDataSource(jdbcUrl, username, password);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        windows = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Deque<SensorData>> eldest) {
+                return size() > maxDevices;
+            }
+        };
+        notifications = Counter.builder("ingestion.notify.notifications")
+                .description("Insert notifications received from sensor_data")
+                .register(meterRegistry);
+        scoringRuns = Counter.builder("ingestion.notify.scoring.runs")
+                .description("Debounced per-device scoring runs")
+                .register(meterRegistry);
+        reconnects = Counter.builder("ingestion.notify.reconnects")
+                .description("Times the LISTEN connection was re-established")
+                .register(meterRegistry);
+
+        scorer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sensor-data-scorer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        listenerThread = new Thread(this::listen, "sensor-data-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        log.info("Push ingestion enabled: listening on channel {} (debounce {} ms)", channel, debounceMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+        if (scorer != null) {
+            scorer.shutdownNow();
+        }
+    }
+
+    private void listen() {
+        long backoffMs = 1000;
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + channel);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Listening for sensor_data notifications on channel {}", channel);
+                backoffMs = 1000;
+                if (reconnecting) {
+                    reconnects.increment();
+                    scorer.execute(this::rescoreKnownDevices);
+                }
+
+                while (running) {
+                    PGNotification[] received = pgConnection.getNotifications(pollTimeoutMs);
+                    if (received == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : received) {
+                        notifications.increment();
+                        String deviceId = deviceIdOf(notification.getParameter());
+                        if (deviceId != null) {
+                            schedule(deviceId);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Lost LISTEN connection ({}), reconnecting in {} ms", e.getMessage(), backoffMs);
+                reconnecting = true;
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+        log.info("Sensor data listener stopped");
+    }
+
+    private String deviceIdOf(String payload) {
+        try {
+            JsonNode deviceId = objectMapper.readTree(payload).get("device_id");
+            if (deviceId == null || deviceId.isNull()) {
+                log.warn("Notification without device_id: {}", payload);
+                return null;
+            }
+            return deviceId.asText();
+        } catch (Exception e) {
+            log.warn("Could not parse notification payload '{}': {}", payload, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Schedule a scoring run for the device unless one is already pending or another node owns it
+     */
+    private void schedule(String deviceId) {
+        if (!clusterMembership.owns(deviceId)) {
+            return;
+        }
+        pending.computeIfAbsent(deviceId, id -> scorer.schedule(() -> {
+            // Removed before scoring, so rows inserted during the run schedule a new one
+            pending.remove(id);
+            score(id);
+        }, debounceMs, TimeUnit.MILLISECONDS));
+    }
+
+    private void rescoreKnownDevices() {
+        for (String deviceId : new ArrayList<>(windows.keySet())) {
+            schedule(deviceId);
+        }
+    }
+
+    private void score(String deviceId) {
+        try {
+            scoringRuns.increment();
+            Deque<SensorData> window = windows.get(deviceId);
+            List<SensorData> rows;
+            if (window == null) {
+                rows = fetchLatest(deviceId);
+                if (rows.isEmpty()) {
+                    return;
+                }
+                // Stored only once it has rows: fetchAfter needs its last reading as the cursor
+                window = new ArrayDeque<>(DataFetcherService.WINDOW_SIZE);
+                windows.put(deviceId, window);
+            } else {
+                rows = fetchAfter(deviceId, window.peekLast().getTimestamp());
+                if (rows.isEmpty()) {
+                    return;
+                }
+            }
+            for (SensorData row : rows) {
+                window.addLast(row);
+                if (window.size() > DataFetcherService.WINDOW_SIZE) {
+                    window.removeFirst();
+                }
+            }
+            log.debug("Read {} new readings of device {}", rows.size(), deviceId);
+            dataFetcherService.scoreWindow(new ArrayList<>(window));
+        } catch (Exception e) {
+            // Dropping the window makes the next run read the full window again
+            windows.remove(deviceId);
+            log.error("Error scoring device {}: {}", deviceId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The device's last WINDOW_SIZE readings, oldest first. Not through SensorHistoryReader: its
+     * SensorBatch timestamps are milliseconds, and the last one is the microsecond-precision cursor
+     * of fetchAfter, which would otherwise return the same row again.
+     */
+    private List<SensorData> fetchLatest(String deviceId) {
+        List<SensorData> latest = new ArrayList<>(jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM sensor_data WHERE device_id = ? ORDER BY timestamp DESC LIMIT ?",
+                (rs, rowNum) -> toSensorData(rs), deviceId, DataFetcherService.WINDOW_SIZE));
+        Collections.reverse(latest);
+        return latest;
+    }
+
+    private List<SensorData> fetchAfter(String deviceId, LocalDateTime after) {
+        return jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM sensor_data WHERE device_id = ? AND timestamp > ? ORDER BY timestamp",
+                (rs, rowNum) -> toSensorData(rs), deviceId, Timestamp.valueOf(after));
+    }
+
+    private static SensorData toSensorData(ResultSet rs) throws SQLException {
+        return SensorData.builder()
+                .deviceId(rs.getString("device_id"))
+                .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+                .feature1(rs.getDouble("evaporator_coil_temperature"))
+                .feature2(rs.getDouble("fridge_temperature"))
+                .feature3(rs.getDouble("freezer_temperature"))
+                .feature4(rs.getDouble("air_temperature"))
+                .feature5(rs.getDouble("humidity"))
+                .feature6(rs.getDouble("compressor_vibration_x"))
+                .feature7(rs.getDouble("compressor_vibration_y"))
+                .feature8(rs.getDouble("compressor_vibration_z"))
+                .feature9(rs.getDouble("compressor_current"))
+                .feature10(rs.getDouble("input_voltage"))
+                .feature11(rs.getDouble("gas_leakage_level"))
+                .build();
+    }
+}
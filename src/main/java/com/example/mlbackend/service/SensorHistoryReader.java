@@ -0,0 +1,159 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.model.SensorBatch;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * JDBC read path for sensor history, for per-device window fetches and backfills.
+ *
+ * Reads go through the pooled Supabase data source. Queries run with autocommit off and a
+ * fetch size, which makes pgjdbc use a server-side cursor and hold only fetchSize rows at a
+ * time. Rows are read by column index straight into the columns of a SensorBatch,
+ * so no SensorData or map is created per row.
+ *
+ * readWindows fetches the last N readings of many devices in one round trip: the device IDs
+ * are unnested and joined LATERAL to an ORDER BY timestamp DESC LIMIT N subquery, which the
+ * (device_id, timestamp DESC) index in db/sensor_data_indexes.sql turns into an index scan per
+ * device that stops after N rows.
+ *
+ * SensorBatch keeps timestamps in milliseconds, while TIMESTAMP columns hold microseconds, so
+ * a timestamp read here is not an exact cursor for "timestamp > ?" queries.
+ *
+ * The static methods take a Connection, so tools outside Spring (SensorReadBenchmark) use
+ * the same queries.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorHistoryReader {
+
+    private static final String COLUMNS = "device_id, timestamp, evaporator_coil_temperature, fridge_temperature, "
+            + "freezer_temperature, air_temperature, humidity, compressor_vibration_x, compressor_vibration_y, "
+            + "compressor_vibration_z, compressor_current, input_voltage, gas_leakage_level";
+
+    private static final String WINDOWS_SQL = "SELECT w.* FROM unnest(?::text[]) AS d(id) "
+            + "CROSS JOIN LATERAL (SELECT " + COLUMNS + " FROM sensor_data "
+            + "WHERE device_id = d.id ORDER BY timestamp DESC LIMIT ?) AS w "
+            + "ORDER BY w.device_id, w.timestamp";
+
+    private static final String HISTORY_SQL = "SELECT " + COLUMNS + " FROM sensor_data "
+            + "WHERE timestamp >= ? AND timestamp < ? ORDER BY device_id, timestamp";
+
+    private static final String DEVICES_SQL = "SELECT DISTINCT device_id FROM sensor_data WHERE timestamp >= ?";
+
+    private final DataSource dataSource;
+
+    @Value("${database.read.fetch-size:5000}")
+    private int fetchSize;
+
+    /**
+     * Last windowSize readings of each device, oldest first within a device
+     */
+    public SensorBatch readWindows(List<String> deviceIds, int windowSize) throws SQLException {
+        long start = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            SensorBatch windows = readWindows(connection, deviceIds, windowSize, fetchSize);
+            log.debug("Read {} readings of {} devices over JDBC in {} ms",
+                    windows.rowCount(), windows.windowCount(), (System.nanoTime() - start) / 1_000_000);
+            return windows;
+        }
+    }
+
+    /**
+     * Stream all readings in [from, to) ordered by device and timestamp, in blocks of blockRows rows.
+     * A device's readings may continue in the next block.
+     */
+    public void streamHistory(LocalDateTime from, LocalDateTime to, int blockRows,
+                              Consumer<SensorBatch> consumer) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            streamHistory(connection, from, to, blockRows, fetchSize, consumer);
+        }
+    }
+
+    /**
+     * Devices with at least one reading at or after since
+     */
+    public List<String> recentDeviceIds(LocalDateTime since) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(DEVICES_SQL)) {
+            statement.setObject(1, since);
+            List<String> deviceIds = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    deviceIds.add(rs.getString(1));
+                }
+            }
+            return deviceIds;
+        }
+    }
+
+    public static SensorBatch readWindows(Connection connection, List<String> deviceIds, int windowSize,
+                                            int fetchSize) throws SQLException {
+        SensorBatch.Builder builder = new SensorBatch.Builder(deviceIds.size() * windowSize);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(WINDOWS_SQL)) {
+            statement.setFetchSize(fetchSize);
+            statement.setArray(1, connection.createArrayOf("text", deviceIds.toArray()));
+            statement.setInt(2, windowSize);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    readRow(rs, builder);
+                }
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return builder.build();
+    }
+
+    public static void streamHistory(Connection connection, LocalDateTime from, LocalDateTime to, int blockRows,
+                                     int fetchSize, Consumer<SensorBatch> consumer) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(HISTORY_SQL)) {
+            statement.setFetchSize(fetchSize);
+            statement.setObject(1, from);
+            statement.setObject(2, to);
+            try (ResultSet rs = statement.executeQuery()) {
+                SensorBatch.Builder builder = new SensorBatch.Builder(blockRows);
+                while (rs.next()) {
+                    readRow(rs, builder);
+                    if (builder.rowCount() == blockRows) {
+                        consumer.accept(builder.build());
+                        builder = new SensorBatch.Builder(blockRows);
+                    }
+                }
+                if (builder.rowCount() > 0) {
+                    consumer.accept(builder.build());
+                }
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void readRow(ResultSet rs, SensorBatch.Builder builder) throws SQLException {
+        LocalDateTime timestamp = rs.getObject(2, LocalDateTime.class);
+        int row = builder.addRow(rs.getString(1), timestamp.toInstant(ZoneOffset.UTC).toEpochMilli());
+        for (int f = 0; f < SensorBatch.FEATURES; f++) {
+            builder.setFeature(row, f, rs.getDouble(3 + f));
+        }
+    }
+}
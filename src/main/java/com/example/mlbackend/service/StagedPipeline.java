@@ -0,0 +1,311 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.model.PredictionResult;
+import com.example.mlbackend.model.SensorBatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fleet pipeline built from explicit stages connected by bounded queues
+ * (pipeline.staged.enabled=true; DataFetcherService.runPipeline then delegates here).
+ *
+ *   fetch -> decode -> preprocess -> infer -> store
+ *
+ * A tick splits the fleet's device IDs into batches of batch-size devices. Each stage has its
+ * own worker threads (pipeline.staged.*-threads) and hands a batch to the next stage through an
+ * ArrayBlockingQueue of queue-capacity batches. So fetching the next batch overlaps with
+ * inference on the current one. Puts block when the next queue is full: a slow Supabase write
+ * stalls the store stage, the queues in front of it fill up, and eventually fetching waits,
+ * so memory stays bounded by the queue capacities.
+ *
+ * fetch reads the last WINDOW_SIZE readings of every device in the batch (one PostgREST GET per
+ * device, as JSON or with supabase.transport.format=csv as CSV, or one JDBC window query per
+ * batch with source=jdbc). decode turns them into one
+ * columnar SensorBatch and drops windows that are unchanged since they were last stored or are
+ * not full yet; from there on no per-reading objects are created.
+ * preprocess builds the normalized sequences, infer scores the whole batch with one forward
+ * pass per network, and store writes the batch with ResultStorageService.storePredictions.
+ *
+ * The devices come from DeviceDirectory.
+ * Time per stage is exported as pipeline.stage.duration and queue depth as pipeline.stage.queue.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StagedPipeline {
+
+    private final DeviceDirectory deviceDirectory;
+    private final SupabaseApiService supabaseApiService;
+    private final SensorHistoryReader sensorHistoryReader;
+    private final DataPreprocessor dataPreprocessor;
+    private final InferenceService inferenceService;
+    private final ResultStorageService resultStorageService;
+    private final ScoredWindowCache scoredWindowCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${pipeline.staged.enabled:false}")
+    private boolean enabled;
+
+    @Value("${pipeline.staged.source:rest}")
+    private String source;
+
+    @Value("${pipeline.staged.batch-size:64}")
+    private int batchSize;
+
+    @Value("${pipeline.staged.queue-capacity:4}")
+    private int queueCapacity;
+
+    @Value("${pipeline.staged.fetch-threads:4}")
+    private int fetchThreads;
+
+    @Value("${pipeline.staged.decode-threads:1}")
+    private int decodeThreads;
+
+    @Value("${pipeline.staged.preprocess-threads:1}")
+    private int preprocessThreads;
+
+    @Value("${pipeline.staged.infer-threads:1}")
+    private int inferThreads;
+
+    @Value("${pipeline.staged.store-threads:2}")
+    private int storeThreads;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private BlockingQueue<Batch> fetchQueue;
+    private Counter devicesScored;
+
+    /**
+     * Work item flowing through the stages; each stage fills in the next field
+     */
+    private static final class Batch {
+        final Tick tick;
+        final List<String> deviceIds;
+        List<List<Map<String, Object>>> rawRows;
+        List<byte[]> rawCsv;
+        SensorBatch readings;
+        INDArray sequences;
+        List<PredictionResult> results;
+
+        Batch(Tick tick, List<String> deviceIds) {
+            this.tick = tick;
+            this.deviceIds = deviceIds;
+        }
+    }
+
+    /**
+     * One run over the fleet; done once every batch has left the pipeline
+     */
+    private static final class Tick {
+        final AtomicInteger pendingBatches;
+        final AtomicInteger scored = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Tick(int batches) {
+            pendingBatches = new AtomicInteger(batches);
+        }
+
+        void finish() {
+            if (pendingBatches.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageFunction {
+        /**
+         * @return true to pass the batch on, false if nothing is left to do for it
+         */
+        boolean process(Batch batch) throws Exception;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        devicesScored = Counter.builder("pipeline.staged.devices.scored")
+                .description("Devices scored and stored by the staged pipeline")
+                .register(meterRegistry);
+
+        // Built back to front, so each stage knows the queue it feeds
+        BlockingQueue<Batch> storeQueue = stage("store", storeThreads, null, this::store);
+        BlockingQueue<Batch> inferQueue = stage("infer", inferThreads, storeQueue, this::infer);
+        BlockingQueue<Batch> preprocessQueue = stage("preprocess", preprocessThreads, inferQueue, this::preprocess);
+        BlockingQueue<Batch> decodeQueue = stage("decode", decodeThreads, preprocessQueue, this::decode);
+        fetchQueue = stage("fetch", fetchThreads, decodeQueue, this::fetch);
+        log.info("Staged pipeline enabled: source={}, batch-size={}, queue-capacity={}, threads fetch={} decode={} "
+                        + "preprocess={} infer={} store={}", source, batchSize, queueCapacity, fetchThreads,
+                decodeThreads, preprocessThreads, inferThreads, storeThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Push every device of the fleet through the stages and wait until all batches are done.
+     * Blocks while the fetch queue is full, so a tick never gets ahead of the pipeline.
+     */
+    public void runTick() throws Exception {
+        long start = System.nanoTime();
+        List<String> deviceIds = deviceDirectory.deviceIds();
+        if (deviceIds.isEmpty()) {
+            log.warn("No devices found, skipping staged pipeline run");
+            return;
+        }
+
+        List<List<String>> partitions = new ArrayList<>();
+        for (int from = 0; from < deviceIds.size(); from += batchSize) {
+            partitions.add(deviceIds.subList(from, Math.min(deviceIds.size(), from + batchSize)));
+        }
+        Tick tick = new Tick(partitions.size());
+        for (List<String> partition : partitions) {
+            fetchQueue.put(new Batch(tick, partition));
+        }
+        tick.done.await();
+        log.info("Staged pipeline scored {} of {} devices in {} batches in {} ms", tick.scored.get(),
+                deviceIds.size(), partitions.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private boolean fetch(Batch batch) throws Exception {
+        if ("jdbc".equals(source)) {
+            batch.readings = sensorHistoryReader.readWindows(batch.deviceIds, DataFetcherService.WINDOW_SIZE);
+            return true;
+        }
+        if (supabaseApiService.isCsvTransport()) {
+            batch.rawCsv = new ArrayList<>(batch.deviceIds.size());
+            for (String deviceId : batch.deviceIds) {
+                batch.rawCsv.add(supabaseApiService.fetchCsvDeviceWindow(deviceId, DataFetcherService.WINDOW_SIZE));
+            }
+            return true;
+        }
+        batch.rawRows = new ArrayList<>(batch.deviceIds.size());
+        for (String deviceId : batch.deviceIds) {
+            batch.rawRows.add(supabaseApiService.fetchRawDeviceWindow(deviceId, DataFetcherService.WINDOW_SIZE));
+        }
+        return true;
+    }
+
+    private boolean decode(Batch batch) {
+        if (batch.rawRows != null) {
+            batch.readings = supabaseApiService.decodeBatch(batch.rawRows);
+            batch.rawRows = null;
+        } else if (batch.rawCsv != null) {
+            batch.readings = supabaseApiService.decodeCsvBatch(batch.rawCsv);
+            batch.rawCsv = null;
+        }
+
+        SensorBatch readings = batch.readings;
+        int[] selected = new int[readings.windowCount()];
+        int count = 0;
+        for (int w = 0; w < readings.windowCount(); w++) {
+            // Batched scoring needs full windows; a new device is scored once it has WINDOW_SIZE readings
+            if (readings.length(w) == DataFetcherService.WINDOW_SIZE && !scoredWindowCache.isUnchanged(readings, w)) {
+                selected[count++] = w;
+            }
+        }
+        if (count < readings.windowCount()) {
+            batch.readings = readings.select(Arrays.copyOf(selected, count));
+        }
+        return count > 0;
+    }
+
+    private boolean preprocess(Batch batch) {
+        batch.sequences = dataPreprocessor.createSequences(batch.readings);
+        return true;
+    }
+
+    private boolean infer(Batch batch) {
+        batch.results = inferenceService.runInference(batch.readings, batch.sequences);
+        batch.sequences = null;
+        return true;
+    }
+
+    private boolean store(Batch batch) {
+        resultStorageService.storePredictions(batch.results);
+        for (int w = 0; w < batch.readings.windowCount(); w++) {
+            scoredWindowCache.markScored(batch.readings, w);
+        }
+        batch.tick.scored.addAndGet(batch.results.size());
+        devicesScored.increment(batch.results.size());
+        return false;
+    }
+
+    /**
+     * Start a stage's workers
+     * @param output queue of the next stage, or null for the last stage
+     * @return the stage's input queue
+     */
+    private BlockingQueue<Batch> stage(String name, int threads, BlockingQueue<Batch> output, StageFunction function) {
+        BlockingQueue<Batch> input = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        Timer timer = Timer.builder("pipeline.stage.duration")
+                .description("Time a pipeline stage spends on one batch")
+                .tag("stage", name)
+                .register(meterRegistry);
+        Gauge.builder("pipeline.stage.queue", input, BlockingQueue::size)
+                .description("Batches waiting for a pipeline stage")
+                .tag("stage", name)
+                .register(meterRegistry);
+
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            Thread worker = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Batch batch;
+                    try {
+                        batch = input.take();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    boolean forward = false;
+                    try {
+                        forward = timer.recordCallable(() -> function.process(batch));
+                    } catch (Exception e) {
+                        log.error("Pipeline stage {} failed for a batch of {} devices: {}",
+                                name, batch.deviceIds.size(), e.getMessage(), e);
+                    }
+                    try {
+                        if (forward && output != null) {
+                            // Blocks while the next stage is behind: this is the backpressure
+                            output.put(batch);
+                        } else {
+                            batch.tick.finish();
+                        }
+                    } catch (InterruptedException e) {
+                        batch.tick.finish();
+                        return;
+                    }
+                }
+            }, "pipeline-" + name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        return input;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.mlbackend.service;
 
+import com.example.mlbackend.model.SensorBatch;
 import com.example.mlbackend.model.SensorData;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -10,17 +11,23 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -36,6 +43,10 @@ public class SupabaseApiService {
     @Value("${supabase.key}")
     private String supabaseKey;
     
+    // json, or csv to fetch device windows as text/csv and decode them with SensorCsvDecoder
+    @Value("${supabase.transport.format:json}")
+    private String transportFormat;
+    
     private static final DateTimeFormatter STANDARD_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
     
@@ -46,64 +57,9 @@ public class SupabaseApiService {
      */
     public List<SensorData> fetchSensorData(int limit) {
         try {
-            // Create HTTP headers with Supabase authentication
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("apikey", supabaseKey);
-            headers.set("Authorization", "Bearer " + supabaseKey);
-            
-            // Create HTTP entity with headers
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-            
-            // Make REST API call to Supabase - use ParameterizedTypeReference to handle the JSON array directly
-            String url = supabaseUrl + "/rest/v1/sensor_data?order=timestamp.desc&limit=" + limit;
-            ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
-                    url, 
-                    HttpMethod.GET, 
-                    entity, 
-                    new ParameterizedTypeReference<List<Map<String, Object>>>() {});
-            
-            List<Map<String, Object>> rawData = response.getBody();
-            List<SensorData> sensorDataList = new ArrayList<>();
-            
-            if (rawData != null) {
-                log.debug("Received {} records from Supabase API", rawData.size());
-                
-                // Convert raw data to SensorData objects
-                for (Map<String, Object> data : rawData) {
-                    try {
-                        // Extract device_id safely (could be null)
-                        String deviceId = data.get("device_id") != null ? 
-                                data.get("device_id").toString() : "unknown";
-                        
-                        // Parse timestamp with multiple format attempts
-                        LocalDateTime timestamp = parseTimestamp(data.get("timestamp"));
-                        
-                        SensorData sensorData = SensorData.builder()
-                                .deviceId(deviceId)
-                                .timestamp(timestamp)
-                                .feature1(parseDouble(data.get("evaporator_coil_temperature")))
-                                .feature2(parseDouble(data.get("fridge_temperature")))
-                                .feature3(parseDouble(data.get("freezer_temperature")))
-                                .feature4(parseDouble(data.get("air_temperature")))
-                                .feature5(parseDouble(data.get("humidity")))
-                                .feature6(parseDouble(data.get("compressor_vibration_x")))
-                                .feature7(parseDouble(data.get("compressor_vibration_y")))
-                                .feature8(parseDouble(data.get("compressor_vibration_z")))
-                                .feature9(parseDouble(data.get("compressor_current")))
-                                .feature10(parseDouble(data.get("input_voltage")))
-                                .feature11(parseDouble(data.get("gas_leakage_level")))
-                                .build();
-                        sensorDataList.add(sensorData);
-                    } catch (Exception e) {
-                        log.error("Error parsing sensor data record: {}", e.getMessage(), e);
-                    }
-                }
-            } else {
-                log.warn("No data received from Supabase API");
-            }
-            
-            // Reverse to get ascending order by timestamp
-            Collections.reverse(sensorDataList);
+            // Make REST API call to Supabase - latest rows of all devices
+            List<Map<String, Object>> rawData = fetchRaw("sensor_data?order=timestamp.desc&limit=" + limit);
+            List<SensorData> sensorDataList = decode(rawData);
             
             log.debug("Fetched {} sensor data records via REST API", sensorDataList.size());
             return sensorDataList;
@@ -113,11 +69,180 @@ public class SupabaseApiService {
             return new ArrayList<>();
         }
     }
+
+    /**
+     * Fetch the latest rows of one device without decoding them
+     * @param deviceId device to fetch
+     * @param limit number of records to fetch
+     * @return raw JSON rows, newest first
+     */
+    public List<Map<String, Object>> fetchRawDeviceWindow(String deviceId, int limit) {
+        return fetchRaw("sensor_data?device_id=eq." + URLEncoder.encode(deviceId, StandardCharsets.UTF_8)
+                + "&order=timestamp.desc&limit=" + limit);
+    }
+
+    /**
+     * @return true if device windows should be fetched with fetchCsvDeviceWindow
+     */
+    public boolean isCsvTransport() {
+        return "csv".equalsIgnoreCase(transportFormat);
+    }
+
+    /**
+     * Fetch the latest rows of one device as PostgREST CSV (Accept: text/csv). Column names
+     * are sent once in the header instead of in every row; decode with decodeCsvBatch.
+     * @param deviceId device to fetch
+     * @param limit number of records to fetch
+     * @return response body, header line then rows newest first
+     */
+    public byte[] fetchCsvDeviceWindow(String deviceId, int limit) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("apikey", supabaseKey);
+        headers.set("Authorization", "Bearer " + supabaseKey);
+        headers.setAccept(List.of(TEXT_CSV));
+        
+        String url = supabaseUrl + "/rest/v1/sensor_data?select=" + CSV_SELECT + "&device_id=eq."
+                + URLEncoder.encode(deviceId, StandardCharsets.UTF_8) + "&order=timestamp.desc&limit=" + limit;
+        ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        return response.getBody() != null ? response.getBody() : new byte[0];
+    }
+
+    /**
+     * Distinct device IDs among the latest rows of sensor_data
+     * @param rows number of latest rows to look at
+     */
+    public List<String> fetchRecentDeviceIds(int rows) {
+        Set<String> deviceIds = new LinkedHashSet<>();
+        for (Map<String, Object> row : fetchRaw("sensor_data?select=device_id&order=timestamp.desc&limit=" + rows)) {
+            if (row.get("device_id") != null) {
+                deviceIds.add(row.get("device_id").toString());
+            }
+        }
+        return new ArrayList<>(deviceIds);
+    }
+
+    /**
+     * GET a PostgREST resource below /rest/v1/
+     */
+    private List<Map<String, Object>> fetchRaw(String pathAndQuery) {
+        // Create HTTP headers with Supabase authentication
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("apikey", supabaseKey);
+        headers.set("Authorization", "Bearer " + supabaseKey);
+        
+        // Create HTTP entity with headers
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+        
+        // Use ParameterizedTypeReference to handle the JSON array directly
+        String url = supabaseUrl + "/rest/v1/" + pathAndQuery;
+        ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
+                url, 
+                HttpMethod.GET, 
+                entity, 
+                new ParameterizedTypeReference<List<Map<String, Object>>>() {});
+        
+        List<Map<String, Object>> rawData = response.getBody();
+        if (rawData == null) {
+            log.warn("No data received from Supabase API");
+            return new ArrayList<>();
+        }
+        log.debug("Received {} records from Supabase API", rawData.size());
+        return rawData;
+    }
+
+    /**
+     * Convert raw rows (newest first, as fetched) to SensorData in ascending timestamp order
+     */
+    public List<SensorData> decode(List<Map<String, Object>> rawData) {
+        List<SensorData> sensorDataList = new ArrayList<>(rawData.size());
+        
+        // Convert raw data to SensorData objects
+        for (Map<String, Object> data : rawData) {
+            try {
+                // Extract device_id safely (could be null)
+                String deviceId = data.get("device_id") != null ? 
+                        data.get("device_id").toString() : "unknown";
+                
+                // Parse timestamp with multiple format attempts
+                LocalDateTime timestamp = parseTimestamp(data.get("timestamp"));
+                
+                SensorData sensorData = SensorData.builder()
+                        .deviceId(deviceId)
+                        .timestamp(timestamp)
+                        .feature1(parseDouble(data.get("evaporator_coil_temperature")))
+                        .feature2(parseDouble(data.get("fridge_temperature")))
+                        .feature3(parseDouble(data.get("freezer_temperature")))
+                        .feature4(parseDouble(data.get("air_temperature")))
+                        .feature5(parseDouble(data.get("humidity")))
+                        .feature6(parseDouble(data.get("compressor_vibration_x")))
+                        .feature7(parseDouble(data.get("compressor_vibration_y")))
+                        .feature8(parseDouble(data.get("compressor_vibration_z")))
+                        .feature9(parseDouble(data.get("compressor_current")))
+                        .feature10(parseDouble(data.get("input_voltage")))
+                        .feature11(parseDouble(data.get("gas_leakage_level")))
+                        .build();
+                sensorDataList.add(sensorData);
+            } catch (Exception e) {
+                log.error("Error parsing sensor data record: {}", e.getMessage(), e);
+            }
+        }
+        
+        // Reverse to get ascending order by timestamp
+        Collections.reverse(sensorDataList);
+        return sensorDataList;
+    }
+    
+    // Sensor columns in SensorBatch / SensorData.getFeatureArray() order
+    static final String[] FEATURE_COLUMNS = {
+            "evaporator_coil_temperature", "fridge_temperature", "freezer_temperature", "air_temperature",
+            "humidity", "compressor_vibration_x", "compressor_vibration_y", "compressor_vibration_z",
+            "compressor_current", "input_voltage", "gas_leakage_level"
+    };
+
+    private static final String CSV_SELECT = "device_id,timestamp," + String.join(",", FEATURE_COLUMNS);
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    /**
+     * Decode several devices' raw rows (each list newest first, as fetched) straight into one
+     * columnar batch, one window per list in ascending timestamp order, without SensorData objects
+     */
+    public SensorBatch decodeBatch(List<List<Map<String, Object>>> rawWindows) {
+        int rows = 0;
+        for (List<Map<String, Object>> rawData : rawWindows) {
+            rows += rawData.size();
+        }
+        SensorBatch.Builder builder = new SensorBatch.Builder(rows);
+        for (List<Map<String, Object>> rawData : rawWindows) {
+            builder.startWindow();
+            for (int i = rawData.size() - 1; i >= 0; i--) {
+                Map<String, Object> data = rawData.get(i);
+                try {
+                    String deviceId = data.get("device_id") != null ? data.get("device_id").toString() : "unknown";
+                    long timestamp = parseTimestamp(data.get("timestamp")).toInstant(ZoneOffset.UTC).toEpochMilli();
+                    int row = builder.addRow(deviceId, timestamp);
+                    for (int f = 0; f < SensorBatch.FEATURES; f++) {
+                        builder.setFeature(row, f, parseDouble(data.get(FEATURE_COLUMNS[f])));
+                    }
+                } catch (Exception e) {
+                    log.error("Error parsing sensor data record: {}", e.getMessage(), e);
+                }
+            }
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Decode several devices' CSV responses (from fetchCsvDeviceWindow) into one columnar batch,
+     * one window per response in ascending timestamp order
+     */
+    public SensorBatch decodeCsvBatch(List<byte[]> bodies) {
+        return SensorCsvDecoder.decodeBatch(bodies);
+    }
     
     /**
      * Parse timestamp with multiple format attempts
      */
-    private LocalDateTime parseTimestamp(Object timestampObj) {
+    static LocalDateTime parseTimestamp(Object timestampObj) {
         if (timestampObj == null) {
             log.warn("Timestamp is null, using current time");
             return LocalDateTime.now();
@@ -0,0 +1,233 @@
+package com.example.mlbackend.service;
+
+import com.example.mlbackend.model.PredictionResult;
+import com.example.mlbackend.model.SensorBatch;
+import com.example.mlbackend.model.SensorData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fleet pipeline that runs every device's I/O on its own virtual thread
+ * (pipeline.virtual-threads.enabled=true; DataFetcherService.runPipeline then delegates here).
+ *
+ * A tick opens a virtual-thread-per-task executor and submits one task per device: fetch the
+ * device's window over REST, hand it to the scoring pool, then store the prediction. Blocking
+ * fetches and writes park the virtual thread instead of holding a platform thread, so the
+ * whole fleet fans out at once without sizing an I/O pool. The executor is closed with
+ * try-with-resources, which waits for every device task: a tick cannot leak work into the
+ * next one (structured concurrency without the preview StructuredTaskScope API).
+ *
+ * Scoring is CPU-bound and runs on a separate pool of scoring-threads platform threads
+ * (default: one per core), so thousands of parked I/O tasks never compete with the models
+ * for carrier threads. The networks serialize concurrent output calls themselves; the pool
+ * mostly parallelizes preprocessing and the forests.
+ *
+ * max-in-flight caps concurrent device tasks so a large fleet does not open one connection
+ * per device against Supabase at the same moment; it is a limit, not a pool.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VirtualThreadPipeline {
+
+    private final DeviceDirectory deviceDirectory;
+    private final SupabaseApiService supabaseApiService;
+    private final InferenceService inferenceService;
+    private final ResultStorageService resultStorageService;
+    private final ScoredWindowCache scoredWindowCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${pipeline.virtual-threads.enabled:false}")
+    private boolean enabled;
+
+    @Value("${pipeline.virtual-threads.scoring-threads:0}")
+    private int scoringThreads;
+
+    @Value("${pipeline.virtual-threads.max-in-flight:1000}")
+    private int maxInFlight;
+
+    private ExecutorService scoringPool;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private Counter devicesScored;
+    private Timer tickTimer;
+
+    /**
+     * Blocking read of one device's window, oldest reading first; empty if there is nothing to score
+     */
+    @FunctionalInterface
+    public interface Fetch {
+        List<SensorData> fetch(String deviceId) throws Exception;
+    }
+
+    /**
+     * CPU-bound scoring of one window
+     */
+    @FunctionalInterface
+    public interface Score {
+        PredictionResult score(List<SensorData> window) throws Exception;
+    }
+
+    /**
+     * Blocking write of one device's prediction
+     */
+    @FunctionalInterface
+    public interface Store {
+        void store(List<SensorData> window, PredictionResult result) throws Exception;
+    }
+
+    /**
+     * Outcome of one fan-out
+     * @param peakInFlight most device tasks fetching, scoring or storing at the same time
+     */
+    public record TickStats(int devices, int scored, int failed, int peakInFlight, long nanos) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        int threads = scoringThreads > 0 ? scoringThreads : Runtime.getRuntime().availableProcessors();
+        scoringPool = newScoringPool(threads);
+        devicesScored = Counter.builder("pipeline.virtual.devices.scored")
+                .description("Devices scored and stored by the virtual-thread pipeline")
+                .register(meterRegistry);
+        tickTimer = Timer.builder("pipeline.virtual.tick")
+                .description("Time to fan out, score and store the whole fleet")
+                .register(meterRegistry);
+        Gauge.builder("pipeline.virtual.in.flight", inFlight, AtomicInteger::get)
+                .description("Device tasks currently fetching, scoring or storing")
+                .register(meterRegistry);
+        log.info("Virtual-thread pipeline enabled: scoring-threads={}, max-in-flight={}", threads, maxInFlight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scoringPool != null) {
+            scoringPool.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Fetch, score and store every device of the fleet; returns when all device tasks are done
+     */
+    public void runTick() throws Exception {
+        List<String> deviceIds = deviceDirectory.deviceIds();
+        if (deviceIds.isEmpty()) {
+            log.warn("No devices found, skipping virtual-thread pipeline run");
+            return;
+        }
+
+        TickStats stats;
+        try (ExecutorService io = Executors.newVirtualThreadPerTaskExecutor()) {
+            stats = fanOut(deviceIds, io, scoringPool, maxInFlight, inFlight,
+                    this::fetch, inferenceService::runInference, this::store);
+        }
+        tickTimer.record(stats.nanos(), TimeUnit.NANOSECONDS);
+        devicesScored.increment(stats.scored());
+        log.info("Virtual-thread pipeline scored {} of {} devices ({} failed, peak {} in flight) in {} ms",
+                stats.scored(), stats.devices(), stats.failed(), stats.peakInFlight(), stats.nanos() / 1_000_000);
+    }
+
+    private List<SensorData> fetch(String deviceId) {
+        List<SensorData> window;
+        if (supabaseApiService.isCsvTransport()) {
+            SensorBatch batch = supabaseApiService.decodeCsvBatch(
+                    List.of(supabaseApiService.fetchCsvDeviceWindow(deviceId, DataFetcherService.WINDOW_SIZE)));
+            window = batch.windowCount() == 0 ? List.of() : batch.toSensorData(0);
+        } else {
+            window = supabaseApiService.decode(
+                    supabaseApiService.fetchRawDeviceWindow(deviceId, DataFetcherService.WINDOW_SIZE));
+        }
+        return window.isEmpty() || scoredWindowCache.isUnchanged(window) ? List.of() : window;
+    }
+
+    private void store(List<SensorData> window, PredictionResult result) {
+        resultStorageService.storePrediction(result);
+        scoredWindowCache.markScored(window);
+    }
+
+    /**
+     * Run fetch -> score -> store for every device, each device on its own task of io, with
+     * scoring handed off to scoringPool. Waits for all devices before returning; a failing
+     * device is logged and counted without affecting the others.
+     * Shared with VirtualThreadLoadTest, which drives it with simulated I/O.
+     * @param inFlight counter of device tasks currently running, for gauges
+     */
+    public static TickStats fanOut(List<String> deviceIds, ExecutorService io, ExecutorService scoringPool,
+                                   int maxInFlight, AtomicInteger inFlight,
+                                   Fetch fetch, Score score, Store store) throws InterruptedException {
+        long start = System.nanoTime();
+        Semaphore permits = new Semaphore(Math.max(1, maxInFlight));
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger scored = new AtomicInteger();
+        int failed = 0;
+
+        List<Future<?>> tasks = new ArrayList<>(deviceIds.size());
+        for (String deviceId : deviceIds) {
+            tasks.add(io.submit(() -> {
+                permits.acquire();
+                peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    List<SensorData> window = fetch.fetch(deviceId);
+                    if (window.isEmpty()) {
+                        return null;
+                    }
+                    // The I/O task parks here while the window is scored on a platform thread
+                    PredictionResult result = scoringPool.submit(() -> score.score(window)).get();
+                    store.store(window, result);
+                    scored.incrementAndGet();
+                    return null;
+                } finally {
+                    inFlight.decrementAndGet();
+                    permits.release();
+                }
+            }));
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                tasks.get(i).get();
+            } catch (ExecutionException e) {
+                failed++;
+                Throwable cause = e.getCause() instanceof ExecutionException ? e.getCause().getCause() : e.getCause();
+                log.error("Device {} failed: {}", deviceIds.get(i), cause.getMessage(), cause);
+            }
+        }
+        return new TickStats(deviceIds.size(), scored.get(), failed, peak.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Fixed pool of named daemon platform threads for CPU-bound scoring
+     */
+    public static ExecutorService newScoringPool(int threads) {
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "scoring-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
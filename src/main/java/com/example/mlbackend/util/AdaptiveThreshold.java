@@ -0,0 +1,67 @@
+package com.example.mlbackend.util;
+
+/**
+ * Anomaly threshold learned from one device's reconstruction errors.
+ *
+ * The threshold is the given percentile of the device's errors, kept in a KLL sketch. Until
+ * warmupSamples errors have been seen, the caller's global threshold is used instead, and
+ * every error is learned as is, so a device whose normal error level sits above the global
+ * threshold converges to its own, higher threshold.
+ *
+ * After warm-up, an error above outlierFactor times the current threshold is not learned.
+ * That keeps a gross, lasting fault from becoming the device's normal, while errors a little
+ * above the threshold (the top percent of normal noise) still count and let it move up.
+ *
+ * Not thread safe; DeviceThresholdService locks each device's instance.
+ */
+public final class AdaptiveThreshold {
+
+    private final KllSketch sketch;
+    private final double quantile;
+    private final long warmupSamples;
+    private final double outlierFactor;
+
+    /**
+     * @param k sketch accuracy parameter (see KllSketch)
+     * @param percentile percentile of the device's errors to use as its threshold, e.g. 99.0
+     * @param warmupSamples errors to learn before the device's own threshold is used
+     * @param outlierFactor errors above this multiple of the threshold are not learned after warm-up
+     */
+    public AdaptiveThreshold(int k, double percentile, long warmupSamples, double outlierFactor) {
+        this.sketch = new KllSketch(k);
+        this.quantile = percentile / 100.0;
+        this.warmupSamples = warmupSamples;
+        this.outlierFactor = outlierFactor;
+    }
+
+    public boolean warmedUp() {
+        return sketch.count() >= warmupSamples;
+    }
+
+    /**
+     * The device's threshold, or globalThreshold while it is warming up
+     */
+    public double threshold(double globalThreshold) {
+        return warmedUp() ? sketch.quantile(quantile) : globalThreshold;
+    }
+
+    /**
+     * Learn from an error after it has been judged against threshold
+     * @return false if the error was skipped as an outlier
+     */
+    public boolean observe(double error, double threshold) {
+        if (warmedUp() && error > outlierFactor * threshold) {
+            return false;
+        }
+        sketch.update(error);
+        return true;
+    }
+
+    public long count() {
+        return sketch.count();
+    }
+
+    public long estimatedBytes() {
+        return sketch.estimatedBytes();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.mlbackend.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 of model artifacts, as recorded in model/manifest.properties by TrainingOrchestrator
+ * and checked by ModelLoader when it loads an artifact.
+ */
+public final class ArtifactDigest {
+
+    private ArtifactDigest() {
+    }
+
+    /**
+     * Lowercase hex SHA-256 of the file's contents
+     */
+    public static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.mlbackend.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses decimal numbers straight from ASCII bytes without creating a String per field.
+ *
+ * Plain decimals with up to 18 significant digits and a small exponent take the exact
+ * fast path (the mantissa and the power of ten are both exactly representable, so one
+ * multiplication or division gives the correctly rounded result). Anything else falls
+ * back to Double.parseDouble, so results always match the JDK parser.
+ */
+public final class AsciiDoubleParser {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private AsciiDoubleParser() {
+    }
+
+    /**
+     * Parse the bytes in [start, end) of the buffer (absolute positions).
+     * Surrounding spaces and quotes are ignored, an empty field is NaN and the
+     * booleans true/false (any case) are read as 1 and 0.
+     */
+    public static double parse(ByteBuffer buf, int start, int end) {
+        while (start < end && isPadding(buf.get(start))) {
+            start++;
+        }
+        while (end > start && isPadding(buf.get(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return Double.NaN;
+        }
+
+        int i = start;
+        boolean negative = false;
+        byte c = buf.get(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        for (; i < end; i++) {
+            c = buf.get(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            sawDigit = true;
+            if (digits < 18) {
+                if (mantissa != 0 || c != '0') {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                }
+            } else {
+                return fallback(buf, start, end);
+            }
+        }
+        if (i < end && buf.get(i) == '.') {
+            i++;
+            for (; i < end; i++) {
+                c = buf.get(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                sawDigit = true;
+                if (digits < 18) {
+                    if (mantissa != 0 || c != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                    exponent--;
+                } else {
+                    return fallback(buf, start, end);
+                }
+            }
+        }
+        if (!sawDigit) {
+            return parseWord(buf, start, end);
+        }
+        if (i < end && (buf.get(i) == 'e' || buf.get(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+                negativeExponent = buf.get(i) == '-';
+                i++;
+            }
+            int explicit = 0;
+            int expDigits = 0;
+            for (; i < end; i++) {
+                c = buf.get(i);
+                if (c < '0' || c > '9' || expDigits > 4) {
+                    return fallback(buf, start, end);
+                }
+                explicit = explicit * 10 + (c - '0');
+                expDigits++;
+            }
+            if (expDigits == 0) {
+                return fallback(buf, start, end);
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (i != end) {
+            return fallback(buf, start, end);
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            return fallback(buf, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isPadding(byte c) {
+        return c == ' ' || c == '\t' || c == '"' || c == '\r';
+    }
+
+    private static double parseWord(ByteBuffer buf, int start, int end) {
+        int length = end - start;
+        if (length == 4 && equalsIgnoreCase(buf, start, "true")) {
+            return 1.0;
+        }
+        if (length == 5 && equalsIgnoreCase(buf, start, "false")) {
+            return 0.0;
+        }
+        return fallback(buf, start, end);
+    }
+
+    private static boolean equalsIgnoreCase(ByteBuffer buf, int start, String word) {
+        for (int k = 0; k < word.length(); k++) {
+            if (Character.toLowerCase((char) buf.get(start + k)) != word.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double fallback(ByteBuffer buf, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buf.get(start, bytes);
+        try {
+            return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.mlbackend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent-hash ring mapping keys (device IDs) to members (backend nodes).
+ *
+ * Every member is placed on a 64-bit ring at virtualNodes points, hashed from "member#i".
+ * A key belongs to the first point at or after its own hash, wrapping around. Adding or
+ * removing a member only moves the keys next to that member's points, about 1/n of them,
+ * and more virtual nodes spread each member's share more evenly.
+ *
+ * Points are kept in a sorted long[] with a parallel owner index, so a lookup is one binary
+ * search. Hashes are FNV-1a over UTF-8 with a final avalanche step: stable across JVMs and
+ * restarts, so every node computes the same ring from the same member list.
+ */
+public final class ConsistentHashRing {
+
+    private final String[] members;
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        // Sorted and de-duplicated, so equal member sets give identical rings
+        this.members = new TreeSet<>(members).toArray(new String[0]);
+        int replicas = Math.max(1, virtualNodes);
+        long[] hashes = new long[this.members.length * replicas];
+        for (int m = 0; m < this.members.length; m++) {
+            for (int v = 0; v < replicas; v++) {
+                hashes[m * replicas + v] = hash(this.members[m] + "#" + v);
+            }
+        }
+        // Sort point indices by hash
+        Integer[] order = new Integer[hashes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        points = new long[order.length];
+        owners = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = order[i] / replicas;
+        }
+    }
+
+    /**
+     * @return the member owning key, or null if the ring is empty
+     */
+    public String owner(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return members[owners[index == points.length ? 0 : index]];
+    }
+
+    public List<String> members() {
+        return List.of(members);
+    }
+
+    public boolean isEmpty() {
+        return members.length == 0;
+    }
+
+    /**
+     * Keys of the given list owned by member
+     */
+    public List<String> ownedBy(String member, List<String> keys) {
+        List<String> owned = new ArrayList<>();
+        for (String key : keys) {
+            if (member.equals(owner(key))) {
+                owned.add(key);
+            }
+        }
+        return owned;
+    }
+
+    public static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        // MurmurHash3 fmix64, so similar keys ("node-1#3", "node-1#4") land far apart
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
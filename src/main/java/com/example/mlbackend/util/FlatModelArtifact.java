@@ -0,0 +1,141 @@
+package com.example.mlbackend.util;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Flat, memory-mappable artifact format for DL4J networks.
+ *
+ * Layout (little endian):
+ * <pre>
+ *   int    magic          "FMA1"
+ *   int    version
+ *   int    configLength   bytes of the UTF-8 MultiLayerConfiguration JSON
+ *   long   paramCount     number of float32 parameters
+ *   long   paramOffset    file offset of the parameter blob (64-byte aligned)
+ *   byte[] config
+ *   float[] params
+ * </pre>
+ *
+ * Only the inference parameters are stored (no updater state), so the file is
+ * meant for serving, not for resuming training.
+ */
+public final class FlatModelArtifact {
+
+    public static final String EXTENSION = ".flat";
+
+    private static final int MAGIC = 0x31414D46; // "FMA1" read as little endian
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+    private static final int ALIGNMENT = 64;
+
+    private FlatModelArtifact() {
+    }
+
+    /**
+     * Returns the flat artifact that sits next to a zip model file,
+     * e.g. model/part_risk.model -> model/part_risk.flat
+     */
+    public static File siblingOf(File modelFile) {
+        String name = modelFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(modelFile.getParentFile(), base + EXTENSION);
+    }
+
+    /**
+     * Write the network configuration and parameters to a flat artifact.
+     * The file is written to a temporary sibling first and moved into place,
+     * so a concurrent reader never maps a half-written file.
+     */
+    public static void write(MultiLayerNetwork model, File target) throws IOException {
+        byte[] config = model.getLayerWiseConfigurations().toJson().getBytes(StandardCharsets.UTF_8);
+        INDArray params = model.params();
+        long paramCount = params.length();
+        long paramOffset = align(HEADER_SIZE + config.length);
+
+        ByteBuffer header = ByteBuffer.allocate((int) paramOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(config.length);
+        header.putLong(paramCount);
+        header.putLong(paramOffset);
+        header.put(config);
+        header.position(0);
+
+        Path targetPath = target.toPath();
+        Path tmp = targetPath.resolveSibling(target.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            MappedByteBuffer blob = channel.map(FileChannel.MapMode.READ_WRITE, paramOffset, paramCount * Float.BYTES);
+            blob.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(params.toFloatVector());
+            blob.force();
+        }
+        Files.move(tmp, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map a flat artifact and rebuild the network around its parameter blob.
+     * ND4J copies the parameters from the mapped region into its own buffer in
+     * one bulk read; there is no zip inflation and no Java deserialization.
+     */
+    public static MultiLayerNetwork read(File source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a flat model artifact: " + source);
+            }
+            int version = mapped.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported flat model version " + version + " in " + source);
+            }
+            int configLength = mapped.getInt(8);
+            long paramCount = mapped.getLong(12);
+            long paramOffset = mapped.getLong(20);
+            if (paramOffset + paramCount * Float.BYTES > channel.size()) {
+                throw new IOException("Truncated flat model artifact: " + source);
+            }
+
+            byte[] config = new byte[configLength];
+            mapped.get(HEADER_SIZE, config);
+            MultiLayerConfiguration conf = MultiLayerConfiguration.fromJson(new String(config, StandardCharsets.UTF_8));
+
+            ByteBuffer blob = mapped.slice((int) paramOffset, (int) (paramCount * Float.BYTES))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            DataBuffer buffer = Nd4j.createBuffer(blob, DataType.FLOAT, (int) paramCount);
+            INDArray params = Nd4j.create(buffer, new long[] {1, paramCount});
+            if (conf.getDataType() != null && conf.getDataType() != DataType.FLOAT) {
+                params = params.castTo(conf.getDataType());
+            }
+
+            MultiLayerNetwork network = new MultiLayerNetwork(conf);
+            network.init(params, false);
+            return network;
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
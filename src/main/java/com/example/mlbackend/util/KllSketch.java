@@ -0,0 +1,237 @@
+package com.example.mlbackend.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Mergeable quantile sketch (KLL, Karnin-Lang-Liberty) for streams of doubles.
+ *
+ * Values are kept in a stack of compactors. An item on level h stands for 2^h input values.
+ * When the sketch is over capacity, the lowest full level is sorted, and every other item
+ * (starting at a random offset) is promoted to the level above, which halves that level.
+ * Level capacities shrink geometrically towards the bottom, so memory is O(k log(n / k))
+ * and the rank error is about 1.7 / k with high probability (k = 200 gives roughly 1%).
+ *
+ * Sketches built on separate shards can be merged, and the result is as accurate as
+ * a single sketch over all values. Not thread safe; use one sketch per thread and merge.
+ */
+public final class KllSketch {
+
+    public static final int DEFAULT_K = 200;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_LEVEL_CAPACITY = 8;
+
+    private final int k;
+    private final Random random;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        this(k, new Random());
+    }
+
+    public KllSketch(int k, Random random) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_LEVEL_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        this.random = random;
+        levels[0] = new double[k];
+    }
+
+    /**
+     * Add one value; NaN is ignored
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        if (sizes[0] >= capacity(0)) {
+            compress();
+        }
+    }
+
+    /**
+     * Fold another sketch into this one; the other sketch is left unchanged
+     */
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        count += other.count;
+        for (int h = 0; h < other.sizes.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        compress();
+    }
+
+    /**
+     * Approximate value at the given quantile (0 = minimum, 1 = maximum)
+     */
+    public double quantile(double q) {
+        if (q < 0.0 || q > 1.0) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q == 0.0) {
+            return min;
+        }
+        if (q == 1.0) {
+            return max;
+        }
+
+        int retained = retainedItems();
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int h = 0; h < sizes.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                n++;
+            }
+        }
+        Integer[] order = new Integer[retained];
+        for (int i = 0; i < retained; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        long totalWeight = 0;
+        for (long w : weights) {
+            totalWeight += w;
+        }
+        double target = q * totalWeight;
+        long cumulative = 0;
+        for (int i : order) {
+            cumulative += weights[i];
+            if (cumulative >= target) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    /**
+     * Number of values currently stored, i.e. the memory footprint in doubles
+     */
+    public int retainedItems() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Approximate heap footprint in bytes, including allocated but unused level capacity
+     */
+    public long estimatedBytes() {
+        long bytes = 64 + 16L * levels.length + 4L * sizes.length;
+        for (double[] items : levels) {
+            if (items != null) {
+                bytes += 16 + 8L * items.length;
+            }
+        }
+        return bytes;
+    }
+
+    private void append(int level, double value) {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+        }
+        double[] items = levels[level];
+        if (items == null) {
+            items = levels[level] = new double[Math.max(capacity(level), MIN_LEVEL_CAPACITY)];
+        } else if (sizes[level] == items.length) {
+            items = levels[level] = Arrays.copyOf(items, items.length * 2);
+        }
+        items[sizes[level]++] = value;
+    }
+
+    /**
+     * Capacity of a level; the top level gets k and each level below 2/3 of the one above it
+     */
+    private int capacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            total += capacity(h);
+        }
+        return total;
+    }
+
+    private void compress() {
+        while (retainedItems() > totalCapacity()) {
+            for (int h = 0; h < sizes.length; h++) {
+                if (sizes[h] >= capacity(h)) {
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Promote every other sorted item of a level to the level above; an odd item out stays
+     */
+    private void compact(int level) {
+        double[] items = levels[level];
+        int size = sizes[level];
+        Arrays.sort(items, 0, size);
+        int keep = size % 2;
+        int offset = random.nextBoolean() ? 1 : 0;
+        // The odd item out (the largest) stays on this level
+        for (int i = offset; i < size - keep; i += 2) {
+            append(level + 1, items[i]);
+        }
+        if (keep == 1) {
+            items[0] = items[size - 1];
+        }
+        sizes[level] = keep;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.mlbackend.util;
+
+import java.util.Arrays;
+
+/**
+ * Input vector of the part risk model, shared by PartRiskTrainer and InferenceService.
+ *
+ * The model takes the 12 COLUMNS of part_risk_data.csv, in that order. Three of them are
+ * derived from the sensor stream by RollingFeatures, with the same LAYOUT and WINDOW on both
+ * sides: the engine reads a row in COLUMNS order, so the trainer feeds it CSV rows as they
+ * are and serving feeds it readings mapped with fromSensorData.
+ *
+ * fromSensorData follows the CSV-to-sensor_data mapping of PostgrestStub. sensor_data has no
+ * refrigerant pressure or energy meter, so those columns are 0 at serving time. For the same
+ * reason the layout has no pressure channel, and pressure_trend is 0 in training too; the
+ * compressor runs while current_compressor is above COMPRESSOR_ON_ABOVE on both sides.
+ *
+ * The trainer writes LAYOUT_FILE next to the model. Models without it predate this layout and
+ * were trained on the 11 sensors plus their average vibration; serving keeps feeding them
+ * legacy() until the model and its normalizer are retrained.
+ */
+public final class PartRiskFeatures {
+
+    public static final String[] COLUMNS = {
+            "temperature_evaporator",
+            "temperature_internal",
+            "ambient_temperature",
+            "humidity_internal",
+            "pressure_refrigerant",
+            "current_compressor",
+            "vibration_level",
+            "gas_leak_level",
+            "compressor_cycle_time",
+            "energy_consumption",
+            "temperature_gradient",
+            "pressure_trend"
+    };
+
+    public static final int COMPRESSOR_CYCLE_TIME = 8;
+    public static final int TEMPERATURE_GRADIENT = 10;
+    public static final int PRESSURE_TREND = 11;
+
+    // Amperes; the compressor counts as running above this current
+    public static final double COMPRESSOR_ON_ABOVE = 1.0;
+
+    // Readings covered by the rolling statistics
+    public static final int WINDOW = 30;
+
+    // Written next to part_risk.model: columns=<COLUMNS joined by commas>, derived-features=engine|csv
+    public static final String LAYOUT_FILE = "part_risk_features.properties";
+
+    // temperature_internal is the temperature, current_compressor the compressor, vibration_level the vibration
+    public static final RollingFeatures.Layout LAYOUT = new RollingFeatures.Layout(
+            COLUMNS.length, 1, -1, 5, COMPRESSOR_ON_ABOVE, new int[] {6});
+
+    private PartRiskFeatures() {
+    }
+
+    /**
+     * Map a reading in SensorData.getFeatureArray() order to COLUMNS order; the derived columns are left 0
+     * @return into
+     */
+    public static double[] fromSensorData(double[] sensor, double[] into) {
+        Arrays.fill(into, 0);
+        into[0] = sensor[0];  // evaporator_coil_temperature
+        into[1] = sensor[2];  // freezer_temperature
+        into[2] = sensor[1];  // fridge_temperature
+        into[3] = sensor[4];  // humidity
+        into[5] = sensor[8];  // compressor_current
+        into[6] = (sensor[5] + sensor[6] + sensor[7]) / 3.0; // average of the vibration axes
+        into[7] = sensor[10]; // gas_leakage_level
+        return into;
+    }
+
+    /**
+     * Input of a part risk model trained before COLUMNS (no LAYOUT_FILE): the 11 sensors in
+     * SensorData.getFeatureArray() order plus their average vibration
+     */
+    public static double[] legacy(double[] sensor) {
+        double[] features = Arrays.copyOf(sensor, COLUMNS.length);
+        features[11] = (sensor[5] + sensor[6] + sensor[7]) / 3.0;
+        return features;
+    }
+
+    /**
+     * Put the engine's derived features (RollingFeatures.NAMES order) into their COLUMNS positions
+     * @return columns
+     */
+    public static double[] withDerived(double[] columns, double[] derived) {
+        columns[COMPRESSOR_CYCLE_TIME] = derived[RollingFeatures.COMPRESSOR_CYCLE_TIME];
+        columns[TEMPERATURE_GRADIENT] = derived[RollingFeatures.TEMPERATURE_GRADIENT];
+        columns[PRESSURE_TREND] = derived[RollingFeatures.PRESSURE_TREND];
+        return columns;
+    }
+}
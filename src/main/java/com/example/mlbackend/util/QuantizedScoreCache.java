@@ -0,0 +1,177 @@
+package com.example.mlbackend.util;
+
+/**
+ * Bounded memo cache for model scores, keyed by a quantized feature vector.
+ *
+ * Each feature is mapped to the bucket floor(value / width) of its own bucket width, and two
+ * vectors that fall into the same buckets share one cached score. A width of 0 or less keys
+ * that feature on its exact value. Keys and scores live in primitive arrays (no boxing and no
+ * allocation per lookup): every slot holds the 64-bit hash of its buckets, the buckets themselves
+ * (so a hash collision can never return another vector's score) and the score.
+ *
+ * The table is split into stripes, each guarded by its own lock, and a key lives in the stripe
+ * picked by its hash. Within a stripe a key may sit in one of PROBE_LENGTH consecutive slots;
+ * when they are all taken a victim is overwritten round robin, so capacity is fixed.
+ */
+public final class QuantizedScoreCache {
+
+    private static final int PROBE_LENGTH = 4;
+    private static final long EMPTY = 0L;
+
+    private final double[] bucketWidths;
+    private final int dimensions;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final int slotMask;
+
+    private static final class Stripe {
+        final long[] hashes;
+        final long[] buckets;
+        final double[] scores;
+        int nextVictim;
+
+        Stripe(int slots, int dimensions) {
+            hashes = new long[slots];
+            buckets = new long[slots * dimensions];
+            scores = new double[slots];
+        }
+    }
+
+    /**
+     * @param bucketWidths bucket width of every feature, in the units the features are passed in
+     * @param capacity maximum number of cached scores (rounded up to a power of two)
+     * @param stripeCount number of independently locked stripes (rounded up to a power of two)
+     */
+    public QuantizedScoreCache(double[] bucketWidths, int capacity, int stripeCount) {
+        if (bucketWidths.length == 0) {
+            throw new IllegalArgumentException("At least one bucket width is required");
+        }
+        int stripesTotal = powerOfTwo(Math.max(1, stripeCount));
+        int slots = powerOfTwo(Math.max(PROBE_LENGTH, capacity / stripesTotal));
+        this.bucketWidths = bucketWidths.clone();
+        this.dimensions = bucketWidths.length;
+        this.stripes = new Stripe[stripesTotal];
+        for (int s = 0; s < stripesTotal; s++) {
+            stripes[s] = new Stripe(slots, dimensions);
+        }
+        this.stripeMask = stripesTotal - 1;
+        this.slotMask = slots - 1;
+    }
+
+    /**
+     * Cached score of the vector's buckets
+     * @return the score, or NaN if the buckets are not cached
+     */
+    public double get(double[] features) {
+        long hash = hash(features);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        synchronized (stripe) {
+            int slot = find(stripe, hash, features);
+            return slot >= 0 ? stripe.scores[slot] : Double.NaN;
+        }
+    }
+
+    /**
+     * Cache the score for the vector's buckets, replacing an older entry if the probe range is full
+     */
+    public void put(double[] features, double score) {
+        long hash = hash(features);
+        Stripe stripe = stripes[(int) (hash >>> 32) & stripeMask];
+        synchronized (stripe) {
+            int slot = find(stripe, hash, features);
+            if (slot < 0) {
+                slot = freeSlot(stripe, hash);
+                stripe.hashes[slot] = hash;
+                int base = slot * dimensions;
+                for (int d = 0; d < dimensions; d++) {
+                    stripe.buckets[base + d] = bucket(features[d], d);
+                }
+            }
+            stripe.scores[slot] = score;
+        }
+    }
+
+    /**
+     * Number of cached scores; counts each stripe under its own lock, so it is only a snapshot
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (long hash : stripe.hashes) {
+                    if (hash != EMPTY) {
+                        size++;
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return stripes.length * (slotMask + 1);
+    }
+
+    private int find(Stripe stripe, long hash, double[] features) {
+        int home = (int) hash & slotMask;
+        for (int p = 0; p < PROBE_LENGTH; p++) {
+            int slot = (home + p) & slotMask;
+            if (stripe.hashes[slot] == hash && sameBuckets(stripe, slot, features)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int freeSlot(Stripe stripe, long hash) {
+        int home = (int) hash & slotMask;
+        for (int p = 0; p < PROBE_LENGTH; p++) {
+            int slot = (home + p) & slotMask;
+            if (stripe.hashes[slot] == EMPTY) {
+                return slot;
+            }
+        }
+        int victim = (home + stripe.nextVictim) & slotMask;
+        stripe.nextVictim = (stripe.nextVictim + 1) % PROBE_LENGTH;
+        return victim;
+    }
+
+    private boolean sameBuckets(Stripe stripe, int slot, double[] features) {
+        int base = slot * dimensions;
+        for (int d = 0; d < dimensions; d++) {
+            if (stripe.buckets[base + d] != bucket(features[d], d)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long hash(double[] features) {
+        if (features.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " features, got " + features.length);
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int d = 0; d < dimensions; d++) {
+            hash = (hash ^ bucket(features[d], d)) * 0x100000001b3L;
+        }
+        // murmur3 finalizer, so both the stripe (high bits) and the slot (low bits) are well mixed
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    private long bucket(double value, int dimension) {
+        double width = bucketWidths[dimension];
+        if (width <= 0.0 || Double.isNaN(value)) {
+            return Double.doubleToLongBits(value);
+        }
+        return (long) Math.floor(value / width);
+    }
+
+    private static int powerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.mlbackend.util;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Per-row mean squared reconstruction error of an autoencoder batch, plus the squared error
+ * of every feature, computed in a single pass.
+ *
+ * One loop over the raw buffers computes each difference once, squares it, writes it back
+ * into the reconstruction array and adds it to the row sum. No temporary arrays are created,
+ * which replaces the sub/mul/sum/div chain that allocated four or five INDArrays per call.
+ * The squared errors are written into the reconstruction array passed in, so pass the array
+ * returned by model.output() and don't use it afterwards.
+ */
+public final class ReconstructionError {
+
+    private final double[] rowMse;
+    private final INDArray squaredErrors;
+
+    private ReconstructionError(double[] rowMse, INDArray squaredErrors) {
+        this.rowMse = rowMse;
+        this.squaredErrors = squaredErrors;
+    }
+
+    /**
+     * @param input model input [rows, features]
+     * @param reconstruction model output of the same shape; may be overwritten with the squared errors
+     */
+    public static ReconstructionError compute(INDArray input, INDArray reconstruction) {
+        INDArray x = standardLayout(input);
+        INDArray y = standardLayout(reconstruction);
+        if (x.rows() != y.rows() || x.columns() != y.columns()) {
+            throw new IllegalArgumentException("Input " + x.shapeInfoToString()
+                    + " and reconstruction " + y.shapeInfoToString() + " differ in shape");
+        }
+
+        int rows = x.rows();
+        int columns = x.columns();
+        DataBuffer xData = x.data();
+        DataBuffer yData = y.data();
+        long xOffset = x.offset();
+        long yOffset = y.offset();
+        double[] rowMse = new double[rows];
+
+        for (int r = 0; r < rows; r++) {
+            long xRow = xOffset + (long) r * columns;
+            long yRow = yOffset + (long) r * columns;
+            double sum = 0.0;
+            for (int c = 0; c < columns; c++) {
+                double diff = xData.getDouble(xRow + c) - yData.getDouble(yRow + c);
+                double squared = diff * diff;
+                yData.put(yRow + c, squared);
+                sum += squared;
+            }
+            rowMse[r] = sum / columns;
+        }
+        return new ReconstructionError(rowMse, y);
+    }
+
+    /**
+     * Mean squared error of one row
+     */
+    public double rowMse(int row) {
+        return rowMse[row];
+    }
+
+    /**
+     * Mean squared error of every row (not a copy)
+     */
+    public double[] rowMse() {
+        return rowMse;
+    }
+
+    /**
+     * Squared error per row and feature [rows, features]
+     */
+    public INDArray squaredErrors() {
+        return squaredErrors;
+    }
+
+    /**
+     * Index of the feature with the largest squared error in a row, i.e. the sensor that
+     * contributed most to that row's reconstruction error
+     */
+    public int dominantFeature(int row) {
+        int best = 0;
+        double bestError = squaredErrors.getDouble(row, 0);
+        for (int c = 1; c < squaredErrors.columns(); c++) {
+            double error = squaredErrors.getDouble(row, c);
+            if (error > bestError) {
+                best = c;
+                bestError = error;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Rank-2, c-ordered, densely packed array so (row, column) maps to offset + row * columns + column
+     */
+    private static INDArray standardLayout(INDArray array) {
+        INDArray matrix = array.rank() == 2 ? array : array.reshape(-1, array.size(-1));
+        if (matrix.ordering() != 'c' || matrix.isView() || matrix.elementWiseStride() != 1) {
+            matrix = matrix.dup('c');
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.mlbackend.util;
+
+import java.util.Arrays;
+
+/**
+ * Derived features of one device's sensor stream, updated in O(1) per reading.
+ *
+ * Every sensor channel (plus the average of the vibration channels, as one extra series) keeps
+ * the same statistics over the last window readings, all in primitive arrays:
+ *
+ *   mean and variance  sliding Welford: a reading is added and the one leaving the ring buffer
+ *                      removed with M2 +- n/(n-1) * (x - mean)^2, without re-summing the window
+ *   slope              least squares against time (per minute), from the co-moment of value and
+ *                      time, which is added and removed the same way
+ *   EWMA               alpha = 2 / (window + 1), over all readings, not just the window
+ *
+ * A compressor channel is turned into on/off with a threshold; every off-to-on switch counts a
+ * cycle, and the cycle time is the seconds between the last two starts. The duty cycle is the
+ * EWMA of the on state. Rounding drift of the sliding sums is reset by recomputing them from the
+ * ring buffer every RECOMPUTE_EVERY readings, which keeps the amortized cost O(1).
+ *
+ * derived() returns the named features (NAMES) that the models consume; mean(), std(), slope()
+ * and ewma() give every channel's statistics. Used by DerivedFeatureService at serving time and
+ * by PartRiskTrainer over the training CSV, so both compute the features with the same code.
+ * Readings must arrive in timestamp order; older or repeated timestamps are ignored.
+ * Not thread safe.
+ */
+public final class RollingFeatures {
+
+    public static final int TEMPERATURE_GRADIENT = 0;
+    public static final int PRESSURE_TREND = 1;
+    public static final int COMPRESSOR_CYCLE_TIME = 2;
+    public static final int COMPRESSOR_DUTY_CYCLE = 3;
+    public static final int VIBRATION_MEAN = 4;
+    public static final int VIBRATION_STD = 5;
+    public static final String[] NAMES = {
+            "temperature_gradient", "pressure_trend", "compressor_cycle_time",
+            "compressor_duty_cycle", "vibration_mean", "vibration_std"
+    };
+
+    private static final int RECOMPUTE_EVERY = 1 << 16;
+
+    /**
+     * Which channels of a reading the named features are computed from
+     * @param channels values per reading
+     * @param temperature channel whose slope is temperature_gradient
+     * @param pressure channel whose slope is pressure_trend, or -1 if there is no pressure sensor (the trend is 0)
+     * @param compressor channel that tells whether the compressor runs
+     * @param compressorOnAbove the compressor runs while its channel is above this value
+     * @param vibration channels averaged into vibration_mean
+     */
+    public record Layout(int channels, int temperature, int pressure, int compressor,
+                         double compressorOnAbove, int[] vibration) {
+    }
+
+    private final Layout layout;
+    private final int window;
+    private final int series;
+    private final double alpha;
+
+    // Ring buffer of the window: times in minutes since origin, values[slot * series + s]
+    private final double[] times;
+    private final double[] values;
+    private int head;
+    private int size;
+
+    private final double[] mean;
+    private final double[] m2;
+    private final double[] coMoment;
+    private final double[] ewma;
+    private double meanTime;
+    private double m2Time;
+
+    private long origin;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long count;
+    private boolean compressorOn;
+    private long lastStart = Long.MIN_VALUE;
+    private double cycleSeconds;
+    private long cycles;
+    private double dutyCycle;
+
+    public RollingFeatures(Layout layout, int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("window must be at least 2: " + window);
+        }
+        this.layout = layout;
+        this.window = window;
+        this.series = layout.channels() + 1;
+        this.alpha = 2.0 / (window + 1);
+        this.times = new double[window];
+        this.values = new double[window * series];
+        this.mean = new double[series];
+        this.m2 = new double[series];
+        this.coMoment = new double[series];
+        this.ewma = new double[series];
+    }
+
+    /**
+     * Add one reading
+     * @param timestampMillis epoch milliseconds of the reading
+     * @param reading layout.channels() values; read, not kept
+     * @return false if the reading is not newer than the last one and was ignored
+     */
+    public boolean update(long timestampMillis, double[] reading) {
+        if (timestampMillis <= lastTimestamp) {
+            return false;
+        }
+        if (count == 0) {
+            origin = timestampMillis;
+        }
+        lastTimestamp = timestampMillis;
+
+        if (size == window) {
+            remove(head);
+        }
+        int slot = (head + size) % window;
+        if (size == window) {
+            head = (head + 1) % window;
+        } else {
+            size++;
+        }
+        int base = slot * series;
+        System.arraycopy(reading, 0, values, base, layout.channels());
+        double vibration = 0;
+        for (int channel : layout.vibration()) {
+            vibration += reading[channel];
+        }
+        values[base + series - 1] = layout.vibration().length == 0 ? 0 : vibration / layout.vibration().length;
+        times[slot] = (timestampMillis - origin) / 60000.0;
+        add(slot);
+
+        for (int s = 0; s < series; s++) {
+            ewma[s] = count == 0 ? values[base + s] : ewma[s] + alpha * (values[base + s] - ewma[s]);
+        }
+        boolean on = reading[layout.compressor()] > layout.compressorOnAbove();
+        if (on && !compressorOn) {
+            if (lastStart != Long.MIN_VALUE) {
+                cycleSeconds = (timestampMillis - lastStart) / 1000.0;
+            }
+            lastStart = timestampMillis;
+            cycles++;
+        }
+        compressorOn = on;
+        dutyCycle = count == 0 ? (on ? 1 : 0) : dutyCycle + alpha * ((on ? 1 : 0) - dutyCycle);
+
+        count++;
+        if (count % RECOMPUTE_EVERY == 0) {
+            recompute();
+        }
+        return true;
+    }
+
+    /**
+     * The named features after the latest reading, in NAMES order
+     * @return into
+     */
+    public double[] derived(double[] into) {
+        into[TEMPERATURE_GRADIENT] = slope(layout.temperature());
+        into[PRESSURE_TREND] = layout.pressure() < 0 ? 0 : slope(layout.pressure());
+        into[COMPRESSOR_CYCLE_TIME] = cycleSeconds;
+        into[COMPRESSOR_DUTY_CYCLE] = dutyCycle;
+        into[VIBRATION_MEAN] = size == 0 ? 0 : values[latestSlot() * series + series - 1];
+        into[VIBRATION_STD] = std(series - 1);
+        return into;
+    }
+
+    /**
+     * Mean of a channel over the window; channel layout.channels() is the vibration average
+     */
+    public double mean(int channel) {
+        return mean[channel];
+    }
+
+    /**
+     * Sample standard deviation of a channel over the window
+     */
+    public double std(int channel) {
+        return size < 2 ? 0 : Math.sqrt(Math.max(0, m2[channel]) / (size - 1));
+    }
+
+    /**
+     * Least-squares slope of a channel over the window, per minute
+     */
+    public double slope(int channel) {
+        return m2Time <= 0 ? 0 : coMoment[channel] / m2Time;
+    }
+
+    public double ewma(int channel) {
+        return ewma[channel];
+    }
+
+    /**
+     * Readings accepted so far
+     */
+    public long count() {
+        return count;
+    }
+
+    public long compressorCycles() {
+        return cycles;
+    }
+
+    public long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Approximate heap bytes of this state
+     */
+    public long estimatedBytes() {
+        return 128 + 8L * (times.length + values.length + 4L * series);
+    }
+
+    private int latestSlot() {
+        return (head + size - 1) % window;
+    }
+
+    // size already counts the slot being added
+    private void add(int slot) {
+        double n = size;
+        double weight = (n - 1) / n;
+        double dt = times[slot] - meanTime;
+        m2Time += weight * dt * dt;
+        meanTime += dt / n;
+        int base = slot * series;
+        for (int s = 0; s < series; s++) {
+            double dy = values[base + s] - mean[s];
+            m2[s] += weight * dy * dy;
+            coMoment[s] += weight * dt * dy;
+            mean[s] += dy / n;
+        }
+    }
+
+    // size still counts the slot being removed
+    private void remove(int slot) {
+        double n = size;
+        double weight = n / (n - 1);
+        double dt = times[slot] - meanTime;
+        m2Time -= weight * dt * dt;
+        meanTime -= dt / (n - 1);
+        int base = slot * series;
+        for (int s = 0; s < series; s++) {
+            double dy = values[base + s] - mean[s];
+            m2[s] -= weight * dy * dy;
+            coMoment[s] -= weight * dt * dy;
+            mean[s] -= dy / (n - 1);
+        }
+    }
+
+    private void recompute() {
+        int kept = size;
+        meanTime = 0;
+        m2Time = 0;
+        Arrays.fill(mean, 0);
+        Arrays.fill(m2, 0);
+        Arrays.fill(coMoment, 0);
+        for (size = 1; size <= kept; size++) {
+            add((head + size - 1) % window);
+        }
+        size = kept;
+    }
+}
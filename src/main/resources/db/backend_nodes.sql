@@ -0,0 +1,13 @@
+-- Lease table for cluster mode (cluster.enabled=true, ClusterMembership)
+--
+-- Every backend instance upserts its row every cluster.heartbeat-ms. Instances whose
+-- heartbeat is newer than cluster.lease-ms are members; each one hashes the member list
+-- into the same consistent-hash ring and scores only the devices it owns. A node that
+-- stops heartbeating drops out after the lease and its devices move to the others.
+-- All times come from the database clock, so instance clocks need not agree.
+
+CREATE TABLE IF NOT EXISTS backend_nodes (
+    node_id TEXT PRIMARY KEY,
+    started_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    heartbeat_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
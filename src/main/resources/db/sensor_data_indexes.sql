@@ -0,0 +1,8 @@
+-- Index for per-device window reads (SensorHistoryReader, SensorDataListener)
+--
+-- Serves "last N readings of device X" (ORDER BY timestamp DESC LIMIT N, also per device
+-- in SensorHistoryReader's LATERAL window query) with an index scan per device that stops
+-- after N rows, instead of a sort of the whole table.
+
+CREATE INDEX IF NOT EXISTS sensor_data_device_timestamp_idx
+    ON sensor_data (device_id, timestamp DESC);
@@ -0,0 +1,22 @@
+-- Insert notifications for push ingestion (pipeline.ingestion.mode=notify)
+--
+-- Statement-level trigger: a multi-row insert sends one notification per device
+-- instead of one per row. The payload is JSON, e.g. {"device_id": "fridge-1"}.
+-- The channel is the trigger's argument ('sensor_data_inserted' below). It must match
+-- pipeline.notify.channel; to use another channel, change both and re-run this script.
+
+CREATE OR REPLACE FUNCTION notify_sensor_data_inserted() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify(TG_ARGV[0], json_build_object('device_id', device_id)::text)
+    FROM (SELECT DISTINCT device_id FROM inserted_rows) AS devices;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS sensor_data_notify ON sensor_data;
+
+CREATE TRIGGER sensor_data_notify
+    AFTER INSERT ON sensor_data
+    REFERENCING NEW TABLE AS inserted_rows
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION notify_sensor_data_inserted('sensor_data_inserted');